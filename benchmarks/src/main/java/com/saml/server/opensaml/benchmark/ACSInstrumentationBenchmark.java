@@ -0,0 +1,70 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.service.SAMLResponseService;
+import com.saml.server.opensaml.service.SAMLSecurityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-phase ACS timers: the same POST-binding Response processed with
+ * {@code saml.metrics.enabled} and slow-request capture on and off. The two scores should
+ * differ by less than 1%.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ACSInstrumentationBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(3)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class ACSInstrumentationBenchmark {
+
+    @Param({"true", "false"})
+    public boolean instrumented;
+
+    private SPHarness harness;
+    private SAMLResponseService responseService;
+    private SAMLSecurityService securityService;
+    private String[] responses;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        harness = SPHarness.start("saml.metrics.enabled=" + instrumented,
+                "saml.diagnostics.slow-request-threshold-millis=" + (instrumented ? 500 : 0));
+        responseService = harness.bean(SAMLResponseService.class);
+        securityService = harness.bean(SAMLSecurityService.class);
+        responses = harness.postResponses(256);
+    }
+
+    @TearDown(Level.Iteration)
+    public void dropSessions() {
+        securityService.invalidateSessionsByNameId(SPHarness.USER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Benchmark
+    public SAMLResponseService.SAMLResponseResult acs() throws Exception {
+        return responseService.processSAMLResponse(harness.tenant(), responses[cursor++ & (responses.length - 1)], null);
+    }
+}
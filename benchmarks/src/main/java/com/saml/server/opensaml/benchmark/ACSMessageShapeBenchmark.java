@@ -0,0 +1,95 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.service.SAMLResponseService;
+import com.saml.server.opensaml.service.SAMLSecurityService;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end ACS cost of {@code processSAMLResponse} as a function of message shape.
+ * Responses come from an embedded IdP signing with a local RSA or EC key. The defaults
+ * sweep attribute count; override any parameter with {@code -p}, for example:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ACSMessageShapeBenchmark -p assertions=1,5 -p signing=response,assertion,both
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ACSMessageShapeBenchmark {
+
+    @Param({"1"})
+    public int assertions;
+
+    @Param({"10", "50", "200"})
+    public int attributes;
+
+    @Param({"64"})
+    public int valueSize;
+
+    /** Which elements carry a signature: response, assertion or both */
+    @Param({"both"})
+    public String signing;
+
+    @Param({"RSA", "EC"})
+    public SyntheticIdP.KeyType keyType;
+
+    private SPHarness harness;
+    private SAMLResponseService responseService;
+    private SAMLSecurityService securityService;
+    private String[] responses;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // Assertions signed only through the Response need want-assertions-signed off
+        harness = "response".equals(signing)
+                ? SPHarness.start(keyType, "saml.want-assertions-signed=false")
+                : SPHarness.start(keyType);
+        responseService = harness.bean(SAMLResponseService.class);
+        securityService = harness.bean(SAMLSecurityService.class);
+        responses = harness.postResponses(64, SyntheticIdP.ResponseShape.defaults()
+                .assertions(assertions)
+                .attributesPerAssertion(attributes)
+                .attributeValueSize(valueSize)
+                .signResponse(!"assertion".equals(signing))
+                .signAssertions(!"response".equals(signing)));
+
+        if (!responseService.processSAMLResponse(harness.tenant(), responses[0], null).isSuccess()) {
+            throw new IllegalStateException("Generated response was rejected; the benchmark would measure the failure path");
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void dropSessions() {
+        securityService.invalidateSessionsByNameId(SPHarness.USER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Benchmark
+    public SAMLResponseService.SAMLResponseResult acs() throws Exception {
+        return responseService.processSAMLResponse(harness.tenant(), responses[cursor++ & (responses.length - 1)], null);
+    }
+}
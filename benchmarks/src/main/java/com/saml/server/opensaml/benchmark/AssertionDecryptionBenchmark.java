@@ -0,0 +1,117 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.AssertionDecrypter;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.EncryptedAssertion;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.security.x509.BasicX509Credential;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decryption cost per login for assertions encrypted with AES-128-GCM under an RSA-OAEP
+ * wrapped key, as the ACS sees them after unmarshalling. {@code decrypt} uses the tenant's
+ * pre-built decrypter; {@code decryptWithNewDecrypter} builds one per login. With
+ * {@code sharedKey=true} every assertion repeats one EncryptedKey, so the per-Response data
+ * key cache leaves a single RSA operation per login:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar AssertionDecryptionBenchmark -p assertions=1,3 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AssertionDecryptionBenchmark {
+
+    private static final List<String> ALGORITHMS = new SAMLProperties().getDecryption().getAllowedAlgorithms();
+
+    @Param({"1", "3"})
+    public int assertions;
+
+    @Param({"false", "true"})
+    public boolean sharedKey;
+
+    private BasicParserPool parserPool;
+    private BasicX509Credential spCredential;
+    private AssertionDecrypter decrypter;
+    private List<EncryptedAssertion> encryptedAssertions;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        OpenSAMLBootstrap.ensureInitialized();
+        parserPool = new BasicParserPool();
+        parserPool.initialize();
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        X509Certificate certificate = SyntheticIdP.selfSign(keyPair, "SHA256withRSA");
+        spCredential = new BasicX509Credential(certificate, keyPair.getPrivate());
+        decrypter = AssertionDecrypter.create(spCredential, parserPool, ALGORITHMS);
+
+        Response generated = SyntheticIdP.create().createResponse("https://bench.invalid/saml/acs", "urn:bench:sp",
+                SPHarness.USER, null, SyntheticIdP.ResponseShape.defaults()
+                        .assertions(assertions)
+                        .encryptFor(certificate)
+                        .shareDataKey(sharedKey));
+        // Round-trip through XML so the EncryptedAssertions are unmarshalled exactly as on the ACS
+        byte[] xml = Base64.getDecoder().decode(SyntheticIdP.encodePost(generated));
+        Element element = parserPool.parse(new ByteArrayInputStream(xml)).getDocumentElement();
+        Response response = (Response) XMLObjectSupport.getUnmarshaller(element).unmarshall(element);
+        encryptedAssertions = new ArrayList<>(response.getEncryptedAssertions());
+
+        if (decrypt().size() != assertions) {
+            throw new IllegalStateException("Generated assertions did not decrypt");
+        }
+    }
+
+    @Benchmark
+    public List<Assertion> decrypt() throws Exception {
+        return decryptAll(decrypter);
+    }
+
+    @Benchmark
+    public List<Assertion> decryptWithNewDecrypter() throws Exception {
+        return decryptAll(AssertionDecrypter.create(spCredential, parserPool, ALGORITHMS));
+    }
+
+    private List<Assertion> decryptAll(AssertionDecrypter decrypter) throws Exception {
+        Map<String, Key> dataKeys = new HashMap<>(4);
+        List<Assertion> decrypted = new ArrayList<>(encryptedAssertions.size());
+        for (EncryptedAssertion encryptedAssertion : encryptedAssertions) {
+            decrypted.add(decrypter.decrypt(encryptedAssertion, dataKeys));
+        }
+        return decrypted;
+    }
+}
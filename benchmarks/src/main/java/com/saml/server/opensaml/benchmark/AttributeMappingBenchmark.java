@@ -0,0 +1,115 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.service.AttributeMapper;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeStatement;
+import org.opensaml.saml.saml2.core.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attribute extraction per login over one unmarshalled assertion. {@code map} is the
+ * {@link AttributeMapper}: with {@code mapping=none} every attribute passes through, with
+ * {@code mapping=three} only email, firstName and one multi-valued attribute are kept and the
+ * rest are skipped by name. {@code domTextContent} is the earlier first-value-per-attribute
+ * loop over {@code getDOM().getTextContent()} into a fresh HashMap:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar AttributeMappingBenchmark -p attributes=10,200 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AttributeMappingBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int attributes;
+
+    @Param({"none", "three"})
+    public String mapping;
+
+    private SPHarness harness;
+    private AttributeMapper attributeMapper;
+    private String idpEntityId;
+    private List<Assertion> assertions;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        harness = "three".equals(mapping)
+                ? SPHarness.start(
+                        "saml.attributes.mappings[0].name=email",
+                        "saml.attributes.mappings[0].alias=mail",
+                        "saml.attributes.mappings[1].name=firstName",
+                        "saml.attributes.mappings[2].name=attribute5",
+                        "saml.attributes.mappings[2].multi-valued=true")
+                : SPHarness.start();
+        attributeMapper = harness.bean(AttributeMapper.class);
+        idpEntityId = harness.idp().getEntityId();
+
+        Response generated = harness.idp().createResponse(harness.tenant().getAssertionConsumerServiceURL(),
+                harness.tenant().getEntityId(), SPHarness.USER, null,
+                SyntheticIdP.ResponseShape.defaults().attributesPerAssertion(attributes));
+        BasicParserPool parserPool = new BasicParserPool();
+        parserPool.initialize();
+        byte[] xml = Base64.getDecoder().decode(SyntheticIdP.encodePost(generated));
+        Element element = parserPool.parse(new ByteArrayInputStream(xml)).getDocumentElement();
+        Response response = (Response) XMLObjectSupport.getUnmarshaller(element).unmarshall(element);
+        assertions = response.getAssertions();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> map() {
+        return attributeMapper.map(idpEntityId, assertions, assertions.get(0).getSubject().getNameID());
+    }
+
+    @Benchmark
+    public Map<String, String> domTextContent() {
+        Map<String, String> extracted = new HashMap<>();
+        for (AttributeStatement statement : assertions.get(0).getAttributeStatements()) {
+            for (Attribute attribute : statement.getAttributes()) {
+                String value = "";
+                if (!attribute.getAttributeValues().isEmpty()) {
+                    XMLObject first = attribute.getAttributeValues().get(0);
+                    if (first.getDOM() != null) {
+                        value = first.getDOM().getTextContent();
+                    }
+                }
+                extracted.put(attribute.getName(), value);
+            }
+        }
+        return extracted;
+    }
+}
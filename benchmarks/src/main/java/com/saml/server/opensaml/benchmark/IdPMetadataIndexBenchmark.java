@@ -0,0 +1,78 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.metadata.IdPDescriptor;
+import com.saml.server.opensaml.metadata.IdPMetadataIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load time and per-lookup cost of the streaming IdP metadata index.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar IdPMetadataIndexBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class IdPMetadataIndexBenchmark {
+
+    @Param({"5000"})
+    public int entities;
+
+    private Path file;
+    private IdPMetadataIndex index;
+    private String[] lookupIds;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("aggregate", ".xml");
+        SyntheticMetadata.write(file, entities);
+        index = IdPMetadataIndex.load(file);
+
+        Random random = new Random(42);
+        lookupIds = new String[1024];
+        for (int i = 0; i < lookupIds.length; i++) {
+            lookupIds[i] = SyntheticMetadata.entityId(random.nextInt(entities));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public IdPMetadataIndex load() throws Exception {
+        return IdPMetadataIndex.load(file);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public IdPDescriptor lookup() {
+        return index.get(lookupIds[cursor++ & (lookupIds.length - 1)]);
+    }
+}
@@ -0,0 +1,21 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.config.OpenSAMLInitializer;
+
+/**
+ * One-time OpenSAML initialization for benchmarks that do not start the Spring context
+ */
+final class OpenSAMLBootstrap {
+
+    private static boolean initialized;
+
+    private OpenSAMLBootstrap() {
+    }
+
+    static synchronized void ensureInitialized() throws Exception {
+        if (!initialized) {
+            OpenSAMLInitializer.initialize(OpenSAMLInitializer.MODE_FULL);
+            initialized = true;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.config.OpenSAMLInitializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start cost of full versus selective OpenSAML initialization.
+ * OpenSAML keeps its registries in static state, so every sample is a fresh JVM fork
+ * measuring exactly one initialization.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar OpenSAMLInitializationBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class OpenSAMLInitializationBenchmark {
+
+    @Param({OpenSAMLInitializer.MODE_FULL, OpenSAMLInitializer.MODE_SELECTIVE})
+    public String mode;
+
+    @Benchmark
+    public Map<String, Long> initialize() throws Exception {
+        return OpenSAMLInitializer.initialize(mode);
+    }
+}
@@ -0,0 +1,81 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.service.PendingRequestStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Add-then-consume throughput of the AuthnRequest ID store, one login per operation.
+ * {@code bucketedHashes} is {@link PendingRequestStore}; {@code stringMap} keeps the ID
+ * strings with their issue time in one map, the shape it replaces. IDs are generated
+ * outside the timed path. Run with threads to see contention:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar PendingRequestStoreBenchmark -t 8 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PendingRequestStoreBenchmark {
+
+    private static final int IDS_PER_THREAD = 1 << 14;
+
+    private PendingRequestStore store;
+    private ConcurrentHashMap<String, Long> map;
+
+    @State(Scope.Thread)
+    public static class Ids {
+
+        final String[] ids = new String[IDS_PER_THREAD];
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = "_" + UUID.randomUUID().toString().replace("-", "");
+            }
+        }
+
+        String next() {
+            return ids[next++ & (IDS_PER_THREAD - 1)];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new PendingRequestStore(600000, 10, 1000000, Clock.systemUTC());
+        map = new ConcurrentHashMap<>();
+    }
+
+    @Benchmark
+    public boolean bucketedHashes(Ids ids) {
+        String id = ids.next();
+        store.add(id);
+        return store.consume(id);
+    }
+
+    @Benchmark
+    public boolean stringMap(Ids ids) {
+        String id = ids.next();
+        map.put(id, System.currentTimeMillis());
+        return map.remove(id) != null;
+    }
+}
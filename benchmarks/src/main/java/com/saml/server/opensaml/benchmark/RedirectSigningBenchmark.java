@@ -0,0 +1,100 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.service.RedirectBindingSigner;
+import com.saml.server.opensaml.service.SAMLUtilityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP-Redirect binding signing throughput for RSA-SHA256 and ECDSA-SHA256 SP keys.
+ * {@code signed} is the production path with a per-thread {@link Signature};
+ * {@code signedFreshSignature} looks the instance up for every message, and
+ * {@code unsigned} is the query string alone. Run with threads to see scaling:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar RedirectSigningBenchmark -t 8 -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RedirectSigningBenchmark {
+
+    private static final String RELAY_STATE = "https://sp.example.org/app/dashboard";
+    private static final String AUTHN_REQUEST = "<saml2p:AuthnRequest xmlns:saml2p=\"urn:oasis:names:tc:SAML:2.0:protocol\""
+            + " AssertionConsumerServiceURL=\"https://sp.example.org/saml/acs\" Destination=\"https://idp.example.org/sso\""
+            + " ForceAuthn=\"false\" ID=\"_8f2b6c1e4d7a4b0f9e3c5a2d1b6e7f80\" IsPassive=\"false\""
+            + " IssueInstant=\"2024-01-01T00:00:00.000Z\" ProtocolBinding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST\""
+            + " Version=\"2.0\"><saml2:Issuer xmlns:saml2=\"urn:oasis:names:tc:SAML:2.0:assertion\">https://sp.example.org</saml2:Issuer>"
+            + "<saml2p:NameIDPolicy AllowCreate=\"true\" Format=\"urn:oasis:names:tc:SAML:1.1:nameid-format:emailAddress\"/>"
+            + "</saml2p:AuthnRequest>";
+
+    @State(Scope.Benchmark)
+    public static class Keys {
+
+        @Param({"RSA", "EC"})
+        public String keyType;
+
+        PrivateKey privateKey;
+        String encodedRequest;
+        RedirectBindingSigner signer;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(keyType);
+            if ("EC".equals(keyType)) {
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+            } else {
+                generator.initialize(2048);
+            }
+            KeyPair keyPair = generator.generateKeyPair();
+            privateKey = keyPair.getPrivate();
+            encodedRequest = new SAMLUtilityService().compressAndEncode(AUTHN_REQUEST);
+            signer = new RedirectBindingSigner();
+        }
+    }
+
+    @Benchmark
+    public String unsigned(Keys keys) {
+        return keys.signer.buildQuery("SAMLRequest", keys.encodedRequest, RELAY_STATE, null);
+    }
+
+    @Benchmark
+    public String signed(Keys keys) {
+        return keys.signer.buildQuery("SAMLRequest", keys.encodedRequest, RELAY_STATE, keys.privateKey);
+    }
+
+    @Benchmark
+    public String signedFreshSignature(Keys keys) throws Exception {
+        boolean ec = "EC".equals(keys.keyType);
+        String query = "SAMLRequest=" + URLEncoder.encode(keys.encodedRequest, "UTF-8")
+                + "&RelayState=" + URLEncoder.encode(RELAY_STATE, "UTF-8")
+                + "&SigAlg=" + URLEncoder.encode(ec ? RedirectBindingSigner.ECDSA_SHA256 : RedirectBindingSigner.RSA_SHA256, "UTF-8");
+        Signature signature = Signature.getInstance(ec ? "SHA256withECDSA" : "SHA256withRSA");
+        signature.initSign(keys.privateKey);
+        signature.update(query.getBytes(StandardCharsets.UTF_8));
+        return query + "&Signature=" + URLEncoder.encode(Base64.getEncoder().encodeToString(signature.sign()), "UTF-8");
+    }
+}
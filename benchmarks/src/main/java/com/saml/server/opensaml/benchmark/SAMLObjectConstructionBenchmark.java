@@ -0,0 +1,170 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.service.SAMLObjects;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import org.joda.time.DateTime;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.AuthnContext;
+import org.opensaml.saml.saml2.core.AuthnContextClassRef;
+import org.opensaml.saml.saml2.core.AuthnContextComparisonTypeEnumeration;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.LogoutRequest;
+import org.opensaml.saml.saml2.core.NameID;
+import org.opensaml.saml.saml2.core.NameIDPolicy;
+import org.opensaml.saml.saml2.core.RequestedAuthnContext;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.core.SessionIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of the AuthnRequest and LogoutRequest trees the SP sends, and unmarshalling of
+ * an incoming Response root. {@code *Registry} resolves each builder or unmarshaller by QName
+ * through {@link XMLObjectSupport}, as the services used to; {@code *Cached} goes through the
+ * startup-resolved {@link SAMLObjects}. The element values are fixed, so only construction is
+ * measured:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar SAMLObjectConstructionBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SAMLObjectConstructionBenchmark {
+
+    private static final String ID = "_8f2b6c1e4d7a4b0f9e3c5a2d1b6e7f80";
+    private static final String SP = "https://sp.example.org";
+    private static final String NAME_ID_FORMAT = "urn:oasis:names:tc:SAML:1.1:nameid-format:emailAddress";
+
+    private SAMLObjects samlObjects;
+    private DateTime issueInstant;
+    private Element responseElement;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        OpenSAMLBootstrap.ensureInitialized();
+        samlObjects = new SAMLObjects();
+        issueInstant = new DateTime();
+
+        Response generated = SyntheticIdP.create().createResponse(SP + "/saml/acs", SP, SPHarness.USER, null,
+                SyntheticIdP.ResponseShape.defaults());
+        BasicParserPool parserPool = new BasicParserPool();
+        parserPool.initialize();
+        byte[] xml = Base64.getDecoder().decode(SyntheticIdP.encodePost(generated));
+        responseElement = parserPool.parse(new ByteArrayInputStream(xml)).getDocumentElement();
+    }
+
+    @Benchmark
+    public AuthnRequest authnRequestRegistry() {
+        AuthnRequest request = (AuthnRequest) XMLObjectSupport.buildXMLObject(AuthnRequest.DEFAULT_ELEMENT_NAME);
+        request.setID(ID);
+        request.setIssueInstant(issueInstant);
+        request.setAssertionConsumerServiceURL(SP + "/saml/acs");
+        request.setDestination("https://idp.example.org/sso");
+        Issuer issuer = (Issuer) XMLObjectSupport.buildXMLObject(Issuer.DEFAULT_ELEMENT_NAME);
+        issuer.setValue(SP);
+        request.setIssuer(issuer);
+        NameIDPolicy policy = (NameIDPolicy) XMLObjectSupport.buildXMLObject(NameIDPolicy.DEFAULT_ELEMENT_NAME);
+        policy.setFormat(NAME_ID_FORMAT);
+        policy.setAllowCreate(true);
+        request.setNameIDPolicy(policy);
+        RequestedAuthnContext context = (RequestedAuthnContext) XMLObjectSupport.buildXMLObject(RequestedAuthnContext.DEFAULT_ELEMENT_NAME);
+        context.setComparison(AuthnContextComparisonTypeEnumeration.EXACT);
+        AuthnContextClassRef classRef = (AuthnContextClassRef) XMLObjectSupport.buildXMLObject(AuthnContextClassRef.DEFAULT_ELEMENT_NAME);
+        classRef.setAuthnContextClassRef(AuthnContext.PPT_AUTHN_CTX);
+        context.getAuthnContextClassRefs().add(classRef);
+        request.setRequestedAuthnContext(context);
+        return request;
+    }
+
+    @Benchmark
+    public AuthnRequest authnRequestCached() {
+        AuthnRequest request = samlObjects.authnRequest();
+        request.setID(ID);
+        request.setIssueInstant(issueInstant);
+        request.setAssertionConsumerServiceURL(SP + "/saml/acs");
+        request.setDestination("https://idp.example.org/sso");
+        Issuer issuer = samlObjects.issuer();
+        issuer.setValue(SP);
+        request.setIssuer(issuer);
+        NameIDPolicy policy = samlObjects.nameIDPolicy();
+        policy.setFormat(NAME_ID_FORMAT);
+        policy.setAllowCreate(true);
+        request.setNameIDPolicy(policy);
+        RequestedAuthnContext context = samlObjects.requestedAuthnContext();
+        context.setComparison(AuthnContextComparisonTypeEnumeration.EXACT);
+        AuthnContextClassRef classRef = samlObjects.authnContextClassRef();
+        classRef.setAuthnContextClassRef(AuthnContext.PPT_AUTHN_CTX);
+        context.getAuthnContextClassRefs().add(classRef);
+        request.setRequestedAuthnContext(context);
+        return request;
+    }
+
+    @Benchmark
+    public LogoutRequest logoutRequestRegistry() {
+        LogoutRequest request = (LogoutRequest) XMLObjectSupport.buildXMLObject(LogoutRequest.DEFAULT_ELEMENT_NAME);
+        request.setID(ID);
+        request.setIssueInstant(issueInstant);
+        request.setDestination("https://idp.example.org/slo");
+        Issuer issuer = (Issuer) XMLObjectSupport.buildXMLObject(Issuer.DEFAULT_ELEMENT_NAME);
+        issuer.setValue(SP);
+        request.setIssuer(issuer);
+        NameID nameID = (NameID) XMLObjectSupport.buildXMLObject(NameID.DEFAULT_ELEMENT_NAME);
+        nameID.setValue(SPHarness.USER);
+        nameID.setFormat(NAME_ID_FORMAT);
+        request.setNameID(nameID);
+        SessionIndex sessionIndex = (SessionIndex) XMLObjectSupport.buildXMLObject(SessionIndex.DEFAULT_ELEMENT_NAME);
+        sessionIndex.setSessionIndex(ID);
+        request.getSessionIndexes().add(sessionIndex);
+        return request;
+    }
+
+    @Benchmark
+    public LogoutRequest logoutRequestCached() {
+        LogoutRequest request = samlObjects.logoutRequest();
+        request.setID(ID);
+        request.setIssueInstant(issueInstant);
+        request.setDestination("https://idp.example.org/slo");
+        Issuer issuer = samlObjects.issuer();
+        issuer.setValue(SP);
+        request.setIssuer(issuer);
+        NameID nameID = samlObjects.nameID();
+        nameID.setValue(SPHarness.USER);
+        nameID.setFormat(NAME_ID_FORMAT);
+        request.setNameID(nameID);
+        SessionIndex sessionIndex = samlObjects.sessionIndex();
+        sessionIndex.setSessionIndex(ID);
+        request.getSessionIndexes().add(sessionIndex);
+        return request;
+    }
+
+    @Benchmark
+    public Response unmarshallRegistry() throws Exception {
+        return (Response) XMLObjectSupport.getUnmarshaller(responseElement).unmarshall(responseElement);
+    }
+
+    @Benchmark
+    public Response unmarshallCached() throws Exception {
+        return samlObjects.unmarshallResponse(responseElement);
+    }
+}
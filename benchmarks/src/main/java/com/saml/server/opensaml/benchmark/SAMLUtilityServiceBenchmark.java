@@ -0,0 +1,160 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.service.SAMLUtilityService;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import org.opensaml.core.xml.XMLObjectBuilder;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.schema.XSString;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeStatement;
+import org.opensaml.saml.saml2.core.AttributeValue;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link SAMLUtilityService} primitives over realistic message sizes.
+ * Run with the GC profiler to get normalized allocation per operation
+ * ({@code gc.alloc.rate.norm}, bytes/op):
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar SAMLUtilityServiceBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SAMLUtilityServiceBenchmark {
+
+    private static final SAMLUtilityService UTILITY = new SAMLUtilityService();
+
+    /**
+     * A Response of roughly {@code payloadKb} kilobytes in its three wire forms
+     */
+    @State(Scope.Thread)
+    public static class Payload {
+
+        @Param({"1", "4", "16", "64"})
+        public int payloadKb;
+
+        Response response;
+        String xml;
+        String encoded;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            OpenSAMLBootstrap.ensureInitialized();
+            response = buildResponse(payloadKb * 1024);
+            xml = UTILITY.serializeSAMLObject(response);
+            encoded = UTILITY.compressAndEncode(xml);
+        }
+    }
+
+    /**
+     * Certificate PEM for the parsing benchmark
+     */
+    @State(Scope.Benchmark)
+    public static class Material {
+
+        String certificatePem;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            OpenSAMLBootstrap.ensureInitialized();
+            X509Certificate certificate = SyntheticIdP.create().getCertificate();
+            certificatePem = "-----BEGIN CERTIFICATE-----\n"
+                    + Base64.getMimeEncoder().encodeToString(certificate.getEncoded())
+                    + "\n-----END CERTIFICATE-----";
+        }
+    }
+
+    @Benchmark
+    public String serializeSAMLObject(Payload payload) throws Exception {
+        // Drop the cached DOM so every operation marshalls from the object model, as for a fresh message
+        payload.response.releaseDOM();
+        payload.response.releaseChildrenDOM(true);
+        return UTILITY.serializeSAMLObject(payload.response);
+    }
+
+    @Benchmark
+    public String compressAndEncode(Payload payload) throws Exception {
+        return UTILITY.compressAndEncode(payload.xml);
+    }
+
+    @Benchmark
+    public String decodeAndDecompress(Payload payload) throws Exception {
+        return UTILITY.decodeAndDecompress(payload.encoded);
+    }
+
+    @Benchmark
+    public X509Certificate createCertificateFromString(Material material) throws Exception {
+        return UTILITY.createCertificateFromString(material.certificatePem);
+    }
+
+    @Benchmark
+    public String generateSAMLId() {
+        return UTILITY.generateSAMLId();
+    }
+
+    /**
+     * Unsigned Response padded with attributes until it serializes to at least {@code targetBytes}
+     */
+    static Response buildResponse(int targetBytes) throws Exception {
+        Response response = (Response) XMLObjectSupport.buildXMLObject(Response.DEFAULT_ELEMENT_NAME);
+        response.setID(UTILITY.generateSAMLId());
+        response.setIssuer(issuer());
+        Assertion assertion = (Assertion) XMLObjectSupport.buildXMLObject(Assertion.DEFAULT_ELEMENT_NAME);
+        assertion.setID(UTILITY.generateSAMLId());
+        assertion.setIssuer(issuer());
+        AttributeStatement statement = (AttributeStatement) XMLObjectSupport.buildXMLObject(AttributeStatement.DEFAULT_ELEMENT_NAME);
+        assertion.getAttributeStatements().add(statement);
+        response.getAssertions().add(assertion);
+
+        // Directory-style values compress like real attribute content, not like runs of one character
+        for (int i = 0; ; i++) {
+            statement.getAttributes().add(attribute("attribute" + i, SyntheticIdP.directoryText(i, 48)));
+            if (i % 16 == 15) {
+                response.releaseDOM();
+                response.releaseChildrenDOM(true);
+                if (UTILITY.serializeSAMLObject(response).length() >= targetBytes) {
+                    return response;
+                }
+            }
+        }
+    }
+
+    private static Issuer issuer() {
+        Issuer issuer = (Issuer) XMLObjectSupport.buildXMLObject(Issuer.DEFAULT_ELEMENT_NAME);
+        issuer.setValue("urn:bench:idp");
+        return issuer;
+    }
+
+    private static Attribute attribute(String name, String value) {
+        XMLObjectBuilder<?> stringBuilder = XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilder(XSString.TYPE_NAME);
+        XSString attributeValue = (XSString) stringBuilder.buildObject(AttributeValue.DEFAULT_ELEMENT_NAME, XSString.TYPE_NAME);
+        attributeValue.setValue(value);
+        Attribute attribute = (Attribute) XMLObjectSupport.buildXMLObject(Attribute.DEFAULT_ELEMENT_NAME);
+        attribute.setName(name);
+        attribute.getAttributeValues().add(attributeValue);
+        return attribute;
+    }
+}
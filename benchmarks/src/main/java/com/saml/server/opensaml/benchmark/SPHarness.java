@@ -0,0 +1,94 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.OpensamlApplication;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import com.saml.server.opensaml.tenant.SPTenantContext;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.Closeable;
+
+/**
+ * Non-web Spring context of the SP plus a synthetic IdP trusted by a dedicated tenant,
+ * so benchmarks drive the same beans and code paths as the running service.
+ */
+final class SPHarness implements Closeable {
+
+    static final String USER = "bench@bench.invalid";
+
+    private final ConfigurableApplicationContext context;
+    private final SyntheticIdP idp;
+    private final SPTenantContext tenant;
+
+    private SPHarness(ConfigurableApplicationContext context, SyntheticIdP idp) {
+        this.context = context;
+        this.idp = idp;
+        this.tenant = SPTenantContext.builder("bench")
+                .entityId("urn:bench:sp")
+                .assertionConsumerServiceURL("https://bench.invalid/saml/acs")
+                .singleLogoutServiceURL("https://bench.invalid/saml/slo")
+                .idpEntityId(idp.getEntityId())
+                .idpSingleSignOnServiceURL("https://bench.invalid/idp/sso")
+                .idpSingleLogoutServiceURL("https://bench.invalid/idp/slo")
+                .pinnedIdP(idp.getDescriptor())
+                .build();
+    }
+
+    /**
+     * Start the SP with warm-up and the web server disabled, plus any extra properties
+     */
+    static SPHarness start(String... properties) throws Exception {
+        return start(SyntheticIdP.KeyType.RSA, properties);
+    }
+
+    /**
+     * Start the SP trusting a synthetic IdP with the given key type
+     */
+    static SPHarness start(SyntheticIdP.KeyType keyType, String... properties) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(OpensamlApplication.class)
+                .web(false)
+                .bannerMode(Banner.Mode.OFF)
+                .properties("saml.warmup.enabled=false", "logging.level.root=WARN",
+                        "saml.in-response-to.allow-unsolicited=true")
+                .properties(properties)
+                .run();
+        return new SPHarness(context, SyntheticIdP.create(keyType));
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    SyntheticIdP idp() {
+        return idp;
+    }
+
+    SPTenantContext tenant() {
+        return tenant;
+    }
+
+    /**
+     * Signed, POST-encoded Responses addressed to the benchmark tenant
+     */
+    String[] postResponses(int count) throws Exception {
+        return postResponses(count, SyntheticIdP.ResponseShape.defaults());
+    }
+
+    /**
+     * Signed, POST-encoded Responses of the given shape addressed to the benchmark tenant
+     */
+    String[] postResponses(int count, SyntheticIdP.ResponseShape shape) throws Exception {
+        String[] responses = new String[count];
+        for (int i = 0; i < count; i++) {
+            responses[i] = SyntheticIdP.encodePost(idp.createResponse(tenant.getAssertionConsumerServiceURL(),
+                    tenant.getEntityId(), USER, null, shape));
+        }
+        return responses;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,102 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.service.SAMLSecurityService;
+import com.saml.server.opensaml.service.SessionTokenCodec;
+import com.saml.server.opensaml.tenant.SPTenantContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of checking a session on each request: {@code verifyToken} decodes a stateless token
+ * (MAC check, expiry, body parse, decryption with {@code encrypt=true}); {@code mapLookup}
+ * is the in-memory store's lookup among {@code SESSIONS} live sessions. {@code issueToken}
+ * is the one-off cost at login:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar SessionTokenBenchmark -p attributes=0,5 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SessionTokenBenchmark {
+
+    private static final int SESSIONS = 100000;
+    private static final long TIMEOUT_MILLIS = 30 * 60 * 1000;
+
+    @Param({"false", "true"})
+    public boolean encrypt;
+
+    @Param({"0", "5"})
+    public int attributes;
+
+    private SessionTokenCodec codec;
+    private SAMLSecurityService.SAMLSession session;
+    private String token;
+    private ConcurrentHashMap<String, SAMLSecurityService.SAMLSession> sessions;
+    private String sessionId;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        codec = new SessionTokenCodec(Arrays.asList(secret), encrypt);
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < attributes; i++) {
+            values.put("urn:oid:2.5.4." + (40 + i), "value-" + i + "@example.org");
+        }
+        now = System.currentTimeMillis();
+        session = new SAMLSecurityService.SAMLSession(SPTenantContext.DEFAULT_TENANT_ID, SPHarness.USER,
+                "_" + UUID.randomUUID(), values, new Date(now));
+        token = codec.encode(session, now + TIMEOUT_MILLIS);
+        if (codec.decode(token, SPTenantContext.DEFAULT_TENANT_ID, now) == null) {
+            throw new IllegalStateException("Token did not verify");
+        }
+
+        sessions = new ConcurrentHashMap<>(SESSIONS * 2);
+        for (int i = 0; i < SESSIONS; i++) {
+            sessionId = "_" + UUID.randomUUID().toString().replace("-", "");
+            sessions.put(sessionId, session);
+        }
+    }
+
+    @Benchmark
+    public SAMLSecurityService.SAMLSession verifyToken() {
+        return codec.decode(token, SPTenantContext.DEFAULT_TENANT_ID, now);
+    }
+
+    @Benchmark
+    public boolean mapLookup() {
+        SAMLSecurityService.SAMLSession found = sessions.get(sessionId);
+        return found != null && now - found.getCreatedAt().getTime() <= TIMEOUT_MILLIS;
+    }
+
+    @Benchmark
+    public String issueToken() {
+        return codec.encode(session, now + TIMEOUT_MILLIS);
+    }
+}
@@ -0,0 +1,147 @@
+package com.saml.server.opensaml.benchmark;
+
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.SignatureValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature verification cost per algorithm and JCA provider. {@code verifyXml} checks a
+ * signed Response through {@link SignatureValidator} as the ACS does, including reference
+ * digests and canonicalization. {@code verifyJca} is the bare public-key operation over a
+ * SignedInfo-sized input. {@code provider=default} is the JVM's provider order: SunRsaSign
+ * and SunEC, or BouncyCastle where only it implements the algorithm (RSA-PSS).
+ * {@code provider=BC} pins both paths to BouncyCastle, as {@code saml.signature.provider=BC} does.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar SignatureAlgorithmBenchmark -p keyType=RSA,EC
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SignatureAlgorithmBenchmark {
+
+    private static final int SIGNED_INFO_BYTES = 600;
+
+    @Param({"RSA", "RSA_PSS", "EC", "EC_P384"})
+    public SyntheticIdP.KeyType keyType;
+
+    @Param({"default", "BC"})
+    public String provider;
+
+    private Signature xmlSignature;
+    private Credential credential;
+    private byte[] signedInfo;
+    private byte[] signatureValue;
+    private KeyPair keyPair;
+    private String jcaAlgorithm;
+
+    /**
+     * Per-thread JCA instance, as the ACS threads reuse theirs
+     */
+    @State(Scope.Thread)
+    public static class Verifier {
+
+        java.security.Signature signature;
+
+        @Setup(Level.Trial)
+        public void setUp(SignatureAlgorithmBenchmark benchmark) throws Exception {
+            signature = benchmark.newJcaSignature();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        OpenSAMLBootstrap.ensureInitialized();
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        // Every parameter combination runs in its own fork, so the global setting is safe
+        if (!"default".equals(provider)) {
+            JCEMapper.setProviderId(provider);
+        }
+
+        SyntheticIdP idp = SyntheticIdP.create(keyType);
+        Response generated = idp.createResponse("https://bench.invalid/saml/acs", "urn:bench:sp", SPHarness.USER, null,
+                SyntheticIdP.ResponseShape.defaults().signAssertions(false));
+        BasicParserPool parserPool = new BasicParserPool();
+        parserPool.initialize();
+        byte[] xml = Base64.getDecoder().decode(SyntheticIdP.encodePost(generated));
+        Element element = parserPool.parse(new ByteArrayInputStream(xml)).getDocumentElement();
+        Response response = (Response) XMLObjectSupport.getUnmarshaller(element).unmarshall(element);
+        xmlSignature = response.getSignature();
+        credential = idp.getDescriptor().getSigningCredentials().get(0);
+        SignatureValidator.validate(xmlSignature, credential);
+
+        jcaAlgorithm = JCEMapper.translateURItoJCEID(xmlSignature.getSignatureAlgorithm());
+        keyPair = generateKeyPair(keyType);
+        signedInfo = new byte[SIGNED_INFO_BYTES];
+        new Random(42).nextBytes(signedInfo);
+        java.security.Signature signer = newJcaSignature();
+        signer.initSign(keyPair.getPrivate());
+        signer.update(signedInfo);
+        signatureValue = signer.sign();
+    }
+
+    @Benchmark
+    public boolean verifyXml() throws Exception {
+        SignatureValidator.validate(xmlSignature, credential);
+        return true;
+    }
+
+    @Benchmark
+    public boolean verifyJca(Verifier verifier) throws Exception {
+        verifier.signature.initVerify(keyPair.getPublic());
+        verifier.signature.update(signedInfo);
+        return verifier.signature.verify(signatureValue);
+    }
+
+    java.security.Signature newJcaSignature() throws Exception {
+        return "default".equals(provider)
+                ? java.security.Signature.getInstance(jcaAlgorithm)
+                : java.security.Signature.getInstance(jcaAlgorithm, provider);
+    }
+
+    private static KeyPair generateKeyPair(SyntheticIdP.KeyType keyType) throws Exception {
+        KeyPairGenerator generator;
+        if (keyType == SyntheticIdP.KeyType.EC || keyType == SyntheticIdP.KeyType.EC_P384) {
+            generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec(keyType == SyntheticIdP.KeyType.EC_P384 ? "secp384r1" : "secp256r1"));
+        } else {
+            generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+        }
+        return generator.generateKeyPair();
+    }
+}
@@ -0,0 +1,81 @@
+package com.saml.server.opensaml.benchmark;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Writes a synthetic federation aggregate with one IdP per entity, each carrying
+ * its own signing certificate, roughly shaped like real eduGAIN-style metadata.
+ */
+final class SyntheticMetadata {
+
+    private SyntheticMetadata() {
+    }
+
+    static String entityId(int i) {
+        return "https://idp" + i + ".example.org/idp/shibboleth";
+    }
+
+    static void write(Path file, int entities) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate());
+        JcaX509CertificateConverter converter = new JcaX509CertificateConverter();
+        Date notBefore = new Date(System.currentTimeMillis() - 86400000L);
+        Date notAfter = new Date(System.currentTimeMillis() + 365L * 86400000L);
+
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<md:EntitiesDescriptor xmlns:md=\"urn:oasis:names:tc:SAML:2.0:metadata\" "
+                    + "xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\" Name=\"synthetic-federation\">\n");
+            for (int i = 0; i < entities; i++) {
+                // Distinct certificates over one key pair keep generation fast
+                X500Name subject = new X500Name("CN=idp" + i + ".example.org");
+                X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(subject,
+                        BigInteger.valueOf(i + 1L), notBefore, notAfter, subject, keyPair.getPublic());
+                byte[] der = converter.getCertificate(builder.build(signer)).getEncoded();
+                writeEntity(out, i, Base64.getMimeEncoder().encodeToString(der));
+            }
+            out.write("</md:EntitiesDescriptor>\n");
+        }
+    }
+
+    private static void writeEntity(Writer out, int i, String certificate) throws IOException {
+        String entityId = entityId(i);
+        String host = "https://idp" + i + ".example.org";
+        out.write("  <md:EntityDescriptor entityID=\"" + entityId + "\">\n");
+        out.write("    <md:IDPSSODescriptor protocolSupportEnumeration=\"urn:oasis:names:tc:SAML:2.0:protocol\">\n");
+        out.write("      <md:KeyDescriptor use=\"signing\"><ds:KeyInfo><ds:X509Data><ds:X509Certificate>\n");
+        out.write(certificate);
+        out.write("\n      </ds:X509Certificate></ds:X509Data></ds:KeyInfo></md:KeyDescriptor>\n");
+        out.write("      <md:NameIDFormat>urn:oasis:names:tc:SAML:2.0:nameid-format:transient</md:NameIDFormat>\n");
+        out.write("      <md:SingleSignOnService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST\" Location=\""
+                + host + "/idp/profile/SAML2/POST/SSO\"/>\n");
+        out.write("      <md:SingleSignOnService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-Redirect\" Location=\""
+                + host + "/idp/profile/SAML2/Redirect/SSO\"/>\n");
+        out.write("      <md:SingleLogoutService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-Redirect\" Location=\""
+                + host + "/idp/profile/SAML2/Redirect/SLO\"/>\n");
+        out.write("    </md:IDPSSODescriptor>\n");
+        out.write("    <md:Organization><md:OrganizationName xml:lang=\"en\">Institution " + i
+                + "</md:OrganizationName><md:OrganizationDisplayName xml:lang=\"en\">Institution " + i
+                + "</md:OrganizationDisplayName><md:OrganizationURL xml:lang=\"en\">" + host
+                + "</md:OrganizationURL></md:Organization>\n");
+        out.write("  </md:EntityDescriptor>\n");
+    }
+}
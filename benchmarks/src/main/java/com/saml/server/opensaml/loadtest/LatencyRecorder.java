@@ -0,0 +1,54 @@
+package com.saml.server.opensaml.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable array of latency samples in nanoseconds, owned by one worker thread.
+ * Recorders are merged once after the run, so recording is a plain array store.
+ */
+final class LatencyRecorder {
+
+    private long[] samples = new long[4096];
+    private int count;
+
+    void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * All samples of the given recorders, sorted ascending
+     */
+    static long[] merge(List<LatencyRecorder> recorders) {
+        int total = 0;
+        for (LatencyRecorder recorder : recorders) {
+            total += recorder.count;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.samples, 0, merged, offset, recorder.count);
+            offset += recorder.count;
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    /**
+     * Nearest-rank percentile of sorted samples, in milliseconds
+     */
+    static double percentileMillis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,136 @@
+package com.saml.server.opensaml.loadtest;
+
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Embedded Identity Provider for load tests, built on the JDK HTTP server.
+ * {@code /idp/sso} answers a Redirect-binding AuthnRequest with an auto-POST form carrying a
+ * signed Response for a fresh user; {@code /idp/slo} accepts any LogoutRequest.
+ * Users are authenticated without a login page, so only SAML work is measured.
+ */
+final class MockIdP {
+
+    static final String SSO_PATH = "/idp/sso";
+    static final String SLO_PATH = "/idp/slo";
+
+    private static final Pattern REQUEST_ID = Pattern.compile("\\sID=\"([^\"]+)\"");
+    private static final Pattern ACS_URL = Pattern.compile("AssertionConsumerServiceURL=\"([^\"]+)\"");
+    private static final Pattern AUDIENCE = Pattern.compile("<(?:\\w+:)?Issuer[^>]*>([^<]+)</");
+
+    private final SyntheticIdP idp;
+    private final SyntheticIdP.ResponseShape shape;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong users = new AtomicLong();
+
+    MockIdP(SyntheticIdP idp, SyntheticIdP.ResponseShape shape, int threads) throws IOException {
+        this.idp = idp;
+        this.shape = shape;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext(SSO_PATH, this::singleSignOn);
+        server.createContext(SLO_PATH, this::singleLogout);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    String baseURL() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void singleSignOn(HttpExchange exchange) throws IOException {
+        try {
+            String authnRequest = inflate(queryParameter(exchange, "SAMLRequest"));
+            String requestId = find(REQUEST_ID, authnRequest);
+            String acsURL = find(ACS_URL, authnRequest);
+            String audience = find(AUDIENCE, authnRequest);
+            String user = "user" + users.incrementAndGet() + "@loadtest.invalid";
+
+            String samlResponse = SyntheticIdP.encodePost(idp.createResponse(acsURL, audience, user, requestId, shape));
+            String form = "<html><body onload=\"document.forms[0].submit()\"><form method=\"post\" action=\"" + acsURL + "\">"
+                    + "<input type=\"hidden\" name=\"SAMLResponse\" value=\"" + samlResponse + "\"/>"
+                    + "</form></body></html>";
+            respond(exchange, 200, "text/html", form);
+        } catch (Exception e) {
+            respond(exchange, 400, "text/plain", "Invalid AuthnRequest: " + e);
+        }
+    }
+
+    private void singleLogout(HttpExchange exchange) throws IOException {
+        try {
+            inflate(queryParameter(exchange, "SAMLRequest"));
+            respond(exchange, 200, "text/plain", "Logged out");
+        } catch (Exception e) {
+            respond(exchange, 400, "text/plain", "Invalid LogoutRequest: " + e);
+        }
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                    return URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+                }
+            }
+        }
+        throw new IOException("Missing " + name);
+    }
+
+    private static String inflate(String encoded) throws IOException {
+        InflaterInputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(Base64.getDecoder().decode(encoded)), new Inflater(true));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String find(Pattern pattern, String xml) throws IOException {
+        Matcher matcher = pattern.matcher(xml);
+        if (!matcher.find()) {
+            throw new IOException("No match for " + pattern.pattern());
+        }
+        return matcher.group(1);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.saml.server.opensaml.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saml.server.opensaml.OpensamlApplication;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Single-box HTTP load test of full SSO and SLO flows.
+ *
+ * Starts the SP on an ephemeral port and an embedded {@link MockIdP}, then runs concurrent
+ * virtual users through {@code /saml/login}, the IdP, {@code /saml/acs}, {@code /saml/logout}
+ * and the IdP logout endpoint. Reports throughput, p50/p99/p999 latency per step and an
+ * error breakdown. Options, all optional:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.saml.server.opensaml.loadtest.SSOLoadTest \
+ *     --concurrency=64 --warmup=10 --duration=60 --slo=true \
+ *     --idp-key=EC --idp-threads=4 --attributes=3 \
+ *     --server.tomcat.max-threads=200
+ * </pre>
+ *
+ * Arguments starting with {@code --server.}, {@code --saml.}, {@code --spring.} or
+ * {@code --logging.} are passed to the SP, so thread pool sizing can be compared run by run.
+ * The mock IdP signs every response on the same machine; EC keys keep its share of CPU low.
+ */
+public final class SSOLoadTest {
+
+    private static final String RELAY_STATE = "loadtest";
+    private static final String SP_ACS_URL = "http://sp.loadtest.invalid/saml/acs";
+    private static final Pattern SAML_RESPONSE_FIELD = Pattern.compile("name=\"SAMLResponse\" value=\"([^\"]+)\"");
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    enum Step { LOGIN, IDP_SSO, ACS, LOGOUT, IDP_SLO, FLOW }
+
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+    private volatile boolean measuring;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        Map<String, Object> spProperties = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            if (name.startsWith("server.") || name.startsWith("saml.") || name.startsWith("spring.") || name.startsWith("logging.")) {
+                spProperties.put(name, value);
+            } else {
+                options.put(name, value);
+            }
+        }
+        new SSOLoadTest().run(options, spProperties);
+    }
+
+    private void run(Map<String, String> options, Map<String, Object> spProperties) throws Exception {
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        boolean slo = Boolean.parseBoolean(options.getOrDefault("slo", "true"));
+        SyntheticIdP.KeyType keyType = SyntheticIdP.KeyType.valueOf(options.getOrDefault("idp-key", "RSA"));
+        int idpThreads = Integer.parseInt(options.getOrDefault("idp-threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int attributes = Integer.parseInt(options.getOrDefault("attributes", "3"));
+
+        // Keep-alive pool large enough for every virtual user
+        System.setProperty("http.maxConnections", String.valueOf(concurrency * 2));
+
+        SyntheticIdP idp = SyntheticIdP.create(keyType);
+        MockIdP mockIdP = new MockIdP(idp, SyntheticIdP.ResponseShape.defaults().attributesPerAssertion(attributes), idpThreads);
+        mockIdP.start();
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("saml.warmup.enabled", "false");
+        properties.put("saml.entity-id", "urn:loadtest:sp");
+        properties.put("saml.assertion-consumer-service-url", SP_ACS_URL);
+        properties.put("saml.idp-entity-id", idp.getEntityId());
+        properties.put("saml.idp-single-sign-on-service-url", mockIdP.baseURL() + MockIdP.SSO_PATH);
+        properties.put("saml.idp-single-logout-service-url", mockIdP.baseURL() + MockIdP.SLO_PATH);
+        properties.put("saml.idp-x509-certificate", "-----BEGIN CERTIFICATE-----\n"
+                + Base64.getMimeEncoder().encodeToString(idp.getCertificate().getEncoded())
+                + "\n-----END CERTIFICATE-----");
+        properties.put("logging.level.root", "WARN");
+        properties.putAll(spProperties);
+
+        ConfigurableApplicationContext sp = new SpringApplicationBuilder(OpensamlApplication.class)
+                .bannerMode(Banner.Mode.OFF)
+                .properties(properties)
+                .run();
+        String spURL = "http://127.0.0.1:" + sp.getEnvironment().getProperty("local.server.port");
+
+        List<Map<Step, LatencyRecorder>> recorders = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Map<Step, LatencyRecorder> workerRecorders = new HashMap<>();
+            for (Step step : Step.values()) {
+                workerRecorders.put(step, new LatencyRecorder());
+            }
+            recorders.add(workerRecorders);
+            Thread worker = new Thread(() -> work(spURL, slo, workerRecorders), "loadtest-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+
+        System.out.printf("Warming up for %d s with %d virtual users against %s%n", warmupSeconds, concurrency, spURL);
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        errors.clear();
+        measuring = true;
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        measuring = false;
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        report(recorders, elapsedSeconds, concurrency);
+        sp.close();
+        mockIdP.stop();
+    }
+
+    private void work(String spURL, boolean slo, Map<Step, LatencyRecorder> recorders) {
+        while (running) {
+            boolean measured = measuring;
+            long flowStart = System.nanoTime();
+            Step step = Step.LOGIN;
+            try {
+                long stepStart = System.nanoTime();
+                String ssoRedirect = expectRedirect(step, get(spURL + "/saml/login?relayState=" + RELAY_STATE));
+                stepStart = record(recorders, step, stepStart, measured);
+
+                step = Step.IDP_SSO;
+                Matcher form = SAML_RESPONSE_FIELD.matcher(expectOk(step, get(ssoRedirect)));
+                if (!form.find()) {
+                    throw new StepFailure(step, "no_saml_response");
+                }
+                stepStart = record(recorders, step, stepStart, measured);
+
+                step = Step.ACS;
+                JsonNode acs = JSON.readTree(expectOk(step, post(spURL + "/saml/acs",
+                        "SAMLResponse=" + URLEncoder.encode(form.group(1), "UTF-8") + "&RelayState=" + RELAY_STATE)));
+                if (!acs.path("success").asBoolean()) {
+                    // The reason is only in the SP's saml.acs.rejections metric and its log
+                    throw new StepFailure(step, "rejected");
+                }
+                stepStart = record(recorders, step, stepStart, measured);
+
+                if (slo) {
+                    step = Step.LOGOUT;
+                    String sloRedirect = expectRedirect(step, get(spURL + "/saml/logout?nameId="
+                            + URLEncoder.encode(acs.path("userName").asText(), "UTF-8")));
+                    stepStart = record(recorders, step, stepStart, measured);
+
+                    step = Step.IDP_SLO;
+                    expectOk(step, get(sloRedirect));
+                    record(recorders, step, stepStart, measured);
+                }
+                record(recorders, Step.FLOW, flowStart, measured);
+            } catch (StepFailure e) {
+                countError(measured, e.getMessage());
+            } catch (Exception e) {
+                countError(measured, step.name().toLowerCase() + ":" + e.getClass().getSimpleName());
+            }
+        }
+    }
+
+    private static long record(Map<Step, LatencyRecorder> recorders, Step step, long start, boolean measured) {
+        long now = System.nanoTime();
+        if (measured) {
+            recorders.get(step).record(now - start);
+        }
+        return now;
+    }
+
+    private void countError(boolean measured, String key) {
+        if (measured) {
+            errors.computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+    }
+
+    private void report(List<Map<Step, LatencyRecorder>> recorders, double elapsedSeconds, int concurrency) {
+        System.out.printf("%nConcurrency %d, measured %.1f s%n", concurrency, elapsedSeconds);
+        System.out.printf("%-8s %10s %10s %10s %10s %10s%n", "step", "count", "ops/s", "p50 ms", "p99 ms", "p999 ms");
+        for (Step step : Step.values()) {
+            List<LatencyRecorder> stepRecorders = new ArrayList<>();
+            for (Map<Step, LatencyRecorder> worker : recorders) {
+                stepRecorders.add(worker.get(step));
+            }
+            long[] sorted = LatencyRecorder.merge(stepRecorders);
+            System.out.printf("%-8s %10d %10.1f %10.2f %10.2f %10.2f%n", step.name().toLowerCase(), sorted.length,
+                    sorted.length / elapsedSeconds,
+                    LatencyRecorder.percentileMillis(sorted, 0.50),
+                    LatencyRecorder.percentileMillis(sorted, 0.99),
+                    LatencyRecorder.percentileMillis(sorted, 0.999));
+        }
+
+        Map<String, LongAdder> sortedErrors = new TreeMap<>(errors);
+        System.out.printf("%nErrors: %s%n", sortedErrors.isEmpty() ? "none" : "");
+        for (Map.Entry<String, LongAdder> error : sortedErrors.entrySet()) {
+            System.out.printf("  %-40s %d%n", error.getKey(), error.getValue().sum());
+        }
+    }
+
+    private static String expectRedirect(Step step, HttpResult result) throws StepFailure {
+        if (result.status != 302 || result.location == null) {
+            throw new StepFailure(step, "http_" + result.status);
+        }
+        return result.location;
+    }
+
+    private static String expectOk(Step step, HttpResult result) throws StepFailure {
+        if (result.status != 200) {
+            throw new StepFailure(step, "http_" + result.status);
+        }
+        return result.body;
+    }
+
+    private static HttpResult get(String url) throws IOException {
+        HttpURLConnection connection = open(url);
+        return read(connection);
+    }
+
+    private static HttpResult post(String url, String form) throws IOException {
+        HttpURLConnection connection = open(url);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(form.getBytes(StandardCharsets.UTF_8));
+        }
+        return read(connection);
+    }
+
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setInstanceFollowRedirects(false);
+        connection.setConnectTimeout(10000);
+        connection.setReadTimeout(30000);
+        return connection;
+    }
+
+    private static HttpResult read(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in != null) {
+            // Drain fully so the connection goes back to the keep-alive pool
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[8192];
+                int len;
+                while ((len = stream.read(buffer)) > 0) {
+                    body.write(buffer, 0, len);
+                }
+            }
+        }
+        return new HttpResult(status, connection.getHeaderField("Location"), new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static final class HttpResult {
+        final int status;
+        final String location;
+        final String body;
+
+        HttpResult(int status, String location, String body) {
+            this.status = status;
+            this.location = location;
+            this.body = body;
+        }
+    }
+
+    private static final class StepFailure extends Exception {
+        StepFailure(Step step, String reason) {
+            super(step.name().toLowerCase() + ":" + reason, null, false, false);
+        }
+    }
+}
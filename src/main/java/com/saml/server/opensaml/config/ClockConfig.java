@@ -0,0 +1,19 @@
+package com.saml.server.opensaml.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+/**
+ * Time source for everything that stamps or checks SAML timestamps, sessions and replay IDs.
+ * Tests replace it with a controllable clock to simulate hours of traffic.
+ */
+@Configuration
+public class ClockConfig {
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
+}
@@ -0,0 +1,31 @@
+package com.saml.server.opensaml.config;
+
+import com.saml.server.opensaml.metrics.PrometheusScrapeEndpoint;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Micrometer registry and its Prometheus scrape endpoint ({@code /prometheus}).
+ * Wired by hand since Micrometer auto-configuration needs a newer Spring Boot.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Value("${spring.application.name:opensaml}")
+    private String applicationName;
+
+    @Bean
+    public PrometheusMeterRegistry meterRegistry() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().commonTags("application", applicationName);
+        return registry;
+    }
+
+    @Bean
+    public PrometheusScrapeEndpoint prometheusScrapeEndpoint(PrometheusMeterRegistry meterRegistry) {
+        return new PrometheusScrapeEndpoint(meterRegistry);
+    }
+}
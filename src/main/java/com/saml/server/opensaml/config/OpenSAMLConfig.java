@@ -1,19 +1,79 @@
 package com.saml.server.opensaml.config;
 
-import org.opensaml.core.config.InitializationService;
+import com.saml.server.opensaml.service.SAMLObjects;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import net.shibboleth.utilities.java.support.xml.ParserPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Configuration
 public class OpenSAMLConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(OpenSAMLConfig.class);
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    private final Map<String, Object> initializationReport = new LinkedHashMap<>();
+
     @PostConstruct
     public void init() {
         try {
-            InitializationService.initialize();
+            String mode = samlProperties.getOpensamlInitializationMode();
+            long start = System.nanoTime();
+            Map<String, Long> timings = OpenSAMLInitializer.initialize(mode);
+            long totalMillis = (System.nanoTime() - start) / 1000000;
+
+            Map<String, Long> phases = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> timing : timings.entrySet()) {
+                phases.put(timing.getKey(), timing.getValue() / 1000);
+            }
+            initializationReport.put("mode", mode);
+            initializationReport.put("totalMillis", totalMillis);
+            initializationReport.put("phaseMicros", phases);
+            log.info("OpenSAML initialized in {} mode in {} ms", mode, totalMillis);
         } catch (Exception e) {
             throw new RuntimeException("Error initializing OpenSAML", e);
         }
     }
+
+    /**
+     * Shared, secure DOM parser pool for all tenants
+     */
+    @Bean
+    public ParserPool parserPool() {
+        BasicParserPool parserPool = new BasicParserPool();
+        parserPool.setMaxPoolSize(samlProperties.getParserPoolSize());
+        try {
+            parserPool.initialize();
+        } catch (ComponentInitializationException e) {
+            throw new RuntimeException("Error initializing parser pool", e);
+        }
+        return parserPool;
+    }
+
+    /**
+     * Builders and unmarshallers resolved once; created after {@link #init()} has registered the providers
+     */
+    @Bean
+    public SAMLObjects samlObjects() {
+        return new SAMLObjects();
+    }
+
+    /**
+     * Expose OpenSAML startup phase timings on the actuator info endpoint
+     */
+    @Bean
+    public InfoContributor openSAMLInitializationInfo() {
+        return builder -> builder.withDetail("opensamlInitialization", initializationReport);
+    }
 }
@@ -0,0 +1,69 @@
+package com.saml.server.opensaml.config;
+
+import org.opensaml.core.config.InitializationException;
+import org.opensaml.core.config.Initializer;
+import org.opensaml.core.xml.config.AbstractXMLObjectProviderInitializer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Runs the OpenSAML initializers and records how long each one takes.
+ *
+ * Full mode is equivalent to {@code InitializationService.initialize()}. Selective mode runs
+ * the same initializers but replaces the SAML XMLObject provider initializer, which registers
+ * SAML 1, ECP, metadata UI and many other extensions, with one that registers only the SAML 2.0
+ * assertion, protocol and metadata providers this SP produces and consumes.
+ */
+public final class OpenSAMLInitializer {
+
+    public static final String MODE_FULL = "full";
+    public static final String MODE_SELECTIVE = "selective";
+
+    private OpenSAMLInitializer() {
+    }
+
+    /**
+     * Initialize OpenSAML; returns elapsed nanoseconds per initializer, in execution order
+     */
+    public static Map<String, Long> initialize(String mode) throws InitializationException {
+        boolean selective = MODE_SELECTIVE.equalsIgnoreCase(mode);
+        Map<String, Long> timings = new LinkedHashMap<>();
+
+        for (Initializer initializer : ServiceLoader.load(Initializer.class)) {
+            if (selective && isSAMLProviderInitializer(initializer)) {
+                initializer = new SAML2ProviderInitializer();
+            }
+            long start = System.nanoTime();
+            initializer.init();
+            timings.put(initializer.getClass().getName(), System.nanoTime() - start);
+        }
+
+        return Collections.unmodifiableMap(timings);
+    }
+
+    private static boolean isSAMLProviderInitializer(Initializer initializer) {
+        Class<?> type = initializer.getClass();
+        return type.getName().startsWith("org.opensaml.saml.")
+                && "XMLObjectProviderInitializer".equals(type.getSimpleName());
+    }
+
+    /**
+     * Registers only the SAML 2.0 core and metadata XMLObject providers
+     */
+    static final class SAML2ProviderInitializer extends AbstractXMLObjectProviderInitializer {
+
+        private static final String[] CONFIGS = {
+            "/saml2-assertion-config.xml",
+            "/saml2-protocol-config.xml",
+            "/saml2-metadata-config.xml",
+        };
+
+        @Override
+        protected String[] getConfigResources() {
+            return CONFIGS;
+        }
+    }
+}
@@ -3,6 +3,10 @@ package com.saml.server.opensaml.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 @Component
 @ConfigurationProperties(prefix = "saml")
 public class SAMLProperties {
@@ -21,7 +25,23 @@ public class SAMLProperties {
     private boolean wantNameId = true;
     private boolean wantNameIdEncrypted = false;
     private boolean wantAssertionsEncrypted = false;
+    private boolean authnRequestsSigned = true;
     private int assertionValidityInSeconds = 300;
+    private final Metadata metadata = new Metadata();
+    private List<Tenant> tenants = new ArrayList<>();
+    private int parserPoolSize = 50;
+    private String opensamlInitializationMode = OpenSAMLInitializer.MODE_FULL;
+    private final Warmup warmup = new Warmup();
+    private final Metrics metrics = new Metrics();
+    private final Diagnostics diagnostics = new Diagnostics();
+    private final Acs acs = new Acs();
+    private final Bindings bindings = new Bindings();
+    private final Signature signature = new Signature();
+    private final Decryption decryption = new Decryption();
+    private final Pkix pkix = new Pkix();
+    private final InResponseTo inResponseTo = new InResponseTo();
+    private final Session session = new Session();
+    private final Attributes attributes = new Attributes();
     
     // Getters and Setters
     public String getEntityId() {
@@ -104,6 +124,10 @@ public class SAMLProperties {
         this.nameIdFormat = nameIdFormat;
     }
     
+    /**
+     * Reject assertions without their own signature. When off, a signed Response still covers
+     * unsigned assertions, but a Response with neither is always rejected.
+     */
     public boolean isWantAssertionsSigned() {
         return wantAssertionsSigned;
     }
@@ -136,6 +160,19 @@ public class SAMLProperties {
         this.wantAssertionsEncrypted = wantAssertionsEncrypted;
     }
     
+    /**
+     * Sign AuthnRequests and logout messages sent to the IdP: SigAlg/Signature parameters over
+     * HTTP-Redirect, an enveloped XML signature over HTTP-POST. Tenants without an SP key pair
+     * send unsigned messages, which is logged at startup.
+     */
+    public boolean isAuthnRequestsSigned() {
+        return authnRequestsSigned;
+    }
+    
+    public void setAuthnRequestsSigned(boolean authnRequestsSigned) {
+        this.authnRequestsSigned = authnRequestsSigned;
+    }
+    
     public int getAssertionValidityInSeconds() {
         return assertionValidityInSeconds;
     }
@@ -143,4 +180,836 @@ public class SAMLProperties {
     public void setAssertionValidityInSeconds(int assertionValidityInSeconds) {
         this.assertionValidityInSeconds = assertionValidityInSeconds;
     }
+    
+    public Metadata getMetadata() {
+        return metadata;
+    }
+    
+    public List<Tenant> getTenants() {
+        return tenants;
+    }
+    
+    public void setTenants(List<Tenant> tenants) {
+        this.tenants = tenants;
+    }
+    
+    public int getParserPoolSize() {
+        return parserPoolSize;
+    }
+    
+    public void setParserPoolSize(int parserPoolSize) {
+        this.parserPoolSize = parserPoolSize;
+    }
+    
+    public String getOpensamlInitializationMode() {
+        return opensamlInitializationMode;
+    }
+    
+    public void setOpensamlInitializationMode(String opensamlInitializationMode) {
+        this.opensamlInitializationMode = opensamlInitializationMode;
+    }
+    
+    public Warmup getWarmup() {
+        return warmup;
+    }
+    
+    public Metrics getMetrics() {
+        return metrics;
+    }
+    
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+    
+    public Acs getAcs() {
+        return acs;
+    }
+    
+    public Bindings getBindings() {
+        return bindings;
+    }
+    
+    public Signature getSignature() {
+        return signature;
+    }
+
+    public Decryption getDecryption() {
+        return decryption;
+    }
+    
+    public Pkix getPkix() {
+        return pkix;
+    }
+    
+    public InResponseTo getInResponseTo() {
+        return inResponseTo;
+    }
+    
+    public Session getSession() {
+        return session;
+    }
+    
+    public Attributes getAttributes() {
+        return attributes;
+    }
+    
+    /**
+     * IdP metadata aggregate settings (saml.metadata.*)
+     */
+    public static class Metadata {
+        
+        private String file;
+        private String signingCertificateFile;
+        private boolean allowUnsigned;
+        private String idpCertificateFile;
+        private long refreshIntervalMillis = 30000;
+        private String cacheDir;
+        
+        public String getFile() {
+            return file;
+        }
+        
+        public void setFile(String file) {
+            this.file = file;
+        }
+        
+        public String getSigningCertificateFile() {
+            return signingCertificateFile;
+        }
+        
+        public void setSigningCertificateFile(String signingCertificateFile) {
+            this.signingCertificateFile = signingCertificateFile;
+        }
+        
+        /**
+         * Load the metadata file without a signing certificate, i.e. without verifying it
+         */
+        public boolean isAllowUnsigned() {
+            return allowUnsigned;
+        }
+        
+        public void setAllowUnsigned(boolean allowUnsigned) {
+            this.allowUnsigned = allowUnsigned;
+        }
+        
+        public String getIdpCertificateFile() {
+            return idpCertificateFile;
+        }
+        
+        public void setIdpCertificateFile(String idpCertificateFile) {
+            this.idpCertificateFile = idpCertificateFile;
+        }
+        
+        public long getRefreshIntervalMillis() {
+            return refreshIntervalMillis;
+        }
+        
+        public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+            this.refreshIntervalMillis = refreshIntervalMillis;
+        }
+        
+        public String getCacheDir() {
+            return cacheDir;
+        }
+        
+        public void setCacheDir(String cacheDir) {
+            this.cacheDir = cacheDir;
+        }
+    }
+    
+    /**
+     * Startup JIT warm-up settings (saml.warmup.*)
+     */
+    public static class Warmup {
+        
+        private boolean enabled = true;
+        private int iterations = 1000;
+        private int reportBatches = 10;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public int getIterations() {
+            return iterations;
+        }
+        
+        public void setIterations(int iterations) {
+            this.iterations = iterations;
+        }
+        
+        public int getReportBatches() {
+            return reportBatches;
+        }
+        
+        public void setReportBatches(int reportBatches) {
+            this.reportBatches = reportBatches;
+        }
+    }
+    
+    /**
+     * ACS instrumentation settings (saml.metrics.*)
+     */
+    public static class Metrics {
+        
+        private boolean enabled = true;
+        private boolean histograms = false;
+        private List<String> idpTags = new ArrayList<>();
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public boolean isHistograms() {
+            return histograms;
+        }
+        
+        public void setHistograms(boolean histograms) {
+            this.histograms = histograms;
+        }
+        
+        /**
+         * IdP entity IDs that get their own {@code idp} tag value, besides the configured IdPs of the
+         * default and the other tenants; responses from any other IdP are tagged {@code other}
+         */
+        public List<String> getIdpTags() {
+            return idpTags;
+        }
+        
+        public void setIdpTags(List<String> idpTags) {
+            this.idpTags = idpTags;
+        }
+    }
+    
+    /**
+     * Slow-request capture settings (saml.diagnostics.*)
+     */
+    public static class Diagnostics {
+        
+        private long slowRequestThresholdMillis = 500;
+        private int slowRequestCapacity = 64;
+        
+        public long getSlowRequestThresholdMillis() {
+            return slowRequestThresholdMillis;
+        }
+        
+        public void setSlowRequestThresholdMillis(long slowRequestThresholdMillis) {
+            this.slowRequestThresholdMillis = slowRequestThresholdMillis;
+        }
+        
+        public int getSlowRequestCapacity() {
+            return slowRequestCapacity;
+        }
+        
+        public void setSlowRequestCapacity(int slowRequestCapacity) {
+            this.slowRequestCapacity = slowRequestCapacity;
+        }
+    }
+    
+    /**
+     * Assertion Consumer Service settings (saml.acs.*)
+     */
+    public static class Acs {
+        
+        private final Async async = new Async();
+        
+        public Async getAsync() {
+            return async;
+        }
+    }
+    
+    /**
+     * Asynchronous ACS processing settings (saml.acs.async.*)
+     */
+    public static class Async {
+        
+        private boolean enabled = false;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int maxPending = 1000;
+        private long timeoutMillis = 10000;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public int getThreads() {
+            return threads;
+        }
+        
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+        
+        public int getMaxPending() {
+            return maxPending;
+        }
+        
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+        
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+        
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+    
+    /**
+     * How /saml/login and /saml/logout answer the browser (saml.bindings.*)
+     */
+    public static class Bindings {
+        
+        public static final String REDIRECT = "redirect";
+        public static final String POST = "post";
+        
+        private String outbound = REDIRECT;
+        private boolean json = false;
+        
+        /**
+         * Binding for requests sent to the IdP: redirect (302) or post (auto-submit form)
+         */
+        public String getOutbound() {
+            return outbound;
+        }
+        
+        public void setOutbound(String outbound) {
+            this.outbound = outbound;
+        }
+        
+        /**
+         * Answer with the legacy JSON envelope holding redirectUrl instead of a binding response
+         */
+        public boolean isJson() {
+            return json;
+        }
+        
+        public void setJson(boolean json) {
+            this.json = json;
+        }
+    }
+    
+    /**
+     * XML signature verification on the ACS (saml.signature.*)
+     */
+    public static class Signature {
+        
+        public static final String RSA_SHA256 = "http://www.w3.org/2001/04/xmldsig-more#rsa-sha256";
+        public static final String RSA_SHA384 = "http://www.w3.org/2001/04/xmldsig-more#rsa-sha384";
+        public static final String RSA_SHA512 = "http://www.w3.org/2001/04/xmldsig-more#rsa-sha512";
+        public static final String RSA_PSS_SHA256 = "http://www.w3.org/2007/05/xmldsig-more#sha256-rsa-MGF1";
+        public static final String RSA_PSS_SHA384 = "http://www.w3.org/2007/05/xmldsig-more#sha384-rsa-MGF1";
+        public static final String RSA_PSS_SHA512 = "http://www.w3.org/2007/05/xmldsig-more#sha512-rsa-MGF1";
+        public static final String ECDSA_SHA256 = "http://www.w3.org/2001/04/xmldsig-more#ecdsa-sha256";
+        public static final String ECDSA_SHA384 = "http://www.w3.org/2001/04/xmldsig-more#ecdsa-sha384";
+        public static final String ECDSA_SHA512 = "http://www.w3.org/2001/04/xmldsig-more#ecdsa-sha512";
+        
+        private List<String> allowedAlgorithms = new ArrayList<>(Arrays.asList(
+                RSA_SHA256, RSA_SHA384, RSA_SHA512,
+                RSA_PSS_SHA256, RSA_PSS_SHA384, RSA_PSS_SHA512,
+                ECDSA_SHA256, ECDSA_SHA384, ECDSA_SHA512));
+        private String provider;
+        
+        /**
+         * SignatureMethod URIs accepted on Responses and Assertions; SHA-1 is not listed by default
+         */
+        public List<String> getAllowedAlgorithms() {
+            return allowedAlgorithms;
+        }
+        
+        public void setAllowedAlgorithms(List<String> allowedAlgorithms) {
+            this.allowedAlgorithms = allowedAlgorithms;
+        }
+        
+        /**
+         * JCA provider for every verification (for example SunEC or BC), or unset for the JVM's provider order
+         */
+        public String getProvider() {
+            return provider;
+        }
+        
+        public void setProvider(String provider) {
+            this.provider = provider;
+        }
+    }
+    
+    /**
+     * Decryption of encrypted assertions and NameIDs on the ACS (saml.decryption.*)
+     */
+    public static class Decryption {
+        
+        public static final String RSA_OAEP = "http://www.w3.org/2001/04/xmlenc#rsa-oaep-mgf1p";
+        public static final String RSA_OAEP_11 = "http://www.w3.org/2009/xmlenc11#rsa-oaep";
+        public static final String AES128_GCM = "http://www.w3.org/2009/xmlenc11#aes128-gcm";
+        public static final String AES192_GCM = "http://www.w3.org/2009/xmlenc11#aes192-gcm";
+        public static final String AES256_GCM = "http://www.w3.org/2009/xmlenc11#aes256-gcm";
+        public static final String DIGEST_SHA1 = "http://www.w3.org/2000/09/xmldsig#sha1";
+        public static final String DIGEST_SHA256 = "http://www.w3.org/2001/04/xmlenc#sha256";
+        public static final String DIGEST_SHA384 = "http://www.w3.org/2001/04/xmldsig-more#sha384";
+        public static final String DIGEST_SHA512 = "http://www.w3.org/2001/04/xmlenc#sha512";
+        public static final String MGF1_SHA1 = "http://www.w3.org/2009/xmlenc11#mgf1sha1";
+        public static final String MGF1_SHA256 = "http://www.w3.org/2009/xmlenc11#mgf1sha256";
+        public static final String MGF1_SHA384 = "http://www.w3.org/2009/xmlenc11#mgf1sha384";
+        public static final String MGF1_SHA512 = "http://www.w3.org/2009/xmlenc11#mgf1sha512";
+        
+        private List<String> allowedAlgorithms = new ArrayList<>(Arrays.asList(
+                RSA_OAEP, RSA_OAEP_11,
+                AES128_GCM, AES192_GCM, AES256_GCM,
+                DIGEST_SHA1, DIGEST_SHA256, DIGEST_SHA384, DIGEST_SHA512,
+                MGF1_SHA1, MGF1_SHA256, MGF1_SHA384, MGF1_SHA512));
+        
+        /**
+         * EncryptionMethod URIs accepted on EncryptedData and EncryptedKey, plus the DigestMethod and
+         * MGF URIs inside RSA-OAEP; RSA 1.5 key transport and AES-CBC are not listed by default
+         */
+        public List<String> getAllowedAlgorithms() {
+            return allowedAlgorithms;
+        }
+        
+        public void setAllowedAlgorithms(List<String> allowedAlgorithms) {
+            this.allowedAlgorithms = allowedAlgorithms;
+        }
+    }
+    
+    /**
+     * PKIX path validation of IdP signing certificates (saml.pkix.*)
+     */
+    public static class Pkix {
+        
+        private boolean enabled = false;
+        private String trustAnchorsFile;
+        private String intermediatesFile;
+        private String crlDir;
+        private boolean revocationEnabled = true;
+        private long maxCacheMillis = 3600000;
+        private long refreshIntervalMillis = 300000;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        /**
+         * PEM bundle of the CA certificates IdP signing certificates must chain to
+         */
+        public String getTrustAnchorsFile() {
+            return trustAnchorsFile;
+        }
+        
+        public void setTrustAnchorsFile(String trustAnchorsFile) {
+            this.trustAnchorsFile = trustAnchorsFile;
+        }
+        
+        /**
+         * Optional PEM bundle of intermediate CA certificates used to build paths
+         */
+        public String getIntermediatesFile() {
+            return intermediatesFile;
+        }
+        
+        public void setIntermediatesFile(String intermediatesFile) {
+            this.intermediatesFile = intermediatesFile;
+        }
+        
+        /**
+         * Directory of locally mirrored CRLs (*.crl or *.pem, DER or PEM encoded)
+         */
+        public String getCrlDir() {
+            return crlDir;
+        }
+        
+        public void setCrlDir(String crlDir) {
+            this.crlDir = crlDir;
+        }
+        
+        public boolean isRevocationEnabled() {
+            return revocationEnabled;
+        }
+        
+        public void setRevocationEnabled(boolean revocationEnabled) {
+            this.revocationEnabled = revocationEnabled;
+        }
+        
+        /**
+         * Upper bound on how long a validated path is reused; CRL nextUpdate and certificate expiry cut it shorter
+         */
+        public long getMaxCacheMillis() {
+            return maxCacheMillis;
+        }
+        
+        public void setMaxCacheMillis(long maxCacheMillis) {
+            this.maxCacheMillis = maxCacheMillis;
+        }
+        
+        /**
+         * How often anchors, intermediates and CRLs are re-read from disk
+         */
+        public long getRefreshIntervalMillis() {
+            return refreshIntervalMillis;
+        }
+        
+        public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+            this.refreshIntervalMillis = refreshIntervalMillis;
+        }
+    }
+    
+    /**
+     * Tracking of outstanding AuthnRequest IDs and InResponseTo checking (saml.in-response-to.*)
+     */
+    public static class InResponseTo {
+        
+        public static final String STORE_MEMORY = "memory";
+        public static final String STORE_STATELESS = "stateless";
+        public static final String STORE_NONE = "none";
+        
+        private String store = STORE_MEMORY;
+        private boolean allowUnsolicited = false;
+        private long ttlMillis = 600000;
+        private int maxPending = 1000000;
+        private String hmacKey;
+        
+        /**
+         * memory (single-use IDs held on this node), stateless (HMAC-protected IDs, no server state) or none
+         */
+        public String getStore() {
+            return store;
+        }
+        
+        public void setStore(String store) {
+            this.store = store;
+        }
+        
+        /**
+         * Accept IdP-initiated Responses that carry no InResponseTo
+         */
+        public boolean isAllowUnsolicited() {
+            return allowUnsolicited;
+        }
+        
+        public void setAllowUnsolicited(boolean allowUnsolicited) {
+            this.allowUnsolicited = allowUnsolicited;
+        }
+        
+        /**
+         * How long an AuthnRequest ID is accepted after it was issued
+         */
+        public long getTtlMillis() {
+            return ttlMillis;
+        }
+        
+        public void setTtlMillis(long ttlMillis) {
+            this.ttlMillis = ttlMillis;
+        }
+        
+        /**
+         * Upper bound on outstanding IDs held by the memory store; beyond it the oldest are evicted
+         */
+        public int getMaxPending() {
+            return maxPending;
+        }
+        
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+        
+        /**
+         * Base64 HMAC-SHA256 key shared by all nodes for the stateless store; random per JVM when unset
+         */
+        public String getHmacKey() {
+            return hmacKey;
+        }
+        
+        public void setHmacKey(String hmacKey) {
+            this.hmacKey = hmacKey;
+        }
+    }
+    
+    /**
+     * Where SP sessions live after a successful login (saml.session.*)
+     */
+    public static class Session {
+        
+        public static final String STORE_MEMORY = "memory";
+        public static final String STORE_STATELESS = "stateless";
+        
+        private String store = STORE_MEMORY;
+        private List<String> keys = new ArrayList<>();
+        private boolean encrypt = false;
+        private List<String> tokenAttributes = new ArrayList<>();
+        private String cookieName = "SAML_SESSION";
+        
+        /**
+         * memory (random ID, session held on this node) or stateless (the session is the signed cookie)
+         */
+        public String getStore() {
+            return store;
+        }
+        
+        public void setStore(String store) {
+            this.store = store;
+        }
+        
+        /**
+         * Base64 token keys, newest first; the first signs new tokens and all of them verify
+         */
+        public List<String> getKeys() {
+            return keys;
+        }
+        
+        public void setKeys(List<String> keys) {
+            this.keys = keys;
+        }
+        
+        /**
+         * Encrypt the token body as well as authenticating it
+         */
+        public boolean isEncrypt() {
+            return encrypt;
+        }
+        
+        public void setEncrypt(boolean encrypt) {
+            this.encrypt = encrypt;
+        }
+        
+        /**
+         * Attributes copied into stateless tokens; others are dropped to keep the cookie small
+         */
+        public List<String> getTokenAttributes() {
+            return tokenAttributes;
+        }
+        
+        public void setTokenAttributes(List<String> tokenAttributes) {
+            this.tokenAttributes = tokenAttributes;
+        }
+        
+        public String getCookieName() {
+            return cookieName;
+        }
+        
+        public void setCookieName(String cookieName) {
+            this.cookieName = cookieName;
+        }
+    }
+    
+    /**
+     * Attribute mapping applied to validated assertions (saml.attributes.*).
+     * With no mappings every attribute passes through under its SAML name with its first value;
+     * once an IdP has mappings, only mapped attributes are kept.
+     */
+    public static class Attributes {
+        
+        private List<AttributeMapping> mappings = new ArrayList<>();
+        
+        public List<AttributeMapping> getMappings() {
+            return mappings;
+        }
+        
+        public void setMappings(List<AttributeMapping> mappings) {
+            this.mappings = mappings;
+        }
+    }
+    
+    /**
+     * One mapped attribute (saml.attributes.mappings[n].*)
+     */
+    public static class AttributeMapping {
+        
+        public static final String TYPE_STRING = "string";
+        public static final String TYPE_BOOLEAN = "boolean";
+        public static final String TYPE_LONG = "long";
+        
+        private String idp;
+        private String name;
+        private String alias;
+        private boolean multiValued = false;
+        private String type = TYPE_STRING;
+        
+        /**
+         * IdP entityID the mapping applies to; unset applies it to every IdP
+         */
+        public String getIdp() {
+            return idp;
+        }
+        
+        public void setIdp(String idp) {
+            this.idp = idp;
+        }
+        
+        /**
+         * SAML Attribute Name as sent by the IdP
+         */
+        public String getName() {
+            return name;
+        }
+        
+        public void setName(String name) {
+            this.name = name;
+        }
+        
+        /**
+         * Name the value is exposed under; defaults to the SAML name
+         */
+        public String getAlias() {
+            return alias;
+        }
+        
+        public void setAlias(String alias) {
+            this.alias = alias;
+        }
+        
+        /**
+         * Keep every value as a list instead of only the first
+         */
+        public boolean isMultiValued() {
+            return multiValued;
+        }
+        
+        public void setMultiValued(boolean multiValued) {
+            this.multiValued = multiValued;
+        }
+        
+        /**
+         * string, boolean or long; values that do not convert are dropped
+         */
+        public String getType() {
+            return type;
+        }
+        
+        public void setType(String type) {
+            this.type = type;
+        }
+    }
+    
+    /**
+     * Additional SP tenant served by this JVM (saml.tenants[n].*).
+     * Unset values fall back to the global SP settings.
+     */
+    public static class Tenant {
+        
+        private String id;
+        private List<String> hosts = new ArrayList<>();
+        private String pathPrefix;
+        private String entityId;
+        private String assertionConsumerServiceURL;
+        private String singleLogoutServiceURL;
+        private String idpEntityId;
+        private String idpSingleSignOnServiceURL;
+        private String idpSingleLogoutServiceURL;
+        private String spX509Certificate;
+        private String spPrivateKey;
+        private String nameIdFormat;
+        
+        public String getId() {
+            return id;
+        }
+        
+        public void setId(String id) {
+            this.id = id;
+        }
+        
+        public List<String> getHosts() {
+            return hosts;
+        }
+        
+        public void setHosts(List<String> hosts) {
+            this.hosts = hosts;
+        }
+        
+        public String getPathPrefix() {
+            return pathPrefix;
+        }
+        
+        public void setPathPrefix(String pathPrefix) {
+            this.pathPrefix = pathPrefix;
+        }
+        
+        public String getEntityId() {
+            return entityId;
+        }
+        
+        public void setEntityId(String entityId) {
+            this.entityId = entityId;
+        }
+        
+        public String getAssertionConsumerServiceURL() {
+            return assertionConsumerServiceURL;
+        }
+        
+        public void setAssertionConsumerServiceURL(String assertionConsumerServiceURL) {
+            this.assertionConsumerServiceURL = assertionConsumerServiceURL;
+        }
+        
+        public String getSingleLogoutServiceURL() {
+            return singleLogoutServiceURL;
+        }
+        
+        public void setSingleLogoutServiceURL(String singleLogoutServiceURL) {
+            this.singleLogoutServiceURL = singleLogoutServiceURL;
+        }
+        
+        public String getIdpEntityId() {
+            return idpEntityId;
+        }
+        
+        public void setIdpEntityId(String idpEntityId) {
+            this.idpEntityId = idpEntityId;
+        }
+        
+        public String getIdpSingleSignOnServiceURL() {
+            return idpSingleSignOnServiceURL;
+        }
+        
+        public void setIdpSingleSignOnServiceURL(String idpSingleSignOnServiceURL) {
+            this.idpSingleSignOnServiceURL = idpSingleSignOnServiceURL;
+        }
+        
+        public String getIdpSingleLogoutServiceURL() {
+            return idpSingleLogoutServiceURL;
+        }
+        
+        public void setIdpSingleLogoutServiceURL(String idpSingleLogoutServiceURL) {
+            this.idpSingleLogoutServiceURL = idpSingleLogoutServiceURL;
+        }
+        
+        public String getSpX509Certificate() {
+            return spX509Certificate;
+        }
+        
+        public void setSpX509Certificate(String spX509Certificate) {
+            this.spX509Certificate = spX509Certificate;
+        }
+        
+        public String getSpPrivateKey() {
+            return spPrivateKey;
+        }
+        
+        public void setSpPrivateKey(String spPrivateKey) {
+            this.spPrivateKey = spPrivateKey;
+        }
+        
+        public String getNameIdFormat() {
+            return nameIdFormat;
+        }
+        
+        public void setNameIdFormat(String nameIdFormat) {
+            this.nameIdFormat = nameIdFormat;
+        }
+    }
 }
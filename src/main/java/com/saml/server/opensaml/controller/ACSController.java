@@ -0,0 +1,65 @@
+package com.saml.server.opensaml.controller;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.SAMLResponseService;
+import com.saml.server.opensaml.tenant.SPTenantRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Map;
+
+/**
+ * Assertion Consumer Service processed on the servlet container thread (the default).
+ * See {@link AsyncACSController} for {@code saml.acs.async.enabled=true}.
+ */
+@RestController
+@RequestMapping("/saml")
+@ConditionalOnProperty(prefix = "saml.acs.async", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class ACSController {
+
+    @Autowired
+    private SAMLResponseService responseService;
+
+    @Autowired
+    private SPTenantRegistry tenantRegistry;
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    /**
+     * Handle SAML Response (POST binding)
+     */
+    @PostMapping("/acs")
+    public ResponseEntity<Map<String, Object>> handleSAMLResponse(
+            @RequestParam("SAMLResponse") String samlResponse,
+            @RequestParam(value = "RelayState", required = false) String relayState,
+            HttpServletRequest request) {
+        
+        try {
+            return ACSResponses.of(responseService.processSAMLResponse(
+                    tenantRegistry.fromRequest(request), samlResponse, relayState), samlProperties.getSession().getCookieName());
+        } catch (Exception e) {
+            return ACSResponses.error(e);
+        }
+    }
+
+    /**
+     * Handle SAML Response (Redirect binding)
+     */
+    @GetMapping("/acs")
+    public ResponseEntity<Map<String, Object>> handleSAMLResponseRedirect(
+            @RequestParam("SAMLResponse") String samlResponse,
+            @RequestParam(value = "RelayState", required = false) String relayState,
+            HttpServletRequest request) {
+        
+        try {
+            return ACSResponses.of(responseService.processSAMLResponseRedirect(
+                    tenantRegistry.fromRequest(request), samlResponse, relayState), samlProperties.getSession().getCookieName());
+        } catch (Exception e) {
+            return ACSResponses.error(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.saml.server.opensaml.controller;
+
+import com.saml.server.opensaml.service.SAMLResponseService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JSON bodies of the ACS endpoints, shared by the synchronous and asynchronous controllers
+ */
+final class ACSResponses {
+
+    private ACSResponses() {
+    }
+
+    /**
+     * Result body, setting the session cookie when a session was created. The rejection reason
+     * stays out of it, so a sender cannot probe which check its Response failed.
+     */
+    static ResponseEntity<Map<String, Object>> of(SAMLResponseService.SAMLResponseResult result, String cookieName) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", result.isSuccess());
+        response.put("message", result.getMessage());
+        response.put("userName", result.getUserName());
+        response.put("relayState", result.getRelayState());
+        response.put("attributes", result.getAttributes());
+
+        if (result.getSessionId() != null) {
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, cookieName + "=" + result.getSessionId() + "; Path=/; Secure; HttpOnly; SameSite=Lax")
+                    .body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    static ResponseEntity<Map<String, Object>> error(Exception e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "Error processing SAML response: " + e.getMessage());
+
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    /**
+     * 503 for load shedding and timeouts; the client may retry after a second
+     */
+    static ResponseEntity<Map<String, Object>> unavailable(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body(response);
+    }
+}
@@ -0,0 +1,95 @@
+package com.saml.server.opensaml.controller;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.ACSWorkerPool;
+import com.saml.server.opensaml.service.SAMLResponseService;
+import com.saml.server.opensaml.tenant.SPTenantContext;
+import com.saml.server.opensaml.tenant.SPTenantRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Assertion Consumer Service processed on the {@link ACSWorkerPool} ({@code saml.acs.async.enabled=true}).
+ *
+ * The container thread only resolves the tenant and queues the work, then returns to the
+ * connector, so a small Tomcat pool can hold many logins in flight while the workers are
+ * saturated. A full queue answers 503 at once; a response not processed within
+ * {@code saml.acs.async.timeout-millis} answers 503 and is dropped if still queued.
+ */
+@RestController
+@RequestMapping("/saml")
+@ConditionalOnProperty(prefix = "saml.acs.async", name = "enabled", havingValue = "true")
+public class AsyncACSController {
+
+    @Autowired
+    private SAMLResponseService responseService;
+
+    @Autowired
+    private SPTenantRegistry tenantRegistry;
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private ACSWorkerPool workerPool;
+
+    /**
+     * Handle SAML Response (POST binding)
+     */
+    @PostMapping("/acs")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> handleSAMLResponse(
+            @RequestParam("SAMLResponse") String samlResponse,
+            @RequestParam(value = "RelayState", required = false) String relayState,
+            HttpServletRequest request) {
+        
+        SPTenantContext tenant = tenantRegistry.fromRequest(request);
+        return submit(() -> responseService.processSAMLResponse(tenant, samlResponse, relayState));
+    }
+
+    /**
+     * Handle SAML Response (Redirect binding)
+     */
+    @GetMapping("/acs")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> handleSAMLResponseRedirect(
+            @RequestParam("SAMLResponse") String samlResponse,
+            @RequestParam(value = "RelayState", required = false) String relayState,
+            HttpServletRequest request) {
+        
+        SPTenantContext tenant = tenantRegistry.fromRequest(request);
+        return submit(() -> responseService.processSAMLResponseRedirect(tenant, samlResponse, relayState));
+    }
+
+    private DeferredResult<ResponseEntity<Map<String, Object>>> submit(ACSWork work) {
+        DeferredResult<ResponseEntity<Map<String, Object>>> deferred = new DeferredResult<>(
+                workerPool.getTimeoutMillis(), ACSResponses.unavailable("SAML response processing timed out"));
+        try {
+            Future<?> task = workerPool.execute(() -> {
+                try {
+                    deferred.setResult(ACSResponses.of(work.process(), samlProperties.getSession().getCookieName()));
+                } catch (Exception e) {
+                    deferred.setResult(ACSResponses.error(e));
+                }
+            });
+            // A response still queued at the timeout is never processed
+            deferred.onTimeout(() -> task.cancel(false));
+        } catch (RejectedExecutionException e) {
+            deferred.setResult(ACSResponses.unavailable("Too many SAML responses in flight, retry later"));
+        }
+        return deferred;
+    }
+
+    /**
+     * ACS call run on a worker; never touches the servlet request
+     */
+    private interface ACSWork {
+        SAMLResponseService.SAMLResponseResult process() throws Exception;
+    }
+}
@@ -1,12 +1,17 @@
 package com.saml.server.opensaml.controller;
 
+import com.saml.server.opensaml.config.SAMLProperties;
 import com.saml.server.opensaml.service.SAMLAuthRequestService;
-import com.saml.server.opensaml.service.SAMLResponseService;
 import com.saml.server.opensaml.service.SAMLLogoutService;
+import com.saml.server.opensaml.tenant.SPTenantContext;
+import com.saml.server.opensaml.tenant.SPTenantRegistry;
 import org.opensaml.saml.saml2.core.AuthnRequest;
 import org.opensaml.saml.saml2.core.LogoutRequest;
 import org.opensaml.saml.saml2.core.LogoutResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,30 +24,45 @@ import java.util.Map;
 @RequestMapping("/saml")
 public class SAMLController {
 
+    private static final MediaType TEXT_HTML_UTF8 = MediaType.parseMediaType("text/html;charset=UTF-8");
+
     @Autowired
     private SAMLAuthRequestService authRequestService;
 
     @Autowired
-    private SAMLResponseService responseService;
+    private SAMLLogoutService logoutService;
 
     @Autowired
-    private SAMLLogoutService logoutService;
+    private SPTenantRegistry tenantRegistry;
+
+    @Autowired
+    private SAMLProperties samlProperties;
 
     /**
-     * Initiate SAML SSO (SP-initiated)
+     * Initiate SAML SSO (SP-initiated): 302 to the IdP, an auto-POST form, or the JSON envelope
      */
     @GetMapping("/login")
-    public ResponseEntity<Map<String, Object>> initiateSSO(@RequestParam(required = false) String relayState) {
+    public ResponseEntity<?> initiateSSO(
+            @RequestParam(required = false) String relayState,
+            @RequestParam(required = false) String format,
+            HttpServletRequest request) {
         try {
-            AuthnRequest authnRequest = authRequestService.createAuthnRequest();
-            String redirectUrl = authRequestService.createRedirectURL(authnRequest, relayState);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("redirectUrl", redirectUrl);
-            response.put("message", "SAML authentication initiated");
-            
-            return ResponseEntity.ok(response);
+            SPTenantContext tenant = tenantRegistry.fromRequest(request);
+            AuthnRequest authnRequest = authRequestService.createAuthnRequest(tenant);
+            if (isJson(format)) {
+                String redirectUrl = authRequestService.createRedirectURL(tenant, authnRequest, relayState);
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("redirectUrl", redirectUrl);
+                response.put("message", "SAML authentication initiated");
+                
+                return ResponseEntity.ok(response);
+            }
+            if (isPostBinding()) {
+                return autoPost(authRequestService.createPostForm(tenant, authnRequest, relayState));
+            }
+            return redirect(authRequestService.createRedirectURL(tenant, authnRequest, relayState));
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
@@ -53,87 +73,65 @@ public class SAMLController {
     }
 
     /**
-     * Handle SAML Response (POST binding)
+     * Initiate SAML Logout: 302 to the IdP, an auto-POST form, or the JSON envelope
      */
-    @PostMapping("/acs")
-    public ResponseEntity<Map<String, Object>> handleSAMLResponse(
-            @RequestParam("SAMLResponse") String samlResponse,
-            @RequestParam(value = "RelayState", required = false) String relayState) {
+    @GetMapping("/logout")
+    public ResponseEntity<?> initiateLogout(
+            @RequestParam String nameId,
+            @RequestParam(required = false) String sessionIndex,
+            @RequestParam(required = false) String relayState,
+            @RequestParam(required = false) String format,
+            HttpServletRequest request) {
         
         try {
-            SAMLResponseService.SAMLResponseResult result = responseService.processSAMLResponse(samlResponse, relayState);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", result.isSuccess());
-            response.put("message", result.getMessage());
-            response.put("userName", result.getUserName());
-            response.put("relayState", result.getRelayState());
-            response.put("attributes", result.getAttributes());
-            
-            return ResponseEntity.ok(response);
+            SPTenantContext tenant = tenantRegistry.fromRequest(request);
+            LogoutRequest logoutRequest = logoutService.createLogoutRequest(tenant, nameId, sessionIndex);
+            if (isJson(format)) {
+                String redirectUrl = logoutService.createLogoutRedirectURL(tenant, logoutRequest, relayState);
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("redirectUrl", redirectUrl);
+                response.put("message", "SAML logout initiated");
+                
+                return ResponseEntity.ok(response);
+            }
+            if (isPostBinding()) {
+                return autoPost(logoutService.createLogoutPostForm(tenant, logoutRequest, relayState));
+            }
+            return redirect(logoutService.createLogoutRedirectURL(tenant, logoutRequest, relayState));
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
-            response.put("message", "Error processing SAML response: " + e.getMessage());
+            response.put("message", "Error initiating SAML logout: " + e.getMessage());
             
             return ResponseEntity.badRequest().body(response);
         }
     }
 
     /**
-     * Handle SAML Response (Redirect binding)
+     * JSON envelope when configured globally or requested with format=json
      */
-    @GetMapping("/acs")
-    public ResponseEntity<Map<String, Object>> handleSAMLResponseRedirect(
-            @RequestParam("SAMLResponse") String samlResponse,
-            @RequestParam(value = "RelayState", required = false) String relayState) {
-        
-        try {
-            SAMLResponseService.SAMLResponseResult result = responseService.processSAMLResponseRedirect(samlResponse, relayState);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", result.isSuccess());
-            response.put("message", result.getMessage());
-            response.put("userName", result.getUserName());
-            response.put("relayState", result.getRelayState());
-            response.put("attributes", result.getAttributes());
-            
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", "Error processing SAML response: " + e.getMessage());
-            
-            return ResponseEntity.badRequest().body(response);
-        }
+    private boolean isJson(String format) {
+        return samlProperties.getBindings().isJson() || "json".equalsIgnoreCase(format);
+    }
+
+    private boolean isPostBinding() {
+        return SAMLProperties.Bindings.POST.equalsIgnoreCase(samlProperties.getBindings().getOutbound());
     }
 
     /**
-     * Initiate SAML Logout
+     * HTTP-Redirect binding: the URL is already encoded, so it goes into Location as is
      */
-    @GetMapping("/logout")
-    public ResponseEntity<Map<String, Object>> initiateLogout(
-            @RequestParam String nameId,
-            @RequestParam(required = false) String sessionIndex,
-            @RequestParam(required = false) String relayState) {
-        
-        try {
-            LogoutRequest logoutRequest = logoutService.createLogoutRequest(nameId, sessionIndex);
-            String redirectUrl = logoutService.createLogoutRedirectURL(logoutRequest, relayState);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("redirectUrl", redirectUrl);
-            response.put("message", "SAML logout initiated");
-            
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", "Error initiating SAML logout: " + e.getMessage());
-            
-            return ResponseEntity.badRequest().body(response);
-        }
+    private static ResponseEntity<?> redirect(String url) {
+        return ResponseEntity.status(HttpStatus.FOUND).header(HttpHeaders.LOCATION, url).build();
+    }
+
+    /**
+     * HTTP-POST binding: self-submitting form
+     */
+    private static ResponseEntity<?> autoPost(String html) {
+        return ResponseEntity.ok().contentType(TEXT_HTML_UTF8).body(html);
     }
 
     /**
@@ -194,13 +192,14 @@ public class SAMLController {
      * Get SAML metadata
      */
     @GetMapping("/metadata")
-    public ResponseEntity<Map<String, Object>> getMetadata() {
+    public ResponseEntity<Map<String, Object>> getMetadata(HttpServletRequest request) {
         try {
+            SPTenantContext tenant = tenantRegistry.fromRequest(request);
             Map<String, Object> metadata = new HashMap<>();
-            metadata.put("entityId", "http://localhost:8080/saml/metadata");
+            metadata.put("entityId", tenant.getEntityId());
             metadata.put("singleSignOnServiceURL", "http://localhost:8080/saml/login");
             metadata.put("singleLogoutServiceURL", "http://localhost:8080/saml/logout");
-            metadata.put("assertionConsumerServiceURL", "http://localhost:8080/saml/acs");
+            metadata.put("assertionConsumerServiceURL", tenant.getAssertionConsumerServiceURL());
             
             return ResponseEntity.ok(metadata);
         } catch (Exception e) {
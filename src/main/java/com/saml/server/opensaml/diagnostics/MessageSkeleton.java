@@ -0,0 +1,55 @@
+package com.saml.server.opensaml.diagnostics;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Redacted outline of a SAML message: element names with the names (never the values)
+ * of their attributes, indented by depth. Text content, attribute values, signature
+ * values and certificates are all dropped, so the outline is safe to keep in memory.
+ */
+final class MessageSkeleton {
+
+    private static final int MAX_ELEMENTS = 256;
+
+    private MessageSkeleton() {
+    }
+
+    static String of(Element root) {
+        if (root == null) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder(1024);
+        int[] remaining = {MAX_ELEMENTS};
+        append(out, root, 0, remaining);
+        if (remaining[0] <= 0) {
+            out.append("...\n");
+        }
+        return out.toString();
+    }
+
+    private static void append(StringBuilder out, Element element, int depth, int[] remaining) {
+        if (remaining[0]-- <= 0) {
+            return;
+        }
+        for (int i = 0; i < depth; i++) {
+            out.append("  ");
+        }
+        out.append('<').append(element.getTagName());
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            String name = ((Attr) attributes.item(i)).getName();
+            if (!name.startsWith("xmlns")) {
+                out.append(' ').append(name);
+            }
+        }
+        out.append(">\n");
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                append(out, (Element) child, depth + 1, remaining);
+            }
+        }
+    }
+}
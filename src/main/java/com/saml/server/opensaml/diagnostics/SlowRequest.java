@@ -0,0 +1,49 @@
+package com.saml.server.opensaml.diagnostics;
+
+import java.util.Map;
+
+/**
+ * One captured slow ACS request; holds no assertion values
+ */
+public final class SlowRequest {
+
+    private final long sequence;
+    private final long timestamp;
+    private final String binding;
+    private final String tenantId;
+    private final String idpEntityId;
+    private final String outcome;
+    private final long totalMicros;
+    private final Map<String, Long> phaseMicros;
+    private final int payloadSize;
+    private final String skeleton;
+
+    SlowRequest(long sequence, long timestamp, String binding, String tenantId, String idpEntityId, String outcome,
+                long totalMicros, Map<String, Long> phaseMicros, int payloadSize, String skeleton) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.binding = binding;
+        this.tenantId = tenantId;
+        this.idpEntityId = idpEntityId;
+        this.outcome = outcome;
+        this.totalMicros = totalMicros;
+        this.phaseMicros = phaseMicros;
+        this.payloadSize = payloadSize;
+        this.skeleton = skeleton;
+    }
+
+    public long getSequence() { return sequence; }
+    public long getTimestamp() { return timestamp; }
+    public String getBinding() { return binding; }
+    public String getTenantId() { return tenantId; }
+    public String getIdpEntityId() { return idpEntityId; }
+    public String getOutcome() { return outcome; }
+    public long getTotalMicros() { return totalMicros; }
+    public Map<String, Long> getPhaseMicros() { return phaseMicros; }
+    public int getPayloadSize() { return payloadSize; }
+
+    /**
+     * Element and attribute names of the message, one element per line; no values or text
+     */
+    public String getSkeleton() { return skeleton; }
+}
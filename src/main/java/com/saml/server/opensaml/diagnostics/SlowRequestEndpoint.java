@@ -0,0 +1,26 @@
+package com.saml.server.opensaml.diagnostics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint ({@code /slowrequests}) listing captured slow ACS requests
+ */
+@Component
+public class SlowRequestEndpoint extends AbstractEndpoint<List<SlowRequest>> {
+
+    @Autowired
+    private SlowRequestLog slowRequestLog;
+
+    public SlowRequestEndpoint() {
+        super("slowrequests", true);
+    }
+
+    @Override
+    public List<SlowRequest> invoke() {
+        return slowRequestLog.getSlowRequests();
+    }
+}
@@ -0,0 +1,75 @@
+package com.saml.server.opensaml.diagnostics;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.metrics.ACSMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Element;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size, lock-free ring of the most recent ACS requests slower than
+ * {@code saml.diagnostics.slow-request-threshold-millis}.
+ *
+ * Writers claim a slot with one atomic increment and publish with one volatile store, so
+ * capturing never blocks request threads; under concurrent overflow the oldest entries are
+ * simply overwritten. Fast requests cost a single comparison.
+ */
+@Component
+public class SlowRequestLog {
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private Clock clock;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private AtomicReferenceArray<SlowRequest> ring;
+    private long thresholdNanos;
+
+    @PostConstruct
+    public void init() {
+        SAMLProperties.Diagnostics config = samlProperties.getDiagnostics();
+        ring = new AtomicReferenceArray<>(Math.max(1, config.getSlowRequestCapacity()));
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowRequestThresholdMillis());
+    }
+
+    /**
+     * Capture the request if it exceeded the threshold
+     *
+     * @param message parsed message root, or null if parsing failed
+     */
+    public void capture(ACSMetrics.Recording timing, String tenantId, int payloadSize, Element message, String outcome) {
+        if (thresholdNanos <= 0 || timing.getElapsedNanos() < thresholdNanos) {
+            return;
+        }
+        long slot = sequence.getAndIncrement();
+        ring.set((int) (slot % ring.length()), new SlowRequest(slot, clock.millis(),
+                timing.getBinding().getTagValue(), tenantId, timing.getIdp(), outcome,
+                timing.getElapsedNanos() / 1000, timing.getPhaseMicros(), payloadSize, MessageSkeleton.of(message)));
+    }
+
+    /**
+     * Captured requests, newest first
+     */
+    public List<SlowRequest> getSlowRequests() {
+        List<SlowRequest> requests = new ArrayList<>(ring.length());
+        long newest = sequence.get() - 1;
+        for (long slot = newest; slot >= 0 && slot > newest - ring.length(); slot--) {
+            SlowRequest request = ring.get((int) (slot % ring.length()));
+            // A slot may hold a newer entry, or none yet, if a writer raced us
+            if (request != null && request.getSequence() == slot) {
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+}
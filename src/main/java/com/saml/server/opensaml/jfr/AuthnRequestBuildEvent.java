@@ -0,0 +1,14 @@
+package com.saml.server.opensaml.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Building an AuthnRequest for a tenant's IdP
+ */
+@Name("saml.AuthnRequestBuild")
+@Label("AuthnRequest Build")
+@Description("Building an AuthnRequest for a tenant's IdP")
+public class AuthnRequestBuildEvent extends SAMLEvent {
+}
@@ -0,0 +1,26 @@
+package com.saml.server.opensaml.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Building or processing a SAML logout message
+ */
+@Name("saml.Logout")
+@Label("Logout")
+@Description("Building or processing a SAML logout message")
+public class LogoutEvent extends SAMLEvent {
+
+    public static final String BUILD_REQUEST = "build-request";
+    public static final String BUILD_RESPONSE = "build-response";
+    public static final String PROCESS_REQUEST = "process-request";
+    public static final String PROCESS_RESPONSE = "process-response";
+
+    @Label("Operation")
+    private String operation;
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+}
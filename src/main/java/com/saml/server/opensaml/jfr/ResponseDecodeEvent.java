@@ -0,0 +1,14 @@
+package com.saml.server.opensaml.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Base64 decoding (and inflating, for the Redirect binding) of a SAML Response
+ */
+@Name("saml.ResponseDecode")
+@Label("Response Decode")
+@Description("Base64 decoding (and inflating, for the Redirect binding) of a SAML Response")
+public class ResponseDecodeEvent extends SAMLEvent {
+}
@@ -0,0 +1,14 @@
+package com.saml.server.opensaml.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * DOM parsing and unmarshalling of a SAML Response
+ */
+@Name("saml.ResponseParse")
+@Label("Response Parse")
+@Description("DOM parsing and unmarshalling of a SAML Response")
+public class ResponseParseEvent extends SAMLEvent {
+}
@@ -0,0 +1,67 @@
+package com.saml.server.opensaml.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Common fields of the SAML Flight Recorder events.
+ *
+ * Events follow the usual JFR pattern: {@code begin()} before the work, {@code end()} after it.
+ * Fields are set unconditionally as the work goes along; only committing checks
+ * {@code shouldCommit()}. With no recording running, an event therefore costs a few field
+ * stores and an allocation that escape analysis usually removes.
+ *
+ * Events are created on every request, so the {@code jdk.jfr} API must be present at runtime:
+ * OpenJDK 8u262 or later, or Java 11+.
+ */
+@Category("SAML")
+@StackTrace(false)
+public abstract class SAMLEvent extends Event {
+
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+
+    @Label("Payload Size")
+    @DataAmount
+    private int payloadSize;
+
+    @Label("Assertion Count")
+    private int assertionCount;
+
+    @Label("IdP Entity ID")
+    private String idpEntityId;
+
+    @Label("Outcome")
+    private String outcome;
+
+    public void setPayloadSize(int payloadSize) {
+        this.payloadSize = payloadSize;
+    }
+
+    public void setAssertionCount(int assertionCount) {
+        this.assertionCount = assertionCount;
+    }
+
+    public void setIdpEntityId(String idpEntityId) {
+        this.idpEntityId = idpEntityId;
+    }
+
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    /**
+     * End the event and commit it with the given outcome if the recording wants it; events of
+     * synthetic (warm-up) traffic are never committed
+     */
+    public void complete(String outcome, boolean synthetic) {
+        end();
+        if (!synthetic && shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.saml.server.opensaml.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Creating the SP session for an accepted SAML Response
+ */
+@Name("saml.SessionCreate")
+@Label("Session Create")
+@Description("Creating the SP session for an accepted SAML Response")
+public class SessionCreateEvent extends SAMLEvent {
+}
@@ -0,0 +1,14 @@
+package com.saml.server.opensaml.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * XML signature verification against an IdP's signing keys
+ */
+@Name("saml.SignatureVerify")
+@Label("Signature Verify")
+@Description("XML signature verification against an IdP's signing keys")
+public class SignatureVerifyEvent extends SAMLEvent {
+}
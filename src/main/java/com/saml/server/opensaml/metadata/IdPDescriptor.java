@@ -0,0 +1,45 @@
+package com.saml.server.opensaml.metadata;
+
+import org.opensaml.security.credential.Credential;
+
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact, immutable view of an Identity Provider used on the ACS path.
+ * Credentials are built once when the descriptor is created so that
+ * signature validation never has to parse certificates per request.
+ */
+public final class IdPDescriptor {
+
+    private final String entityId;
+    private final String singleSignOnServiceURL;
+    private final String singleLogoutServiceURL;
+    private final List<X509Certificate> signingCertificates;
+    private final List<Credential> signingCredentials;
+    private final boolean signingKeysDeclared;
+
+    public IdPDescriptor(String entityId, String singleSignOnServiceURL, String singleLogoutServiceURL,
+                         List<X509Certificate> signingCertificates, List<Credential> signingCredentials,
+                         boolean signingKeysDeclared) {
+        this.entityId = entityId;
+        this.singleSignOnServiceURL = singleSignOnServiceURL;
+        this.singleLogoutServiceURL = singleLogoutServiceURL;
+        this.signingCertificates = Collections.unmodifiableList(signingCertificates);
+        this.signingCredentials = Collections.unmodifiableList(signingCredentials);
+        this.signingKeysDeclared = signingKeysDeclared;
+    }
+
+    public String getEntityId() { return entityId; }
+    public String getSingleSignOnServiceURL() { return singleSignOnServiceURL; }
+    public String getSingleLogoutServiceURL() { return singleLogoutServiceURL; }
+    public List<X509Certificate> getSigningCertificates() { return signingCertificates; }
+    public List<Credential> getSigningCredentials() { return signingCredentials; }
+
+    /**
+     * Whether signing keys were declared for this IdP. When keys were declared but
+     * none could be parsed, signatures must fail rather than be skipped.
+     */
+    public boolean isSigningKeysDeclared() { return signingKeysDeclared; }
+}
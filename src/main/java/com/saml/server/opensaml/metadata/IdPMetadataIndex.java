@@ -0,0 +1,179 @@
+package com.saml.server.opensaml.metadata;
+
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.x509.BasicX509Credential;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable entityID to {@link IdPDescriptor} index built by streaming a SAML
+ * metadata aggregate with StAX. Only IDPSSODescriptor roles are indexed; the
+ * rest of the document is skipped without building a DOM.
+ */
+public final class IdPMetadataIndex {
+
+    public static final IdPMetadataIndex EMPTY = new IdPMetadataIndex(Collections.<String, IdPDescriptor>emptyMap());
+
+    private static final String MD_NS = "urn:oasis:names:tc:SAML:2.0:metadata";
+    private static final String DS_NS = "http://www.w3.org/2000/09/xmldsig#";
+    private static final String REDIRECT_BINDING = "urn:oasis:names:tc:SAML:2.0:bindings:HTTP-Redirect";
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private final Map<String, IdPDescriptor> descriptors;
+
+    private IdPMetadataIndex(Map<String, IdPDescriptor> descriptors) {
+        this.descriptors = descriptors;
+    }
+
+    /**
+     * Resolve an IdP by entityID
+     */
+    public IdPDescriptor get(String entityId) {
+        return descriptors.get(entityId);
+    }
+
+    public int size() {
+        return descriptors.size();
+    }
+
+    /**
+     * Copy of this index that also contains the given IdP, unless the metadata already declares it
+     */
+    public IdPMetadataIndex withFallback(IdPDescriptor descriptor) {
+        if (descriptor == null || descriptors.containsKey(descriptor.getEntityId())) {
+            return this;
+        }
+        Map<String, IdPDescriptor> copy = new HashMap<>(descriptors);
+        copy.put(descriptor.getEntityId(), descriptor);
+        return new IdPMetadataIndex(Collections.unmodifiableMap(copy));
+    }
+
+    /**
+     * Load an index from a metadata file on local disk
+     */
+    public static IdPMetadataIndex load(Path file) throws IOException, XMLStreamException, CertificateException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            return parse(in);
+        }
+    }
+
+    /**
+     * Stream a metadata document (single EntityDescriptor or EntitiesDescriptor aggregate)
+     */
+    public static IdPMetadataIndex parse(InputStream in) throws XMLStreamException, CertificateException {
+        CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+        // Federations frequently reuse signing certificates; share parsed instances
+        Map<String, BasicX509Credential> credentialCache = new HashMap<>();
+        Map<String, IdPDescriptor> descriptors = new HashMap<>(1024);
+
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            String entityId = null;
+            boolean inIdPRole = false;
+            boolean idpRoleSeen = false;
+            boolean signingKey = false;
+            boolean keysDeclared = false;
+            String ssoURL = null;
+            String sloURL = null;
+            List<X509Certificate> certificates = new ArrayList<>(2);
+            List<Credential> credentials = new ArrayList<>(2);
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String ns = reader.getNamespaceURI();
+                    String name = reader.getLocalName();
+                    if (MD_NS.equals(ns)) {
+                        if ("EntityDescriptor".equals(name)) {
+                            entityId = reader.getAttributeValue(null, "entityID");
+                            idpRoleSeen = false;
+                            keysDeclared = false;
+                            ssoURL = null;
+                            sloURL = null;
+                            certificates = new ArrayList<>(2);
+                            credentials = new ArrayList<>(2);
+                        } else if ("IDPSSODescriptor".equals(name)) {
+                            inIdPRole = true;
+                            idpRoleSeen = true;
+                        } else if (inIdPRole && "KeyDescriptor".equals(name)) {
+                            String use = reader.getAttributeValue(null, "use");
+                            signingKey = use == null || "signing".equals(use);
+                            keysDeclared |= signingKey;
+                        } else if (inIdPRole && "SingleSignOnService".equals(name)) {
+                            ssoURL = preferRedirect(reader, ssoURL);
+                        } else if (inIdPRole && "SingleLogoutService".equals(name)) {
+                            sloURL = preferRedirect(reader, sloURL);
+                        }
+                    } else if (inIdPRole && signingKey && DS_NS.equals(ns) && "X509Certificate".equals(name)) {
+                        String encoded = reader.getElementText().trim();
+                        BasicX509Credential credential = credentialCache.get(encoded);
+                        if (credential == null) {
+                            byte[] der = Base64.getMimeDecoder().decode(encoded);
+                            X509Certificate certificate = (X509Certificate) certificateFactory.generateCertificate(new ByteArrayInputStream(der));
+                            credential = new BasicX509Credential(certificate);
+                            credentialCache.put(encoded, credential);
+                        }
+                        certificates.add(credential.getEntityCertificate());
+                        credentials.add(credential);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && MD_NS.equals(reader.getNamespaceURI())) {
+                    String name = reader.getLocalName();
+                    if ("IDPSSODescriptor".equals(name)) {
+                        inIdPRole = false;
+                    } else if ("KeyDescriptor".equals(name)) {
+                        signingKey = false;
+                    } else if ("EntityDescriptor".equals(name)) {
+                        if (idpRoleSeen && entityId != null) {
+                            descriptors.put(entityId, new IdPDescriptor(entityId, ssoURL, sloURL,
+                                    certificates, credentials, keysDeclared));
+                        }
+                        entityId = null;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return new IdPMetadataIndex(Collections.unmodifiableMap(descriptors));
+    }
+
+    /**
+     * Keep the first endpoint seen unless a later one uses the HTTP-Redirect binding
+     */
+    private static String preferRedirect(XMLStreamReader reader, String current) {
+        String location = reader.getAttributeValue(null, "Location");
+        if (current == null || REDIRECT_BINDING.equals(reader.getAttributeValue(null, "Binding"))) {
+            return location;
+        }
+        return current;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -0,0 +1,377 @@
+package com.saml.server.opensaml.metadata;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.SAMLUtilityService;
+import org.opensaml.security.credential.Credential;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resolves trusted Identity Providers by entityID.
+ * Combines the optional metadata aggregate ({@code saml.metadata.file}) with the
+ * single IdP configured directly through {@link SAMLProperties}.
+ *
+ * The trusted IdPs live in one immutable {@link IdPMetadataIndex} snapshot. Reloads
+ * build a complete new snapshot on the scheduler thread and publish it with a single
+ * volatile write, so ACS threads never wait on a reload and a failed reload leaves
+ * the last good snapshot in place.
+ *
+ * Verified metadata is remembered by a SHA-256 digest over its raw bytes and the fingerprints
+ * of the signing certificates it was verified against. An unchanged document under unchanged
+ * signers is neither parsed nor verified again, and with {@code saml.metadata.cache-dir} the
+ * verified copy and its digest survive restarts. Metadata that was not verified is never
+ * recorded.
+ */
+@Service
+public class IdPMetadataResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(IdPMetadataResolver.class);
+
+    private static final String CACHED_METADATA = "idp-metadata.xml";
+    private static final String CACHED_DIGEST = "idp-metadata.sha256";
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private SAMLUtilityService utilityService;
+
+    private volatile IdPMetadataIndex index = IdPMetadataIndex.EMPTY;
+
+    // Guarded by this; only touched by reload()
+    private FileStamp metadataStamp = FileStamp.ABSENT;
+    private FileStamp signingCertificateStamp = FileStamp.ABSENT;
+    private FileStamp idpCertificateStamp = FileStamp.ABSENT;
+    private IdPMetadataIndex metadataIndex;
+    // Digest over the metadata and its signers' fingerprints, set only after a real verification
+    private byte[] verifiedDigest;
+
+    @PostConstruct
+    public void init() {
+        synchronized (this) {
+            verifiedDigest = readCachedDigest();
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            if (!loadCachedMetadata()) {
+                throw new RuntimeException("Failed to load IdP metadata", e);
+            }
+            log.warn("IdP metadata source could not be loaded, using the last verified copy", e);
+        }
+    }
+
+    /**
+     * Resolve an IdP by entityID, or null if the IdP is not trusted
+     */
+    public IdPDescriptor resolve(String entityId) {
+        if (entityId == null) {
+            return null;
+        }
+        return index.get(entityId);
+    }
+
+    /**
+     * Number of IdPs currently trusted
+     */
+    public int getTrustedIdPCount() {
+        return index.size();
+    }
+
+    /**
+     * Poll the watched files and reload when any of them changed
+     */
+    @Scheduled(fixedDelayString = "${saml.metadata.refresh-interval-millis:30000}",
+            initialDelayString = "${saml.metadata.refresh-interval-millis:30000}")
+    public void refresh() {
+        SAMLProperties.Metadata config = samlProperties.getMetadata();
+        try {
+            synchronized (this) {
+                if (metadataStamp.equals(FileStamp.of(config.getFile()))
+                        && signingCertificateStamp.equals(FileStamp.of(config.getSigningCertificateFile()))
+                        && idpCertificateStamp.equals(FileStamp.of(config.getIdpCertificateFile()))) {
+                    return;
+                }
+            }
+            reload();
+        } catch (Exception e) {
+            log.error("IdP metadata reload failed, keeping the previous snapshot", e);
+        }
+    }
+
+    /**
+     * Parse, verify and publish a new snapshot of the trusted IdPs
+     */
+    public synchronized void reload() throws Exception {
+        SAMLProperties.Metadata config = samlProperties.getMetadata();
+        FileStamp newMetadataStamp = FileStamp.of(config.getFile());
+        FileStamp newSigningCertificateStamp = FileStamp.of(config.getSigningCertificateFile());
+        FileStamp newCertificateStamp = FileStamp.of(config.getIdpCertificateFile());
+
+        IdPMetadataIndex newMetadataIndex = IdPMetadataIndex.EMPTY;
+        byte[] newDigest = null;
+        if (isSet(config.getFile())) {
+            long start = System.nanoTime();
+            byte[] metadata = Files.readAllBytes(Paths.get(config.getFile()));
+            List<X509Certificate> signers = loadSigners(config);
+            newDigest = signers != null ? verifiedDigest(metadata, signers) : null;
+            boolean alreadyVerified = newDigest != null && verifiedDigest != null
+                    && MessageDigest.isEqual(newDigest, verifiedDigest);
+            if (alreadyVerified && metadataIndex != null) {
+                // Unchanged document and signers: nothing to parse or verify
+                newMetadataIndex = metadataIndex;
+            } else {
+                if (!alreadyVerified && signers != null) {
+                    new MetadataSignatureVerifier(signers).verify(metadata);
+                }
+                newMetadataIndex = IdPMetadataIndex.parse(new ByteArrayInputStream(metadata));
+                log.info("Loaded {} IdPs from {} in {} ms (signature {})", newMetadataIndex.size(), config.getFile(),
+                        (System.nanoTime() - start) / 1000000,
+                        alreadyVerified ? "previously verified" : signers != null ? "verified" : "not verified");
+                if (!alreadyVerified && newDigest != null) {
+                    writeCache(metadata, newDigest);
+                }
+            }
+        }
+
+        publish(newMetadataIndex, newDigest, config);
+        metadataStamp = newMetadataStamp;
+        signingCertificateStamp = newSigningCertificateStamp;
+        idpCertificateStamp = newCertificateStamp;
+    }
+
+    /**
+     * Swap in a new snapshot made of the metadata index plus the configured IdP
+     */
+    private void publish(IdPMetadataIndex newMetadataIndex, byte[] digest, SAMLProperties.Metadata config) throws IOException {
+        IdPMetadataIndex newIndex = newMetadataIndex.withFallback(buildConfiguredIdP(config));
+        metadataIndex = newMetadataIndex;
+        verifiedDigest = digest;
+        index = newIndex;
+    }
+
+    /**
+     * Load the last verified metadata copy from the cache directory, trusting it by its digest
+     * under the currently configured signers
+     */
+    private synchronized boolean loadCachedMetadata() {
+        SAMLProperties.Metadata config = samlProperties.getMetadata();
+        if (!isSet(config.getCacheDir()) || verifiedDigest == null) {
+            return false;
+        }
+        try {
+            byte[] metadata = Files.readAllBytes(Paths.get(config.getCacheDir(), CACHED_METADATA));
+            List<X509Certificate> signers = loadSigners(config);
+            byte[] digest = signers != null ? verifiedDigest(metadata, signers) : null;
+            if (digest == null || !MessageDigest.isEqual(digest, verifiedDigest)) {
+                log.warn("Cached IdP metadata does not match its recorded digest or signers, ignoring it");
+                return false;
+            }
+            publish(IdPMetadataIndex.parse(new ByteArrayInputStream(metadata)), digest, config);
+            return true;
+        } catch (Exception e) {
+            log.warn("Cached IdP metadata could not be loaded", e);
+            return false;
+        }
+    }
+
+    private byte[] readCachedDigest() {
+        String cacheDir = samlProperties.getMetadata().getCacheDir();
+        if (!isSet(cacheDir)) {
+            return null;
+        }
+        Path digestFile = Paths.get(cacheDir, CACHED_DIGEST);
+        try {
+            return Files.exists(digestFile) ? fromHex(readString(digestFile).trim()) : null;
+        } catch (Exception e) {
+            log.warn("Cached IdP metadata digest could not be read", e);
+            return null;
+        }
+    }
+
+    /**
+     * Persist the verified metadata and its digest; the digest is written last so it never
+     * vouches for a partially written copy
+     */
+    private void writeCache(byte[] metadata, byte[] digest) {
+        String cacheDir = samlProperties.getMetadata().getCacheDir();
+        if (!isSet(cacheDir)) {
+            return;
+        }
+        try {
+            Path dir = Files.createDirectories(Paths.get(cacheDir));
+            writeAtomically(dir.resolve(CACHED_METADATA), metadata);
+            writeAtomically(dir.resolve(CACHED_DIGEST),
+                    toHex(digest).getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            log.warn("Verified IdP metadata could not be cached in {}", cacheDir, e);
+        }
+    }
+
+    private static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, content);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * SHA-256 over the metadata digest and the sorted SHA-256 fingerprints of its signers, so a
+     * changed signer bundle forces a fresh verification. SHA-256 rather than a checksum: a match
+     * is what lets us skip signature verification.
+     */
+    private static byte[] verifiedDigest(byte[] metadata, List<X509Certificate> signers) throws CertificateEncodingException {
+        List<String> fingerprints = new ArrayList<>(signers.size());
+        for (X509Certificate signer : signers) {
+            fingerprints.add(toHex(sha256(signer.getEncoded())));
+        }
+        Collections.sort(fingerprints);
+        MessageDigest digest = newSha256();
+        digest.update(sha256(metadata));
+        for (String fingerprint : fingerprints) {
+            digest.update(fingerprint.getBytes(StandardCharsets.US_ASCII));
+        }
+        return digest.digest();
+    }
+
+    private static byte[] sha256(byte[] content) {
+        return newSha256().digest(content);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Certificates trusted to sign the metadata, or null when unsigned metadata is explicitly
+     * allowed. Without either, loading fails: unverified metadata would decide which IdPs to trust.
+     */
+    private List<X509Certificate> loadSigners(SAMLProperties.Metadata config) throws Exception {
+        if (!isSet(config.getSigningCertificateFile())) {
+            if (!config.isAllowUnsigned()) {
+                throw new IllegalStateException("saml.metadata.file needs saml.metadata.signing-certificate-file;"
+                        + " set saml.metadata.allow-unsigned=true to load it without verifying its signature");
+            }
+            log.warn("saml.metadata.allow-unsigned is set; metadata signature is not verified");
+            return null;
+        }
+        return utilityService.createCertificatesFromString(readString(Paths.get(config.getSigningCertificateFile())));
+    }
+
+    /**
+     * Build the descriptor for the IdP configured through saml.idp-* properties.
+     * A certificate file may hold several certificates so old and new keys overlap during rollover.
+     */
+    private IdPDescriptor buildConfiguredIdP(SAMLProperties.Metadata config) throws IOException {
+        String entityId = samlProperties.getIdpEntityId();
+        if (!isSet(entityId)) {
+            return null;
+        }
+
+        String certificate = isSet(config.getIdpCertificateFile())
+                ? readString(Paths.get(config.getIdpCertificateFile()))
+                : samlProperties.getIdpX509Certificate();
+        boolean keysDeclared = isSet(certificate);
+
+        List<X509Certificate> certificates = Collections.emptyList();
+        List<Credential> credentials = new ArrayList<>(2);
+        if (keysDeclared) {
+            try {
+                certificates = utilityService.createCertificatesFromString(certificate);
+                for (X509Certificate cert : certificates) {
+                    credentials.add(utilityService.createCredentialFromCertificate(cert));
+                }
+            } catch (Exception e) {
+                // Keep the key declared so that signed responses are rejected, not trusted
+                log.warn("Configured IdP certificate for {} could not be parsed", entityId);
+            }
+        }
+
+        return new IdPDescriptor(entityId, samlProperties.getIdpSingleSignOnServiceURL(),
+                samlProperties.getIdpSingleLogoutServiceURL(), certificates, credentials, keysDeclared);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String readString(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.US_ASCII);
+    }
+
+    private static boolean isSet(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    /**
+     * Modification time and size of a watched file
+     */
+    private static final class FileStamp {
+
+        static final FileStamp ABSENT = new FileStamp(-1, -1);
+
+        private final long modified;
+        private final long size;
+
+        private FileStamp(long modified, long size) {
+            this.modified = modified;
+            this.size = size;
+        }
+
+        static FileStamp of(String file) throws IOException {
+            if (!isSet(file)) {
+                return ABSENT;
+            }
+            Path path = Paths.get(file);
+            return new FileStamp(Files.getLastModifiedTime(path).toMillis(), Files.size(path));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp that = (FileStamp) other;
+            return modified == that.modified && size == that.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (modified ^ size);
+        }
+    }
+}
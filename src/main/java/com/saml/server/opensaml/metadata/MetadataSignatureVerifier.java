@@ -0,0 +1,96 @@
+package com.saml.server.opensaml.metadata;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+/**
+ * Verifies the enveloped XML signature on the root element of a metadata document.
+ * Runs on the reload thread only; the ACS path never touches it.
+ */
+final class MetadataSignatureVerifier {
+
+    private final List<X509Certificate> trustedCertificates;
+
+    MetadataSignatureVerifier(List<X509Certificate> trustedCertificates) {
+        this.trustedCertificates = trustedCertificates;
+    }
+
+    /**
+     * Verify the metadata signature against any of the trusted certificates
+     */
+    void verify(byte[] metadata) throws GeneralSecurityException {
+        Element root;
+        try {
+            root = parse(metadata).getDocumentElement();
+        } catch (Exception e) {
+            throw new GeneralSecurityException("Metadata is not well-formed XML", e);
+        }
+
+        Element signatureElement = findSignature(root);
+        if (signatureElement == null) {
+            throw new GeneralSecurityException("Metadata is not signed");
+        }
+
+        String rootId = root.getAttribute("ID");
+        if (!rootId.isEmpty()) {
+            root.setIdAttribute("ID", true);
+        }
+
+        XMLSignatureFactory factory = XMLSignatureFactory.getInstance("DOM");
+        for (X509Certificate certificate : trustedCertificates) {
+            try {
+                DOMValidateContext context = new DOMValidateContext(certificate.getPublicKey(), signatureElement);
+                context.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.TRUE);
+                XMLSignature signature = factory.unmarshalXMLSignature(context);
+                if (coversRoot(signature, rootId) && signature.validate(context)) {
+                    return;
+                }
+            } catch (Exception e) {
+                // Try the next trusted certificate
+            }
+        }
+        throw new GeneralSecurityException("Metadata signature did not validate against any trusted certificate");
+    }
+
+    /**
+     * Only accept a single reference to the document root, which rules out signature wrapping
+     */
+    private boolean coversRoot(XMLSignature signature, String rootId) {
+        List<?> references = signature.getSignedInfo().getReferences();
+        if (references.size() != 1) {
+            return false;
+        }
+        String uri = ((Reference) references.get(0)).getURI();
+        return "".equals(uri) || ("#" + rootId).equals(uri);
+    }
+
+    private Element findSignature(Element root) {
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE
+                    && XMLSignature.XMLNS.equals(child.getNamespaceURI())
+                    && "Signature".equals(child.getLocalName())) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    private Document parse(byte[] metadata) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setExpandEntityReferences(false);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(metadata));
+    }
+}
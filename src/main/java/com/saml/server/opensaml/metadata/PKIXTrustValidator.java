@@ -0,0 +1,269 @@
+package com.saml.server.opensaml.metadata;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.SAMLUtilityService;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.x509.X509Credential;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CRL;
+import java.security.cert.CertPathBuilder;
+import java.security.cert.CertStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXBuilderParameters;
+import java.security.cert.PKIXCertPathBuilderResult;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CertSelector;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PKIX path validation of IdP signing certificates against a local trust anchor store and
+ * locally mirrored CRLs ({@code saml.pkix.*}).
+ *
+ * Building and checking a path costs milliseconds, so each outcome is cached by the SHA-256
+ * fingerprint of the certificate. A valid path is reused until the earliest of the configured
+ * maximum, the expiry of any certificate in it and the nextUpdate of the loaded CRLs; a
+ * rejection is reused for a minute. Repeated logins from the same IdP only pay for the lookup.
+ * Anchors and CRLs are re-read on a schedule, which also empties the cache.
+ */
+@Service
+public class PKIXTrustValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(PKIXTrustValidator.class);
+
+    private static final long REJECTION_CACHE_MILLIS = 60000;
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private SAMLUtilityService utilityService;
+
+    @Autowired
+    private Clock clock;
+
+    private volatile TrustMaterial material;
+    private final ConcurrentHashMap<String, CachedPath> paths = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (samlProperties.getPkix().isEnabled()) {
+            try {
+                material = loadMaterial(samlProperties.getPkix());
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to load PKIX trust anchors", e);
+            }
+        }
+    }
+
+    /**
+     * Whether path validation is switched on; when off every certificate is trusted
+     */
+    public boolean isEnabled() {
+        return material != null;
+    }
+
+    /**
+     * Re-read anchors, intermediates and CRLs; the previous material stays if they cannot be read
+     */
+    @Scheduled(fixedDelayString = "${saml.pkix.refresh-interval-millis:300000}",
+            initialDelayString = "${saml.pkix.refresh-interval-millis:300000}")
+    public void refresh() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            material = loadMaterial(samlProperties.getPkix());
+            paths.clear();
+        } catch (Exception e) {
+            log.error("PKIX trust material reload failed, keeping the previous anchors and CRLs", e);
+        }
+    }
+
+    /**
+     * Whether the credential's certificate chains to a trust anchor and is not revoked
+     */
+    public boolean isTrusted(Credential credential) {
+        if (!isEnabled()) {
+            return true;
+        }
+        if (!(credential instanceof X509Credential)) {
+            return false;
+        }
+        return isTrusted(((X509Credential) credential).getEntityCertificate());
+    }
+
+    /**
+     * Whether the certificate chains to a trust anchor and is not revoked
+     */
+    public boolean isTrusted(X509Certificate certificate) {
+        TrustMaterial current = material;
+        if (current == null) {
+            return true;
+        }
+        long now = clock.millis();
+        String fingerprint = fingerprint(certificate);
+        CachedPath cached = paths.get(fingerprint);
+        if (cached != null && now < cached.expiresAt) {
+            return cached.valid;
+        }
+
+        CachedPath validated = validate(current, certificate, now);
+        paths.put(fingerprint, validated);
+        return validated.valid;
+    }
+
+    /**
+     * Number of certificates with a cached path result
+     */
+    public int getCachedPathCount() {
+        return paths.size();
+    }
+
+    private CachedPath validate(TrustMaterial current, X509Certificate certificate, long now) {
+        try {
+            X509CertSelector target = new X509CertSelector();
+            target.setCertificate(certificate);
+            PKIXBuilderParameters parameters = new PKIXBuilderParameters(current.anchors, target);
+            parameters.addCertStore(current.store);
+            parameters.setRevocationEnabled(current.revocationEnabled);
+            parameters.setDate(new Date(now));
+            PKIXCertPathBuilderResult result = (PKIXCertPathBuilderResult) CertPathBuilder.getInstance("PKIX").build(parameters);
+
+            long expiresAt = Math.min(now + current.maxCacheMillis, current.crlNextUpdate);
+            for (Certificate element : result.getCertPath().getCertificates()) {
+                expiresAt = Math.min(expiresAt, ((X509Certificate) element).getNotAfter().getTime());
+            }
+            X509Certificate anchor = result.getTrustAnchor().getTrustedCert();
+            if (anchor != null) {
+                expiresAt = Math.min(expiresAt, anchor.getNotAfter().getTime());
+            }
+            return new CachedPath(true, expiresAt);
+        } catch (GeneralSecurityException e) {
+            log.warn("IdP signing certificate {} failed PKIX validation: {}",
+                    certificate.getSubjectX500Principal().getName(), e.getMessage());
+            return new CachedPath(false, now + REJECTION_CACHE_MILLIS);
+        }
+    }
+
+    private TrustMaterial loadMaterial(SAMLProperties.Pkix config) throws Exception {
+        if (!isSet(config.getTrustAnchorsFile())) {
+            throw new IllegalStateException("saml.pkix.trust-anchors-file is required when saml.pkix.enabled=true");
+        }
+        Set<TrustAnchor> anchors = new HashSet<>();
+        for (X509Certificate anchor : utilityService.createCertificatesFromString(readString(Paths.get(config.getTrustAnchorsFile())))) {
+            anchors.add(new TrustAnchor(anchor, null));
+        }
+
+        List<Object> storeContent = new ArrayList<>();
+        if (isSet(config.getIntermediatesFile())) {
+            storeContent.addAll(utilityService.createCertificatesFromString(readString(Paths.get(config.getIntermediatesFile()))));
+        }
+        long crlNextUpdate = Long.MAX_VALUE;
+        List<X509CRL> crls = isSet(config.getCrlDir()) ? readCRLs(Paths.get(config.getCrlDir())) : Collections.<X509CRL>emptyList();
+        for (X509CRL crl : crls) {
+            storeContent.add(crl);
+            if (crl.getNextUpdate() != null) {
+                crlNextUpdate = Math.min(crlNextUpdate, crl.getNextUpdate().getTime());
+            }
+        }
+        if (config.isRevocationEnabled() && crls.isEmpty()) {
+            log.warn("saml.pkix.revocation-enabled is set but no CRLs were found; every path will fail revocation checking");
+        }
+
+        log.info("PKIX trust material loaded: {} anchors, {} CRLs", anchors.size(), crls.size());
+        return new TrustMaterial(anchors,
+                CertStore.getInstance("Collection", new CollectionCertStoreParameters(storeContent)),
+                config.isRevocationEnabled(), config.getMaxCacheMillis(),
+                config.isRevocationEnabled() ? crlNextUpdate : Long.MAX_VALUE);
+    }
+
+    private static List<X509CRL> readCRLs(Path dir) throws IOException, GeneralSecurityException {
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        List<X509CRL> crls = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{crl,pem}")) {
+            for (Path file : files) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    for (CRL crl : factory.generateCRLs(in)) {
+                        crls.add((X509CRL) crl);
+                    }
+                }
+            }
+        }
+        return crls;
+    }
+
+    private static String fingerprint(X509Certificate certificate) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(certificate.getEncoded()));
+        } catch (NoSuchAlgorithmException | CertificateEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String readString(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.US_ASCII);
+    }
+
+    private static boolean isSet(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    /**
+     * Anchors, intermediates and CRLs read in one pass
+     */
+    private static final class TrustMaterial {
+        final Set<TrustAnchor> anchors;
+        final CertStore store;
+        final boolean revocationEnabled;
+        final long maxCacheMillis;
+        final long crlNextUpdate;
+
+        TrustMaterial(Set<TrustAnchor> anchors, CertStore store, boolean revocationEnabled, long maxCacheMillis,
+                      long crlNextUpdate) {
+            this.anchors = anchors;
+            this.store = store;
+            this.revocationEnabled = revocationEnabled;
+            this.maxCacheMillis = maxCacheMillis;
+            this.crlNextUpdate = crlNextUpdate;
+        }
+    }
+
+    private static final class CachedPath {
+        final boolean valid;
+        final long expiresAt;
+
+        CachedPath(boolean valid, long expiresAt) {
+            this.valid = valid;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.saml.server.opensaml.metrics;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-phase timers for the ACS pipeline, tagged by binding, IdP and phase.
+ *
+ * The {@code idp} tag is bounded: only the IdPs configured for a tenant and those listed in
+ * {@code saml.metrics.idp-tags} keep their entity ID, every other IdP of a metadata aggregate
+ * shares {@link #OTHER_IDP}. Percentile histograms multiply each timer into dozens of series,
+ * so they are off unless {@code saml.metrics.histograms} is set.
+ *
+ * A request collects raw nanosecond durations in a {@link Recording} and publishes them
+ * once at the end, when the issuing IdP is known. Timers are registered on first use and
+ * cached per binding and IdP, so the hot path is a few {@code nanoTime()} calls, one map
+ * lookup and one {@code record} per phase.
+ *
+ * Recordings are also kept when only slow-request capture is enabled, in which case the
+ * durations are measured but not published.
+ */
+@Component
+public class ACSMetrics {
+
+    public static final String METER_NAME = "saml.acs.phase";
+
+    /**
+     * IdP tag for responses rejected before the issuer was resolved to a trusted IdP
+     */
+    public static final String UNKNOWN_IDP = "unknown";
+
+    /**
+     * IdP tag for trusted IdPs that are neither a tenant's configured IdP nor in saml.metrics.idp-tags
+     */
+    public static final String OTHER_IDP = "other";
+
+    private static final ACSPhase[] PHASES = ACSPhase.values();
+
+    /**
+     * SAML binding the response arrived on
+     */
+    public enum Binding {
+        POST("post"),
+        REDIRECT("redirect");
+
+        private final String tagValue;
+
+        Binding(String tagValue) {
+            this.tagValue = tagValue;
+        }
+
+        public String getTagValue() {
+            return tagValue;
+        }
+    }
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    private final Map<Binding, ConcurrentHashMap<String, Timer[]>> timers = new EnumMap<>(Binding.class);
+    private boolean enabled;
+    private boolean measure;
+    private boolean histograms;
+    private Set<String> taggedIdps;
+
+    @PostConstruct
+    public void init() {
+        enabled = samlProperties.getMetrics().isEnabled();
+        measure = enabled || samlProperties.getDiagnostics().getSlowRequestThresholdMillis() > 0;
+        histograms = samlProperties.getMetrics().isHistograms();
+        taggedIdps = new HashSet<>(samlProperties.getMetrics().getIdpTags());
+        addIfSet(taggedIdps, samlProperties.getIdpEntityId());
+        for (SAMLProperties.Tenant tenant : samlProperties.getTenants()) {
+            addIfSet(taggedIdps, tenant.getIdpEntityId());
+        }
+        for (Binding binding : Binding.values()) {
+            timers.put(binding, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Start timing one response; returns a shared no-op recording when nothing consumes timings
+     */
+    public Recording start(Binding binding) {
+        return measure ? new Recording(this, binding) : Recording.DISABLED;
+    }
+
+    /**
+     * Bounded {@code idp} tag value for a trusted issuer, or {@link #UNKNOWN_IDP} when there is none
+     */
+    String idpTag(String entityId) {
+        if (entityId == null) {
+            return UNKNOWN_IDP;
+        }
+        return taggedIdps.contains(entityId) ? entityId : OTHER_IDP;
+    }
+
+    private static void addIfSet(Set<String> idps, String entityId) {
+        if (entityId != null && !entityId.isEmpty()) {
+            idps.add(entityId);
+        }
+    }
+
+    private Timer[] timers(Binding binding, String idp) {
+        Timer[] cached = timers.get(binding).get(idp);
+        return cached != null ? cached : timers.get(binding).computeIfAbsent(idp, key -> register(binding, key));
+    }
+
+    private Timer[] register(Binding binding, String idp) {
+        Timer[] phaseTimers = new Timer[PHASES.length];
+        for (ACSPhase phase : PHASES) {
+            phaseTimers[phase.ordinal()] = Timer.builder(METER_NAME)
+                    .description("Duration of one phase of SAML Response processing")
+                    .tag("binding", binding.getTagValue())
+                    .tag("idp", idp)
+                    .tag("phase", phase.getTagValue())
+                    .publishPercentileHistogram(histograms)
+                    .register(registry);
+        }
+        return phaseTimers;
+    }
+
+    /**
+     * Phase durations of a single response; confined to the request thread
+     */
+    public static final class Recording {
+
+        /**
+         * Shared recording that measures and publishes nothing
+         */
+        public static final Recording DISABLED = new Recording(null, null);
+
+        private final ACSMetrics metrics;
+        private final Binding binding;
+        private final long[] nanos = new long[PHASES.length];
+        private final long started;
+        private int recorded;
+        private long last;
+        private long nested;
+        private long elapsed;
+        private String idp;
+
+        private Recording(ACSMetrics metrics, Binding binding) {
+            this.metrics = metrics;
+            this.binding = binding;
+            this.started = metrics != null ? System.nanoTime() : 0;
+            this.last = started;
+        }
+
+        public Binding getBinding() {
+            return binding;
+        }
+
+        /**
+         * Wall time from start to {@link #finish()}, or 0 when disabled
+         */
+        public long getElapsedNanos() {
+            return elapsed;
+        }
+
+        /**
+         * Recorded phases in pipeline order, in microseconds
+         */
+        public Map<String, Long> getPhaseMicros() {
+            Map<String, Long> phases = new LinkedHashMap<>();
+            for (ACSPhase phase : PHASES) {
+                if ((recorded & (1 << phase.ordinal())) != 0) {
+                    phases.put(phase.getTagValue(), nanos[phase.ordinal()] / 1000);
+                }
+            }
+            return phases;
+        }
+
+        /**
+         * Close the current phase: everything since the previous mark, minus nested phases
+         */
+        public void mark(ACSPhase phase) {
+            if (metrics == null) {
+                return;
+            }
+            long now = System.nanoTime();
+            record(phase, now - last - nested);
+            last = now;
+            nested = 0;
+        }
+
+        /**
+         * Timestamp for {@link #addSince}, or 0 when disabled
+         */
+        public long clock() {
+            return metrics != null ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Record a phase nested inside the current one, e.g. signature checks during validation
+         */
+        public void addSince(ACSPhase phase, long start) {
+            if (metrics == null) {
+                return;
+            }
+            long duration = System.nanoTime() - start;
+            record(phase, duration);
+            nested += duration;
+        }
+
+        /**
+         * Tag the recording with the trusted IdP that issued the response
+         */
+        public void idp(String entityId) {
+            this.idp = entityId;
+        }
+
+        /**
+         * Trusted issuing IdP, or null if the response was rejected before it was resolved
+         */
+        public String getIdp() {
+            return idp;
+        }
+
+        /**
+         * Publish the recorded phases
+         */
+        public void finish() {
+            if (metrics == null) {
+                return;
+            }
+            elapsed = System.nanoTime() - started;
+            if (!metrics.enabled || recorded == 0) {
+                return;
+            }
+            Timer[] phaseTimers = metrics.timers(binding, metrics.idpTag(idp));
+            for (int i = 0; i < nanos.length; i++) {
+                if ((recorded & (1 << i)) != 0) {
+                    phaseTimers[i].record(nanos[i], TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        private void record(ACSPhase phase, long duration) {
+            nanos[phase.ordinal()] += duration;
+            recorded |= 1 << phase.ordinal();
+        }
+    }
+}
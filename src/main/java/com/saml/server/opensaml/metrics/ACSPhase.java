@@ -0,0 +1,26 @@
+package com.saml.server.opensaml.metrics;
+
+/**
+ * Phases of the Assertion Consumer Service pipeline, in processing order
+ */
+public enum ACSPhase {
+    BASE64_DECODE("base64_decode"),
+    INFLATE("inflate"),
+    PARSE("parse"),
+    UNMARSHALL("unmarshall"),
+    DECRYPT("decrypt"),
+    SIGNATURE("signature"),
+    VALIDATION("validation"),
+    ATTRIBUTES("attributes"),
+    SESSION("session");
+
+    private final String tagValue;
+
+    ACSPhase(String tagValue) {
+        this.tagValue = tagValue;
+    }
+
+    public String getTagValue() {
+        return tagValue;
+    }
+}
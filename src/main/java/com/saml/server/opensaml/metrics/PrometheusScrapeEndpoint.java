@@ -0,0 +1,28 @@
+package com.saml.server.opensaml.metrics;
+
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.springframework.boot.actuate.endpoint.mvc.AbstractMvcEndpoint;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Actuator endpoint serving the registry in the Prometheus text exposition format
+ */
+public class PrometheusScrapeEndpoint extends AbstractMvcEndpoint {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final PrometheusMeterRegistry registry;
+
+    public PrometheusScrapeEndpoint(PrometheusMeterRegistry registry) {
+        super("/prometheus", true);
+        this.registry = registry;
+    }
+
+    @RequestMapping(method = RequestMethod.GET, produces = CONTENT_TYPE)
+    @ResponseBody
+    public String scrape() {
+        return registry.scrape();
+    }
+}
@@ -0,0 +1,53 @@
+package com.saml.server.opensaml.metrics;
+
+import com.saml.server.opensaml.service.RejectionReason;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free count of rejected SAML Responses per {@link RejectionReason}.
+ * Every reason has a pre-registered {@code LongAdder}, so counting is a single
+ * uncontended add even under full ACS load; the registry reads the sums on scrape.
+ */
+@Component
+public class RejectionCounters {
+
+    public static final String METER_NAME = "saml.acs.rejections";
+
+    @Autowired
+    private MeterRegistry registry;
+
+    // Populated once and never modified, so safe for concurrent reads
+    private final Map<RejectionReason, LongAdder> counters = new EnumMap<>(RejectionReason.class);
+
+    public RejectionCounters() {
+        for (RejectionReason reason : RejectionReason.values()) {
+            counters.put(reason, new LongAdder());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        for (Map.Entry<RejectionReason, LongAdder> counter : counters.entrySet()) {
+            FunctionCounter.builder(METER_NAME, counter.getValue(), LongAdder::doubleValue)
+                    .description("SAML Responses rejected by the ACS")
+                    .tag("reason", counter.getKey().getCode())
+                    .register(registry);
+        }
+    }
+
+    public void increment(RejectionReason reason) {
+        counters.get(reason).increment();
+    }
+
+    public long count(RejectionReason reason) {
+        return counters.get(reason).sum();
+    }
+}
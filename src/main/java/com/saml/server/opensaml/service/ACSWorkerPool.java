@@ -0,0 +1,89 @@
+package com.saml.server.opensaml.service;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dedicated pool that processes SAML Responses off the servlet container threads
+ * ({@code saml.acs.async.enabled=true}).
+ *
+ * Sized for CPU-bound work (decode, parse, signature verification). Responses wait in a
+ * bounded queue of {@code saml.acs.async.max-pending}; once it is full, {@link #execute}
+ * rejects immediately so the caller can shed load instead of queueing without limit.
+ */
+@Component
+@ConditionalOnProperty(prefix = "saml.acs.async", name = "enabled", havingValue = "true")
+public class ACSWorkerPool {
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final LongAdder rejected = new LongAdder();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        SAMLProperties.Async config = samlProperties.getAcs().getAsync();
+        int threads = Math.max(1, config.getThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getMaxPending())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "saml-acs-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.prestartAllCoreThreads();
+
+        Gauge.builder("saml.acs.async.pending", executor, e -> e.getQueue().size())
+                .description("SAML Responses waiting for an ACS worker")
+                .register(registry);
+        Gauge.builder("saml.acs.async.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("ACS workers processing a SAML Response")
+                .register(registry);
+        FunctionCounter.builder("saml.acs.async.rejected", rejected, LongAdder::doubleValue)
+                .description("SAML Responses turned away because the pending queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Queue ACS work; throws {@link RejectedExecutionException} when the pending limit is reached
+     */
+    public Future<?> execute(Runnable work) {
+        try {
+            return executor.submit(work);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public long getTimeoutMillis() {
+        return samlProperties.getAcs().getAsync().getTimeoutMillis();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(getTimeoutMillis(), TimeUnit.MILLISECONDS);
+    }
+}
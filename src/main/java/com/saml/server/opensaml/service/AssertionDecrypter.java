@@ -0,0 +1,183 @@
+package com.saml.server.opensaml.service;
+
+import net.shibboleth.utilities.java.support.xml.ParserPool;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.Unmarshaller;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.EncryptedAssertion;
+import org.opensaml.saml.saml2.core.EncryptedElementType;
+import org.opensaml.saml.saml2.core.EncryptedID;
+import org.opensaml.saml.saml2.core.NameID;
+import org.opensaml.saml.saml2.encryption.Decrypter;
+import org.opensaml.saml.saml2.encryption.EncryptedElementTypeEncryptedKeyResolver;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.DecryptionParameters;
+import org.opensaml.xmlsec.encryption.EncryptedData;
+import org.opensaml.xmlsec.encryption.EncryptedKey;
+import org.opensaml.xmlsec.encryption.support.ChainingEncryptedKeyResolver;
+import org.opensaml.xmlsec.encryption.support.DecryptionException;
+import org.opensaml.xmlsec.encryption.support.EncryptedKeyResolver;
+import org.opensaml.xmlsec.encryption.support.InlineEncryptedKeyResolver;
+import org.opensaml.xmlsec.encryption.support.SimpleRetrievalMethodEncryptedKeyResolver;
+import org.opensaml.xmlsec.keyinfo.impl.StaticKeyInfoCredentialResolver;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Decrypts EncryptedAssertion and EncryptedID elements with one tenant's SP key.
+ *
+ * Built once per tenant at startup: the OpenSAML {@link Decrypter}, its algorithm whitelist and
+ * key resolvers, the shared parser pool and the Assertion and NameID unmarshallers are resolved
+ * here and only read on the request path. Callers pass a per-Response map of unwrapped data keys, so an
+ * EncryptedKey repeated across the assertions and NameIDs of one Response costs a single RSA
+ * operation.
+ */
+public final class AssertionDecrypter {
+
+    private final Decrypter decrypter;
+    private final EncryptedKeyResolver encryptedKeyResolver;
+    private final ParserPool parserPool;
+    private final Unmarshaller assertionUnmarshaller;
+    private final Unmarshaller nameIDUnmarshaller;
+
+    private AssertionDecrypter(Decrypter decrypter, EncryptedKeyResolver encryptedKeyResolver, ParserPool parserPool) {
+        this.decrypter = decrypter;
+        this.encryptedKeyResolver = encryptedKeyResolver;
+        this.parserPool = parserPool;
+        this.assertionUnmarshaller = XMLObjectProviderRegistrySupport.getUnmarshallerFactory()
+                .getUnmarshaller(Assertion.DEFAULT_ELEMENT_NAME);
+        this.nameIDUnmarshaller = XMLObjectProviderRegistrySupport.getUnmarshallerFactory()
+                .getUnmarshaller(NameID.DEFAULT_ELEMENT_NAME);
+        if (assertionUnmarshaller == null || nameIDUnmarshaller == null) {
+            throw new IllegalStateException("No Assertion/NameID unmarshaller registered; is OpenSAML initialized?");
+        }
+    }
+
+    /**
+     * Decrypter over the SP credential that refuses any key transport, data encryption, digest or
+     * MGF algorithm outside {@code allowedAlgorithms}; decrypted elements are rooted in their own
+     * document so that their enveloped signatures still verify
+     */
+    public static AssertionDecrypter create(Credential spCredential, ParserPool parserPool,
+                                            Collection<String> allowedAlgorithms) {
+        // An empty whitelist would allow every algorithm
+        if (allowedAlgorithms.isEmpty()) {
+            throw new IllegalArgumentException("At least one decryption algorithm must be allowed");
+        }
+        EncryptedKeyResolver encryptedKeyResolver = new ChainingEncryptedKeyResolver(Arrays.asList(
+                new InlineEncryptedKeyResolver(),
+                new EncryptedElementTypeEncryptedKeyResolver(),
+                new SimpleRetrievalMethodEncryptedKeyResolver()));
+        DecryptionParameters parameters = new DecryptionParameters();
+        parameters.setKEKKeyInfoCredentialResolver(new StaticKeyInfoCredentialResolver(spCredential));
+        parameters.setEncryptedKeyResolver(encryptedKeyResolver);
+        parameters.setWhitelistedAlgorithms(allowedAlgorithms);
+        Decrypter decrypter = new Decrypter(parameters);
+        decrypter.setRootInNewDocument(true);
+        return new AssertionDecrypter(decrypter, encryptedKeyResolver, parserPool);
+    }
+
+    /**
+     * Decrypt an EncryptedAssertion
+     */
+    public Assertion decrypt(EncryptedAssertion encrypted, Map<String, Key> dataKeys) throws DecryptionException {
+        XMLObject decrypted = decryptElement(encrypted, dataKeys, Assertion.DEFAULT_ELEMENT_LOCAL_NAME, assertionUnmarshaller);
+        if (!(decrypted instanceof Assertion)) {
+            throw new DecryptionException("EncryptedAssertion did not contain an Assertion");
+        }
+        return (Assertion) decrypted;
+    }
+
+    /**
+     * Decrypt an EncryptedID; only NameID identifiers are supported
+     */
+    public NameID decrypt(EncryptedID encrypted, Map<String, Key> dataKeys) throws DecryptionException {
+        XMLObject decrypted = decryptElement(encrypted, dataKeys, NameID.DEFAULT_ELEMENT_LOCAL_NAME, nameIDUnmarshaller);
+        if (!(decrypted instanceof NameID)) {
+            throw new DecryptionException("EncryptedID did not contain a NameID");
+        }
+        return (NameID) decrypted;
+    }
+
+    /**
+     * Decrypt to DOM with the (possibly cached) data key, move the single decrypted element into
+     * a document of its own and unmarshall it with the expected element's unmarshaller
+     */
+    private XMLObject decryptElement(EncryptedElementType encrypted, Map<String, Key> dataKeys,
+                                     String expectedLocalName, Unmarshaller unmarshaller) throws DecryptionException {
+        EncryptedData data = encrypted.getEncryptedData();
+        if (data == null || data.getEncryptionMethod() == null || data.getEncryptionMethod().getAlgorithm() == null) {
+            throw new DecryptionException("EncryptedData has no EncryptionMethod");
+        }
+        String algorithm = data.getEncryptionMethod().getAlgorithm();
+        DocumentFragment fragment = decrypter.decryptDataToDOM(data, dataKey(data, algorithm, dataKeys));
+
+        Element element = null;
+        for (Node child = fragment.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            if (element != null) {
+                throw new DecryptionException("EncryptedData contained more than one element");
+            }
+            element = (Element) child;
+        }
+        if (element == null || !expectedLocalName.equals(element.getLocalName())
+                || !SAMLConstants.SAML20_NS.equals(element.getNamespaceURI())) {
+            throw new DecryptionException("EncryptedData did not contain a " + expectedLocalName);
+        }
+
+        try {
+            Document document = parserPool.newDocument();
+            Node adopted = document.adoptNode(element);
+            document.appendChild(adopted != null ? adopted : document.importNode(element, true));
+            return unmarshaller.unmarshall(document.getDocumentElement());
+        } catch (XMLParserException | UnmarshallingException e) {
+            throw new DecryptionException("Could not unmarshall decrypted " + expectedLocalName, e);
+        }
+    }
+
+    /**
+     * Unwrap the first EncryptedKey meant for this SP, reusing keys already unwrapped for the Response
+     */
+    private Key dataKey(EncryptedData data, String algorithm, Map<String, Key> dataKeys) throws DecryptionException {
+        DecryptionException failure = null;
+        for (EncryptedKey encryptedKey : encryptedKeyResolver.resolve(data)) {
+            String cacheKey = cacheKey(encryptedKey, algorithm);
+            Key key = cacheKey != null ? dataKeys.get(cacheKey) : null;
+            if (key != null) {
+                return key;
+            }
+            try {
+                key = decrypter.decryptKey(encryptedKey, algorithm);
+            } catch (DecryptionException e) {
+                // Wrapped for another recipient or with another key; try the next one
+                failure = e;
+                continue;
+            }
+            if (cacheKey != null) {
+                dataKeys.put(cacheKey, key);
+            }
+            return key;
+        }
+        throw failure != null ? failure : new DecryptionException("No EncryptedKey found for EncryptedData");
+    }
+
+    private static String cacheKey(EncryptedKey encryptedKey, String algorithm) {
+        if (encryptedKey.getCipherData() == null || encryptedKey.getCipherData().getCipherValue() == null) {
+            return null;
+        }
+        return algorithm + ' ' + encryptedKey.getCipherData().getCipherValue().getValue();
+    }
+}
@@ -0,0 +1,364 @@
+package com.saml.server.opensaml.service;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.schema.XSAny;
+import org.opensaml.core.xml.schema.XSBase64Binary;
+import org.opensaml.core.xml.schema.XSBoolean;
+import org.opensaml.core.xml.schema.XSBooleanValue;
+import org.opensaml.core.xml.schema.XSDateTime;
+import org.opensaml.core.xml.schema.XSInteger;
+import org.opensaml.core.xml.schema.XSString;
+import org.opensaml.core.xml.schema.XSURI;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeStatement;
+import org.opensaml.saml.saml2.core.NameID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Turns the attribute statements of validated assertions into the attribute map of a login
+ * ({@code saml.attributes.mappings}).
+ *
+ * The mappings are compiled at startup into one lookup table per IdP, keyed by SAML attribute
+ * Name: mappings without an IdP form the default table, and an IdP's own mappings are layered
+ * over it. An attribute missing from the table is skipped before any of its values is read.
+ * An IdP with no table, when there are no IdP-less mappings, passes every attribute through.
+ * Values come from the unmarshalled XMLObjects rather than the DOM. The result is an immutable
+ * map over two arrays; multi-valued attributes hold immutable lists.
+ */
+@Service
+public class AttributeMapper {
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    private Map<String, Map<String, Rule>> tablesByIdp = Collections.emptyMap();
+    // Null without IdP-less mappings: an IdP with no table of its own passes every attribute through
+    private Map<String, Rule> defaultTable;
+
+    @PostConstruct
+    public void init() {
+        Map<String, Rule> defaults = new HashMap<>();
+        Map<String, Map<String, Rule>> perIdp = new HashMap<>();
+        List<SAMLProperties.AttributeMapping> mappings = samlProperties.getAttributes().getMappings();
+        for (SAMLProperties.AttributeMapping mapping : mappings) {
+            if (!isSet(mapping.getIdp())) {
+                defaults.put(mapping.getName(), Rule.compile(mapping));
+            }
+        }
+        for (SAMLProperties.AttributeMapping mapping : mappings) {
+            if (isSet(mapping.getIdp())) {
+                perIdp.computeIfAbsent(mapping.getIdp(), idp -> new HashMap<>(defaults))
+                        .put(mapping.getName(), Rule.compile(mapping));
+            }
+        }
+        tablesByIdp = perIdp;
+        defaultTable = defaults.isEmpty() ? null : defaults;
+    }
+
+    /**
+     * Attributes of the assertions as mapped for the issuing IdP, followed by the subject's
+     * {@code nameId}, {@code nameIdFormat} and, for email-format NameIDs, {@code email}
+     */
+    public Map<String, Object> map(String idpEntityId, List<Assertion> assertions, NameID nameID) {
+        Map<String, Rule> table = tablesByIdp.getOrDefault(idpEntityId, defaultTable);
+        AttributeMapBuilder builder = new AttributeMapBuilder();
+        for (Assertion assertion : assertions) {
+            for (AttributeStatement statement : assertion.getAttributeStatements()) {
+                for (Attribute attribute : statement.getAttributes()) {
+                    if (table == null) {
+                        passThrough(attribute, builder);
+                        continue;
+                    }
+                    Rule rule = table.get(attribute.getName());
+                    if (rule != null) {
+                        rule.apply(attribute, builder);
+                    }
+                }
+            }
+        }
+
+        if (nameID != null) {
+            String format = nameID.getFormat();
+            if (format != null && format.contains("email")) {
+                builder.put("email", nameID.getValue());
+            }
+            builder.put("nameId", nameID.getValue());
+            builder.put("nameIdFormat", format != null ? format : "");
+        }
+        return builder.build();
+    }
+
+    private static void passThrough(Attribute attribute, AttributeMapBuilder builder) {
+        String value = null;
+        if (!attribute.getAttributeValues().isEmpty()) {
+            value = textOf(attribute.getAttributeValues().get(0));
+        }
+        builder.put(attribute.getName(), value != null ? value : "");
+    }
+
+    /**
+     * Text of an attribute value from its XMLObject, or null for types without a text form
+     */
+    static String textOf(XMLObject value) {
+        if (value instanceof XSString) {
+            return ((XSString) value).getValue();
+        }
+        if (value instanceof XSAny) {
+            return ((XSAny) value).getTextContent();
+        }
+        if (value instanceof XSURI) {
+            return ((XSURI) value).getValue();
+        }
+        if (value instanceof XSInteger) {
+            Integer integer = ((XSInteger) value).getValue();
+            return integer != null ? integer.toString() : null;
+        }
+        if (value instanceof XSBoolean) {
+            XSBooleanValue bool = ((XSBoolean) value).getValue();
+            return bool != null && bool.getValue() != null ? bool.getValue().toString() : null;
+        }
+        if (value instanceof XSDateTime) {
+            return ((XSDateTime) value).getValue() != null ? ((XSDateTime) value).getValue().toString() : null;
+        }
+        if (value instanceof XSBase64Binary) {
+            return ((XSBase64Binary) value).getValue();
+        }
+        return null;
+    }
+
+    private static boolean isSet(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    /**
+     * One compiled mapping: target name, cardinality and value conversion
+     */
+    private static final class Rule {
+        final String alias;
+        final boolean multiValued;
+        final int type;
+
+        private static final int STRING = 0;
+        private static final int BOOLEAN = 1;
+        private static final int LONG = 2;
+
+        private Rule(String alias, boolean multiValued, int type) {
+            this.alias = alias;
+            this.multiValued = multiValued;
+            this.type = type;
+        }
+
+        static Rule compile(SAMLProperties.AttributeMapping mapping) {
+            if (!isSet(mapping.getName())) {
+                throw new IllegalStateException("saml.attributes.mappings entry without a name");
+            }
+            int type;
+            if (mapping.getType() == null || SAMLProperties.AttributeMapping.TYPE_STRING.equals(mapping.getType())) {
+                type = STRING;
+            } else if (SAMLProperties.AttributeMapping.TYPE_BOOLEAN.equals(mapping.getType())) {
+                type = BOOLEAN;
+            } else if (SAMLProperties.AttributeMapping.TYPE_LONG.equals(mapping.getType())) {
+                type = LONG;
+            } else {
+                throw new IllegalStateException("Unknown attribute type '" + mapping.getType() + "' for " + mapping.getName());
+            }
+            String alias = isSet(mapping.getAlias()) ? mapping.getAlias() : mapping.getName();
+            return new Rule(alias, mapping.isMultiValued(), type);
+        }
+
+        void apply(Attribute attribute, AttributeMapBuilder builder) {
+            for (XMLObject value : attribute.getAttributeValues()) {
+                Object converted = convert(textOf(value));
+                if (converted == null) {
+                    continue;
+                }
+                if (!multiValued) {
+                    builder.putIfAbsent(alias, converted);
+                    return;
+                }
+                builder.add(alias, converted);
+            }
+        }
+
+        private Object convert(String text) {
+            if (text == null) {
+                return null;
+            }
+            switch (type) {
+                case BOOLEAN:
+                    String trimmed = text.trim();
+                    if ("true".equals(trimmed) || "1".equals(trimmed)) {
+                        return Boolean.TRUE;
+                    }
+                    if ("false".equals(trimmed) || "0".equals(trimmed)) {
+                        return Boolean.FALSE;
+                    }
+                    return null;
+                case LONG:
+                    try {
+                        return Long.valueOf(text.trim());
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                default:
+                    return text;
+            }
+        }
+    }
+
+    /**
+     * Collects names and values in parallel arrays; multi-valued entries grow as lists until built
+     */
+    private static final class AttributeMapBuilder {
+        private String[] names = new String[8];
+        private Object[] values = new Object[8];
+        private boolean[] multi = new boolean[8];
+        private int size;
+
+        void put(String name, Object value) {
+            int index = indexOf(name);
+            if (index < 0) {
+                append(name, value, false);
+            } else {
+                values[index] = value;
+                multi[index] = false;
+            }
+        }
+
+        void putIfAbsent(String name, Object value) {
+            if (indexOf(name) < 0) {
+                append(name, value, false);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void add(String name, Object value) {
+            int index = indexOf(name);
+            if (index < 0) {
+                List<Object> list = new ArrayList<>(2);
+                list.add(value);
+                append(name, list, true);
+            } else if (multi[index]) {
+                ((List<Object>) values[index]).add(value);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> build() {
+            Object[] built = Arrays.copyOf(values, size);
+            for (int i = 0; i < size; i++) {
+                if (multi[i]) {
+                    built[i] = Collections.unmodifiableList(Arrays.asList(((List<Object>) built[i]).toArray()));
+                }
+            }
+            return new AttributeMap(Arrays.copyOf(names, size), built);
+        }
+
+        private int indexOf(String name) {
+            for (int i = 0; i < size; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void append(String name, Object value, boolean isMulti) {
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                multi = Arrays.copyOf(multi, size * 2);
+            }
+            names[size] = name;
+            values[size] = value;
+            multi[size] = isMulti;
+            size++;
+        }
+    }
+
+    /**
+     * Immutable map over parallel arrays; logins carry a handful of attributes, so a scan beats hashing
+     */
+    private static final class AttributeMap extends AbstractMap<String, Object> {
+        private final String[] names;
+        private final Object[] values;
+
+        AttributeMap(String[] names, Object[] values) {
+            this.names = names;
+            this.values = values;
+        }
+
+        @Override
+        public Object get(Object key) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(key)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            for (String name : names) {
+                if (name.equals(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int size() {
+            return names.length;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < names.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (next >= names.length) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, Object> entry = new SimpleImmutableEntry<>(names[next], values[next]);
+                            next++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return names.length;
+                }
+            };
+        }
+    }
+}
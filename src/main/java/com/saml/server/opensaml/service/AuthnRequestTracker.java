@@ -0,0 +1,167 @@
+package com.saml.server.opensaml.service;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Issues AuthnRequest IDs and checks the InResponseTo of incoming Responses against them
+ * ({@code saml.in-response-to.*}).
+ *
+ * {@code store=memory} remembers each ID in a {@link PendingRequestStore} on this node and
+ * consumes it when the Response arrives, so every ID is good for one login; it needs the
+ * ACS to be routed to the node that sent the request. {@code store=stateless} keeps nothing:
+ * the ID carries its issue time and a truncated HMAC-SHA256, and any node sharing the key
+ * accepts it until it ages out. That rejects forged and stale IDs but not a second use of a
+ * valid one within the TTL.
+ */
+@Service
+public class AuthnRequestTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthnRequestTracker.class);
+
+    private static final int BUCKETS = 10;
+    private static final int NONCE_BYTES = 8;
+    private static final int MAC_BYTES = 16;
+    private static final int TOKEN_BYTES = 8 + NONCE_BYTES + MAC_BYTES;
+    private static final long CLOCK_SKEW_MILLIS = 60000;
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private SAMLUtilityService utilityService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private Clock clock;
+
+    private String store;
+    private boolean allowUnsolicited;
+    private long ttlMillis;
+    private PendingRequestStore pending;
+    private ThreadLocal<Mac> macs;
+
+    @PostConstruct
+    public void init() {
+        SAMLProperties.InResponseTo config = samlProperties.getInResponseTo();
+        store = config.getStore();
+        allowUnsolicited = config.isAllowUnsolicited();
+        ttlMillis = config.getTtlMillis();
+
+        if (SAMLProperties.InResponseTo.STORE_MEMORY.equals(store)) {
+            pending = new PendingRequestStore(ttlMillis, BUCKETS, config.getMaxPending(), clock);
+            Gauge.builder("saml.authn_requests.pending", pending, PendingRequestStore::size)
+                    .description("AuthnRequest IDs waiting for their Response")
+                    .register(registry);
+            FunctionCounter.builder("saml.authn_requests.evicted", pending, PendingRequestStore::evictions)
+                    .description("AuthnRequest IDs dropped before their TTL because max-pending was reached")
+                    .register(registry);
+        } else if (SAMLProperties.InResponseTo.STORE_STATELESS.equals(store)) {
+            byte[] key;
+            if (config.getHmacKey() != null && !config.getHmacKey().trim().isEmpty()) {
+                key = Base64.getDecoder().decode(config.getHmacKey().trim());
+            } else {
+                key = new byte[32];
+                new SecureRandom().nextBytes(key);
+                log.warn("saml.in-response-to.hmac-key is not set; AuthnRequest IDs will only be accepted by this JVM");
+            }
+            SecretKeySpec secret = new SecretKeySpec(key, "HmacSHA256");
+            macs = ThreadLocal.withInitial(() -> newMac(secret));
+        } else if (!SAMLProperties.InResponseTo.STORE_NONE.equals(store)) {
+            throw new IllegalStateException("Unknown saml.in-response-to.store: " + store);
+        }
+    }
+
+    /**
+     * New AuthnRequest ID, remembered until its Response arrives, it expires or newer IDs evict it
+     */
+    public String issue() {
+        if (pending != null) {
+            String id = utilityService.generateSAMLId();
+            pending.add(id);
+            return id;
+        }
+        if (macs != null) {
+            return issueStateless();
+        }
+        return utilityService.generateSAMLId();
+    }
+
+    /**
+     * Check a Response's InResponseTo; returns null when accepted, otherwise why it was rejected.
+     * In memory mode an accepted ID is consumed and will not be accepted again.
+     */
+    public RejectionReason check(String inResponseTo) {
+        if (SAMLProperties.InResponseTo.STORE_NONE.equals(store)) {
+            return null;
+        }
+        if (inResponseTo == null || inResponseTo.isEmpty()) {
+            return allowUnsolicited ? null : RejectionReason.UNSOLICITED_RESPONSE;
+        }
+        boolean known = pending != null ? pending.consume(inResponseTo) : verifyStateless(inResponseTo);
+        return known ? null : RejectionReason.UNKNOWN_IN_RESPONSE_TO;
+    }
+
+    private String issueStateless() {
+        ByteBuffer token = ByteBuffer.allocate(TOKEN_BYTES);
+        token.putLong(clock.millis());
+        token.putLong(ThreadLocalRandom.current().nextLong());
+        token.put(mac(token.array(), TOKEN_BYTES - MAC_BYTES));
+        // '_' keeps the ID a valid xs:ID; the URL-safe alphabet has no characters NCName forbids
+        return "_" + Base64.getUrlEncoder().withoutPadding().encodeToString(token.array());
+    }
+
+    private boolean verifyStateless(String id) {
+        byte[] token;
+        try {
+            token = Base64.getUrlDecoder().decode(id.substring(1));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (id.charAt(0) != '_' || token.length != TOKEN_BYTES) {
+            return false;
+        }
+        byte[] expected = mac(token, TOKEN_BYTES - MAC_BYTES);
+        if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(token, TOKEN_BYTES - MAC_BYTES, TOKEN_BYTES))) {
+            return false;
+        }
+        long age = clock.millis() - ByteBuffer.wrap(token).getLong();
+        return age >= -CLOCK_SKEW_MILLIS && age <= ttlMillis;
+    }
+
+    private byte[] mac(byte[] input, int length) {
+        Mac mac = macs.get();
+        mac.update(input, 0, length);
+        return Arrays.copyOf(mac.doFinal(), MAC_BYTES);
+    }
+
+    private static Mac newMac(SecretKeySpec secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(secret);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
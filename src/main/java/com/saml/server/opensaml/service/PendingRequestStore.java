@@ -0,0 +1,243 @@
+package com.saml.server.opensaml.service;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, expiring set of outstanding AuthnRequest IDs with single-use consumption.
+ *
+ * IDs are kept as seeded 64-bit hashes rather than strings, in a ring of time buckets that
+ * together span the TTL. A bucket whose time slot has passed is replaced as a whole when its
+ * slot comes round again, so expiry needs no sweeper thread and no per-entry timestamps.
+ * {@link #consume} removes the hash from the live bucket that holds it; of two concurrent
+ * Responses quoting the same ID only one sees the removal succeed.
+ *
+ * Each bucket is an open-addressing table of primitive longs, so an outstanding ID costs
+ * 24 to 40 bytes and no boxing. A bucket keeps at most the last {@code maxPending / (buckets + 1)}
+ * IDs added in its time slot; an older one that is still outstanding is evicted to take a new
+ * one. Under a flood of logins the earliest requests of the slot lose their InResponseTo,
+ * but new logins keep working.
+ */
+public final class PendingRequestStore {
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Clock clock;
+    private final long bucketMillis;
+    private final int buckets;
+    private final int bucketCapacity;
+    private final long seed = new SecureRandom().nextLong();
+    private final AtomicReferenceArray<Bucket> ring;
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * @param ttlMillis  how long an added ID can be consumed; the last bucket adds up to ttl/buckets on top
+     * @param buckets    number of time slots the TTL is split into
+     * @param maxPending upper bound on IDs held across all live buckets
+     */
+    public PendingRequestStore(long ttlMillis, int buckets, int maxPending, Clock clock) {
+        this.clock = clock;
+        this.buckets = Math.max(1, buckets);
+        this.bucketMillis = Math.max(1, ttlMillis / this.buckets);
+        // One extra slot holds the current bucket while the oldest live one still answers
+        this.ring = new AtomicReferenceArray<>(this.buckets + 1);
+        this.bucketCapacity = Math.max(1, maxPending / (this.buckets + 1));
+    }
+
+    /**
+     * Remember an outstanding ID, evicting the oldest one of the current bucket when it is full
+     */
+    public void add(String id) {
+        if (current(clock.millis() / bucketMillis).add(hash(id))) {
+            evicted.increment();
+        }
+    }
+
+    /**
+     * Remove an ID if it is outstanding and not expired; true for exactly one caller per added ID
+     */
+    public boolean consume(String id) {
+        long epoch = clock.millis() / bucketMillis;
+        long key = hash(id);
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && isLive(bucket, epoch) && bucket.remove(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Outstanding IDs across the live buckets
+     */
+    public int size() {
+        long epoch = clock.millis() / bucketMillis;
+        int size = 0;
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && isLive(bucket, epoch)) {
+                size += bucket.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * IDs dropped before their TTL because their bucket was full
+     */
+    public long evictions() {
+        return evicted.sum();
+    }
+
+    private boolean isLive(Bucket bucket, long epoch) {
+        return epoch - bucket.epoch <= buckets;
+    }
+
+    /**
+     * Bucket for the epoch, swapping out the stale one that occupied its slot
+     */
+    private Bucket current(long epoch) {
+        int slot = (int) (epoch % ring.length());
+        while (true) {
+            Bucket bucket = ring.get(slot);
+            // A newer epoch in the slot only happens when the clock steps back; keep using it
+            if (bucket != null && bucket.epoch >= epoch) {
+                return bucket;
+            }
+            Bucket fresh = new Bucket(epoch, bucketCapacity);
+            if (ring.compareAndSet(slot, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    /**
+     * Seeded FNV-1a over the ID's characters with a final avalanche; the seed is per JVM so
+     * collisions cannot be aimed at from outside. Never returns {@link Bucket#EMPTY}.
+     */
+    private long hash(String id) {
+        long h = seed;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= FNV_PRIME;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != Bucket.EMPTY ? h : 1;
+    }
+
+    /**
+     * Linear-probing hash set of longs plus a ring of the keys in insertion order. Both start
+     * small and double up to the bucket's capacity, so a quiet bucket stays a few hundred bytes.
+     * Removal shifts the rest of the probe run back instead of leaving tombstones. The methods
+     * are short and allocation-free, so a monitor per bucket is cheaper here than a lock-free table.
+     */
+    private static final class Bucket {
+
+        static final long EMPTY = 0;
+        private static final int INITIAL_CAPACITY = 16;
+
+        final long epoch;
+        private final int capacity;
+        private long[] table;
+        private long[] order;
+        private long added;
+        private int size;
+
+        Bucket(long epoch, int capacity) {
+            this.epoch = epoch;
+            this.capacity = capacity;
+            this.order = new long[Math.min(capacity, INITIAL_CAPACITY)];
+            this.table = new long[INITIAL_CAPACITY * 2];
+        }
+
+        /**
+         * Insert a key; true when the oldest key still held had to be evicted to make room
+         */
+        synchronized boolean add(long key) {
+            boolean evicted = false;
+            if (added >= capacity) {
+                // The order ring has wrapped: its slot holds the key added capacity inserts ago
+                evicted = removeKey(order[(int) (added % capacity)]);
+            } else if (added == order.length) {
+                order = Arrays.copyOf(order, (int) Math.min(capacity, 2L * order.length));
+            }
+            if ((size + 1) * 2 > table.length) {
+                resize(table.length * 2);
+            }
+            if (insert(table, key)) {
+                size++;
+            }
+            order[(int) (added % order.length)] = key;
+            added++;
+            return evicted;
+        }
+
+        synchronized boolean remove(long key) {
+            return removeKey(key);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private boolean removeKey(long key) {
+            int mask = table.length - 1;
+            int hole = index(key, mask);
+            while (table[hole] != key) {
+                if (table[hole] == EMPTY) {
+                    return false;
+                }
+                hole = (hole + 1) & mask;
+            }
+            // Move back each later key of the run whose home slot does not lie after the hole
+            for (int i = (hole + 1) & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+                int home = index(table[i], mask);
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    table[hole] = table[i];
+                    hole = i;
+                }
+            }
+            table[hole] = EMPTY;
+            size--;
+            return true;
+        }
+
+        private void resize(int length) {
+            long[] grown = new long[length];
+            for (long key : table) {
+                if (key != EMPTY) {
+                    insert(grown, key);
+                }
+            }
+            table = grown;
+        }
+
+        /**
+         * Put a key into a table with a free slot; false when it was already there
+         */
+        private static boolean insert(long[] table, long key) {
+            int mask = table.length - 1;
+            for (int i = index(key, mask); ; i = (i + 1) & mask) {
+                if (table[i] == EMPTY) {
+                    table[i] = key;
+                    return true;
+                }
+                if (table[i] == key) {
+                    return false;
+                }
+            }
+        }
+
+        private static int index(long key, int mask) {
+            return (int) (key ^ (key >>> 32)) & mask;
+        }
+    }
+}
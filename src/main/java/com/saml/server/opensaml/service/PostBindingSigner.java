@@ -0,0 +1,45 @@
+package com.saml.server.opensaml.service;
+
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.common.SAMLObjectContentReference;
+import org.opensaml.saml.common.SignableSAMLObject;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.ContentReference;
+import org.opensaml.xmlsec.signature.support.SignatureConstants;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import org.opensaml.xmlsec.signature.support.Signer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Signs messages sent over the HTTP-POST binding with an enveloped XML signature
+ * (SAML 2.0 Bindings, section 3.5.4): exclusive C14N, SHA-256 digest, and RSA or ECDSA
+ * with SHA-256 depending on the SP key, as {@link RedirectBindingSigner} does for the query string.
+ */
+@Component
+public class PostBindingSigner {
+
+    @Autowired
+    private SAMLObjects samlObjects;
+
+    /**
+     * Sign the message in place, replacing any earlier signature; it is marshalled afterwards
+     */
+    public void sign(SignableSAMLObject message, Credential credential) throws MarshallingException, SignatureException {
+        Signature signature = samlObjects.signature();
+        signature.setSigningCredential(credential);
+        signature.setSignatureAlgorithm(RedirectBindingSigner.isEllipticCurve(credential.getPrivateKey())
+                ? RedirectBindingSigner.ECDSA_SHA256 : RedirectBindingSigner.RSA_SHA256);
+        signature.setCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+        message.setSignature(signature);
+        for (ContentReference reference : signature.getContentReferences()) {
+            if (reference instanceof SAMLObjectContentReference) {
+                ((SAMLObjectContentReference) reference).setDigestAlgorithm(SignatureConstants.ALGO_ID_DIGEST_SHA256);
+            }
+        }
+        XMLObjectSupport.marshall(message);
+        Signer.signObject(signature);
+    }
+}
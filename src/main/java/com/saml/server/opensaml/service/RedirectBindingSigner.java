@@ -0,0 +1,84 @@
+package com.saml.server.opensaml.service;
+
+import org.springframework.stereotype.Component;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Base64;
+
+/**
+ * Builds HTTP-Redirect binding query strings and signs them with SigAlg/Signature parameters
+ * (SAML 2.0 Bindings, section 3.4.4.1).
+ *
+ * Looking up a {@link Signature} walks the JCA provider list, so each thread keeps one instance
+ * per algorithm and only re-initialises it with the key. Keys are parsed once per tenant by
+ * {@link com.saml.server.opensaml.tenant.SPTenantRegistry}.
+ */
+@Component
+public class RedirectBindingSigner {
+
+    public static final String RSA_SHA256 = "http://www.w3.org/2001/04/xmldsig-more#rsa-sha256";
+    public static final String ECDSA_SHA256 = "http://www.w3.org/2001/04/xmldsig-more#ecdsa-sha256";
+
+    private static final ThreadLocal<Signature> RSA_SIGNATURE = ThreadLocal.withInitial(() -> newSignature("SHA256withRSA"));
+    private static final ThreadLocal<Signature> ECDSA_SIGNATURE = ThreadLocal.withInitial(() -> newSignature("SHA256withECDSA"));
+
+    /**
+     * Query string for a message, signed when a key is given
+     */
+    public String buildQuery(String messageParameter, String encodedMessage, String relayState, PrivateKey signingKey) {
+        StringBuilder query = new StringBuilder(encodedMessage.length() + (signingKey != null ? 512 : 64));
+        query.append(messageParameter).append('=').append(urlEncode(encodedMessage));
+        if (relayState != null && !relayState.isEmpty()) {
+            query.append("&RelayState=").append(urlEncode(relayState));
+        }
+        if (signingKey == null) {
+            return query.toString();
+        }
+
+        boolean ec = isEllipticCurve(signingKey);
+        query.append("&SigAlg=").append(urlEncode(ec ? ECDSA_SHA256 : RSA_SHA256));
+        byte[] signature = sign(ec ? ECDSA_SIGNATURE.get() : RSA_SIGNATURE.get(), signingKey,
+                query.toString().getBytes(StandardCharsets.UTF_8));
+        query.append("&Signature=").append(urlEncode(Base64.getEncoder().encodeToString(signature)));
+        return query.toString();
+    }
+
+    /**
+     * Whether the key signs with ECDSA rather than RSA; shared with {@link PostBindingSigner}
+     */
+    static boolean isEllipticCurve(PrivateKey key) {
+        // BouncyCastle reports "ECDSA", the JDK providers "EC"
+        return "EC".equals(key.getAlgorithm()) || "ECDSA".equals(key.getAlgorithm());
+    }
+
+    private static byte[] sign(Signature signature, PrivateKey key, byte[] octets) {
+        try {
+            signature.initSign(key);
+            signature.update(octets);
+            return signature.sign();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to sign redirect binding message", e);
+        }
+    }
+
+    private static Signature newSignature(String algorithm) {
+        try {
+            return Signature.getInstance(algorithm);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Signature algorithm not available: " + algorithm, e);
+        }
+    }
+
+    private static String urlEncode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.saml.server.opensaml.service;
+
+import java.util.Locale;
+
+/**
+ * Why a SAML Response was rejected by the ACS.
+ * Validators return one of these (or null when the check passed) instead of a bare
+ * {@code false}, so operators can tell the failure modes apart without exceptions.
+ */
+public enum RejectionReason {
+    /** Not decodable, not well-formed XML, or not a SAML Response */
+    MALFORMED,
+    /** Response has no Status or StatusCode */
+    MISSING_STATUS,
+    /** IdP returned a non-success StatusCode */
+    STATUS_NOT_SUCCESS,
+    /** Issuer is missing or not a trusted IdP */
+    UNTRUSTED_ISSUER,
+    /** Destination does not match the tenant's ACS URL */
+    DESTINATION_MISMATCH,
+    /** Response carries no assertions */
+    NO_ASSERTIONS,
+    /** Plaintext assertion although this SP wants assertions encrypted */
+    ASSERTION_NOT_ENCRYPTED,
+    /** Plaintext NameID although this SP wants NameIDs encrypted */
+    NAME_ID_NOT_ENCRYPTED,
+    /** EncryptedAssertion or EncryptedID could not be decrypted with the SP key */
+    DECRYPTION_FAILED,
+    /** Assertion issuer differs from the Response issuer */
+    ASSERTION_ISSUER_MISMATCH,
+    /** Assertion has no Subject or NameID */
+    MISSING_SUBJECT,
+    /** Conditions NotBefore lies in the future */
+    NOT_YET_VALID,
+    /** Conditions NotOnOrAfter has passed */
+    EXPIRED,
+    /** No AudienceRestriction names this SP */
+    AUDIENCE_MISMATCH,
+    /** Assertion carries no signature although saml.want-assertions-signed is on */
+    ASSERTION_NOT_SIGNED,
+    /** Neither the Response nor every one of its assertions is signed */
+    RESPONSE_NOT_SIGNED,
+    /** SignatureMethod is not in saml.signature.allowed-algorithms */
+    DISALLOWED_SIGNATURE_ALGORITHM,
+    /** Signature breaks the SAML signature profile, e.g. its Reference is not the signed element's ID */
+    INVALID_SIGNATURE_PROFILE,
+    /** None of the IdP's signing certificates passes PKIX path validation */
+    UNTRUSTED_CERTIFICATE,
+    /** Signature does not verify against any of the IdP's signing keys */
+    INVALID_SIGNATURE,
+    /** Response has no InResponseTo and saml.in-response-to.allow-unsolicited is off */
+    UNSOLICITED_RESPONSE,
+    /** InResponseTo names no outstanding AuthnRequest: unknown, expired or already used */
+    UNKNOWN_IN_RESPONSE_TO,
+    /** Unexpected failure inside this SP while processing a well-formed Response */
+    INTERNAL_ERROR;
+
+    private final String code;
+
+    RejectionReason() {
+        this.code = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Stable lower-case code used in metric tags and logs
+     */
+    public String getCode() {
+        return code;
+    }
+}
@@ -1,38 +1,83 @@
 package com.saml.server.opensaml.service;
 
 import com.saml.server.opensaml.config.SAMLProperties;
-import org.opensaml.core.xml.util.XMLObjectSupport;
+import com.saml.server.opensaml.jfr.AuthnRequestBuildEvent;
+import com.saml.server.opensaml.jfr.SAMLEvent;
+import com.saml.server.opensaml.tenant.SPTenantContext;
+import com.saml.server.opensaml.tenant.SPTenantRegistry;
 import org.opensaml.saml.saml2.core.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.time.Clock;
 import java.util.Base64;
 
 @Service
 public class SAMLAuthRequestService {
 
+    @Autowired
+    private SAMLUtilityService utilityService;
+
+    @Autowired
+    private SPTenantRegistry tenantRegistry;
+
+    @Autowired
+    private Clock clock;
+
     @Autowired
     private SAMLProperties samlProperties;
 
     @Autowired
-    private SAMLUtilityService utilityService;
+    private RedirectBindingSigner redirectSigner;
+
+    @Autowired
+    private PostBindingSigner postSigner;
+
+    @Autowired
+    private AuthnRequestTracker requestTracker;
+
+    @Autowired
+    private SAMLObjects samlObjects;
 
     /**
-     * Create a SAML AuthnRequest
+     * Create a SAML AuthnRequest for the default tenant
      */
     public AuthnRequest createAuthnRequest() throws Exception {
-        AuthnRequest authnRequest = (AuthnRequest) XMLObjectSupport.buildXMLObject(AuthnRequest.DEFAULT_ELEMENT_NAME);
+        return createAuthnRequest(tenantRegistry.getDefaultTenant());
+    }
+
+    /**
+     * Create a SAML AuthnRequest from a tenant's request template
+     */
+    public AuthnRequest createAuthnRequest(SPTenantContext tenant) throws Exception {
+        AuthnRequestBuildEvent event = new AuthnRequestBuildEvent();
+        event.begin();
+        event.setIdpEntityId(tenant.getIdpEntityId());
+        String outcome = SAMLEvent.FAILURE;
+        try {
+            AuthnRequest authnRequest = buildAuthnRequest(tenant);
+            outcome = SAMLEvent.SUCCESS;
+            return authnRequest;
+        } finally {
+            event.complete(outcome, tenant.isSynthetic());
+        }
+    }
+
+    private AuthnRequest buildAuthnRequest(SPTenantContext tenant) {
+        AuthnRequest authnRequest = samlObjects.authnRequest();
         
         // Set basic attributes
-        authnRequest.setID(utilityService.generateSAMLId());
-        authnRequest.setIssueInstant(org.joda.time.DateTime.now());
-        authnRequest.setProtocolBinding("urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST");
-        authnRequest.setAssertionConsumerServiceURL(samlProperties.getAssertionConsumerServiceURL());
-        authnRequest.setDestination(samlProperties.getIdpSingleSignOnServiceURL());
-        authnRequest.setIssuer(createIssuer());
-        authnRequest.setNameIDPolicy(createNameIDPolicy());
-        authnRequest.setRequestedAuthnContext(createRequestedAuthnContext());
+        authnRequest.setID(requestTracker.issue());
+        authnRequest.setIssueInstant(new org.joda.time.DateTime(clock.millis()));
+        authnRequest.setProtocolBinding(tenant.getProtocolBinding());
+        authnRequest.setAssertionConsumerServiceURL(tenant.getAssertionConsumerServiceURL());
+        authnRequest.setDestination(tenantRegistry.idpSingleSignOnServiceURL(tenant));
+        authnRequest.setIssuer(createIssuer(tenant));
+        authnRequest.setNameIDPolicy(createNameIDPolicy(tenant));
+        authnRequest.setRequestedAuthnContext(createRequestedAuthnContext(tenant));
         
         return authnRequest;
     }
@@ -40,18 +85,18 @@ public class SAMLAuthRequestService {
     /**
      * Create Issuer element
      */
-    private Issuer createIssuer() {
-        Issuer issuer = (Issuer) XMLObjectSupport.buildXMLObject(Issuer.DEFAULT_ELEMENT_NAME);
-        issuer.setValue(samlProperties.getEntityId());
+    private Issuer createIssuer(SPTenantContext tenant) {
+        Issuer issuer = samlObjects.issuer();
+        issuer.setValue(tenant.getEntityId());
         return issuer;
     }
 
     /**
      * Create NameIDPolicy element
      */
-    private NameIDPolicy createNameIDPolicy() {
-        NameIDPolicy nameIDPolicy = (NameIDPolicy) XMLObjectSupport.buildXMLObject(NameIDPolicy.DEFAULT_ELEMENT_NAME);
-        nameIDPolicy.setFormat(samlProperties.getNameIdFormat());
+    private NameIDPolicy createNameIDPolicy(SPTenantContext tenant) {
+        NameIDPolicy nameIDPolicy = samlObjects.nameIDPolicy();
+        nameIDPolicy.setFormat(tenant.getNameIdFormat());
         nameIDPolicy.setAllowCreate(true);
         return nameIDPolicy;
     }
@@ -59,12 +104,12 @@ public class SAMLAuthRequestService {
     /**
      * Create RequestedAuthnContext element
      */
-    private RequestedAuthnContext createRequestedAuthnContext() {
-        RequestedAuthnContext requestedAuthnContext = (RequestedAuthnContext) XMLObjectSupport.buildXMLObject(RequestedAuthnContext.DEFAULT_ELEMENT_NAME);
+    private RequestedAuthnContext createRequestedAuthnContext(SPTenantContext tenant) {
+        RequestedAuthnContext requestedAuthnContext = samlObjects.requestedAuthnContext();
         requestedAuthnContext.setComparison(AuthnContextComparisonTypeEnumeration.EXACT);
         
-        AuthnContextClassRef authnContextClassRef = (AuthnContextClassRef) XMLObjectSupport.buildXMLObject(AuthnContextClassRef.DEFAULT_ELEMENT_NAME);
-        authnContextClassRef.setAuthnContextClassRef("urn:oasis:names:tc:SAML:2.0:ac:classes:PasswordProtectedTransport");
+        AuthnContextClassRef authnContextClassRef = samlObjects.authnContextClassRef();
+        authnContextClassRef.setAuthnContextClassRef(tenant.getAuthnContextClassRef());
         
         requestedAuthnContext.getAuthnContextClassRefs().add(authnContextClassRef);
         
@@ -75,18 +120,38 @@ public class SAMLAuthRequestService {
      * Serialize and encode AuthnRequest for HTTP-Redirect binding
      */
     public String createRedirectURL(AuthnRequest authnRequest, String relayState) throws Exception {
+        return createRedirectURL(tenantRegistry.getDefaultTenant(), authnRequest, relayState);
+    }
+
+    /**
+     * Serialize and encode AuthnRequest for HTTP-Redirect binding to a tenant's IdP
+     */
+    public String createRedirectURL(SPTenantContext tenant, AuthnRequest authnRequest, String relayState) throws Exception {
         String samlRequest = utilityService.serializeSAMLObject(authnRequest);
         String encodedSAMLRequest = utilityService.compressAndEncode(samlRequest);
         
-        StringBuilder url = new StringBuilder();
-        url.append(samlProperties.getIdpSingleSignOnServiceURL());
-        url.append("?SAMLRequest=").append(java.net.URLEncoder.encode(encodedSAMLRequest, "UTF-8"));
-        
-        if (relayState != null && !relayState.isEmpty()) {
-            url.append("&RelayState=").append(java.net.URLEncoder.encode(relayState, "UTF-8"));
+        return tenantRegistry.idpSingleSignOnServiceURL(tenant) + "?"
+                + redirectSigner.buildQuery("SAMLRequest", encodedSAMLRequest, relayState, signingKey(tenant));
+    }
+
+    /**
+     * SP key for Redirect-binding signatures, or null when requests go unsigned
+     */
+    private PrivateKey signingKey(SPTenantContext tenant) {
+        return samlProperties.isAuthnRequestsSigned() ? tenant.getSpPrivateKey() : null;
+    }
+
+    /**
+     * Auto-submitting HTML form that posts the AuthnRequest to a tenant's IdP (HTTP-POST binding)
+     */
+    public String createPostForm(SPTenantContext tenant, AuthnRequest authnRequest, String relayState) throws Exception {
+        if (samlProperties.isAuthnRequestsSigned() && tenant.getSpCredential() != null) {
+            postSigner.sign(authnRequest, tenant.getSpCredential());
         }
-        
-        return url.toString();
+        String samlRequest = utilityService.serializeSAMLObject(authnRequest);
+        String encodedSAMLRequest = Base64.getEncoder().encodeToString(samlRequest.getBytes(StandardCharsets.UTF_8));
+        return utilityService.createAutoPostForm(tenantRegistry.idpSingleSignOnServiceURL(tenant),
+                "SAMLRequest", encodedSAMLRequest, relayState);
     }
 
     /**
@@ -1,12 +1,29 @@
 package com.saml.server.opensaml.service;
 
 import com.saml.server.opensaml.config.SAMLProperties;
-import org.opensaml.core.xml.util.XMLObjectSupport;
+import com.saml.server.opensaml.jfr.LogoutEvent;
+import com.saml.server.opensaml.jfr.SAMLEvent;
+import com.saml.server.opensaml.metadata.IdPDescriptor;
+import com.saml.server.opensaml.metadata.PKIXTrustValidator;
+import com.saml.server.opensaml.tenant.SPTenantContext;
+import com.saml.server.opensaml.tenant.SPTenantRegistry;
+import org.opensaml.saml.common.SignableSAMLObject;
 import org.opensaml.saml.saml2.core.*;
+import org.opensaml.saml.security.impl.SAMLSignatureProfileValidator;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import org.opensaml.xmlsec.signature.support.SignatureValidator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.time.Clock;
 import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
 
 @Service
 public class SAMLLogoutService {
@@ -17,22 +34,57 @@ public class SAMLLogoutService {
     @Autowired
     private SAMLUtilityService utilityService;
 
+    @Autowired
+    private SPTenantRegistry tenantRegistry;
+
+    @Autowired
+    private SAMLSecurityService securityService;
+
+    @Autowired
+    private RedirectBindingSigner redirectSigner;
+
+    @Autowired
+    private PostBindingSigner postSigner;
+
+    @Autowired
+    private SAMLObjects samlObjects;
+
+    @Autowired
+    private PKIXTrustValidator pkixTrustValidator;
+
+    @Autowired
+    private Clock clock;
+
+    private Set<String> allowedSignatureAlgorithms;
+
+    @PostConstruct
+    public void init() {
+        allowedSignatureAlgorithms = new HashSet<>(samlProperties.getSignature().getAllowedAlgorithms());
+    }
+
     /**
-     * Create a SAML LogoutRequest
+     * Create a SAML LogoutRequest for the default tenant
      */
     public LogoutRequest createLogoutRequest(String nameId, String sessionIndex) throws Exception {
-        LogoutRequest logoutRequest = (LogoutRequest) XMLObjectSupport.buildXMLObject(LogoutRequest.DEFAULT_ELEMENT_NAME);
+        return createLogoutRequest(tenantRegistry.getDefaultTenant(), nameId, sessionIndex);
+    }
+
+    /**
+     * Create a SAML LogoutRequest for a tenant
+     */
+    public LogoutRequest createLogoutRequest(SPTenantContext tenant, String nameId, String sessionIndex) throws Exception {
+        LogoutRequest logoutRequest = samlObjects.logoutRequest();
         
         // Set basic attributes
         logoutRequest.setID(utilityService.generateSAMLId());
-        logoutRequest.setIssueInstant(org.joda.time.DateTime.now());
-        logoutRequest.setDestination(samlProperties.getIdpSingleLogoutServiceURL());
-        logoutRequest.setIssuer(createIssuer());
-        logoutRequest.setNameID(createNameID(nameId));
+        logoutRequest.setIssueInstant(new org.joda.time.DateTime(clock.millis()));
+        logoutRequest.setDestination(tenantRegistry.idpSingleLogoutServiceURL(tenant));
+        logoutRequest.setIssuer(createIssuer(tenant));
+        logoutRequest.setNameID(createNameID(tenant, nameId));
         
         // Add session index if provided
         if (sessionIndex != null && !sessionIndex.isEmpty()) {
-            SessionIndex sessionIndexElement = (SessionIndex) XMLObjectSupport.buildXMLObject(SessionIndex.DEFAULT_ELEMENT_NAME);
+            SessionIndex sessionIndexElement = samlObjects.sessionIndex();
             sessionIndexElement.setSessionIndex(sessionIndex);
             logoutRequest.getSessionIndexes().add(sessionIndexElement);
         }
@@ -41,16 +93,23 @@ public class SAMLLogoutService {
     }
 
     /**
-     * Create a SAML LogoutResponse
+     * Create a SAML LogoutResponse for the default tenant
      */
     public LogoutResponse createLogoutResponse(String inResponseTo, boolean success) throws Exception {
-        LogoutResponse logoutResponse = (LogoutResponse) XMLObjectSupport.buildXMLObject(LogoutResponse.DEFAULT_ELEMENT_NAME);
+        return createLogoutResponse(tenantRegistry.getDefaultTenant(), inResponseTo, success);
+    }
+
+    /**
+     * Create a SAML LogoutResponse for a tenant
+     */
+    public LogoutResponse createLogoutResponse(SPTenantContext tenant, String inResponseTo, boolean success) throws Exception {
+        LogoutResponse logoutResponse = samlObjects.logoutResponse();
         
         // Set basic attributes
         logoutResponse.setID(utilityService.generateSAMLId());
-        logoutResponse.setIssueInstant(org.joda.time.DateTime.now());
-        logoutResponse.setDestination(samlProperties.getSingleLogoutServiceURL());
-        logoutResponse.setIssuer(createIssuer());
+        logoutResponse.setIssueInstant(new org.joda.time.DateTime(clock.millis()));
+        logoutResponse.setDestination(tenant.getSingleLogoutServiceURL());
+        logoutResponse.setIssuer(createIssuer(tenant));
         logoutResponse.setInResponseTo(inResponseTo);
         logoutResponse.setStatus(createStatus(success));
         
@@ -60,19 +119,19 @@ public class SAMLLogoutService {
     /**
      * Create Issuer element
      */
-    private Issuer createIssuer() {
-        Issuer issuer = (Issuer) XMLObjectSupport.buildXMLObject(Issuer.DEFAULT_ELEMENT_NAME);
-        issuer.setValue(samlProperties.getEntityId());
+    private Issuer createIssuer(SPTenantContext tenant) {
+        Issuer issuer = samlObjects.issuer();
+        issuer.setValue(tenant.getEntityId());
         return issuer;
     }
 
     /**
      * Create NameID element
      */
-    private NameID createNameID(String nameIdValue) {
-        NameID nameID = (NameID) XMLObjectSupport.buildXMLObject(NameID.DEFAULT_ELEMENT_NAME);
+    private NameID createNameID(SPTenantContext tenant, String nameIdValue) {
+        NameID nameID = samlObjects.nameID();
         nameID.setValue(nameIdValue);
-        nameID.setFormat(samlProperties.getNameIdFormat());
+        nameID.setFormat(tenant.getNameIdFormat());
         return nameID;
     }
 
@@ -80,8 +139,8 @@ public class SAMLLogoutService {
      * Create Status element
      */
     private Status createStatus(boolean success) {
-        Status status = (Status) XMLObjectSupport.buildXMLObject(Status.DEFAULT_ELEMENT_NAME);
-        StatusCode statusCode = (StatusCode) XMLObjectSupport.buildXMLObject(StatusCode.DEFAULT_ELEMENT_NAME);
+        Status status = samlObjects.status();
+        StatusCode statusCode = samlObjects.statusCode();
         
         if (success) {
             statusCode.setValue("urn:oasis:names:tc:SAML:2.0:status:Success");
@@ -97,45 +156,108 @@ public class SAMLLogoutService {
      * Create redirect URL for LogoutRequest
      */
     public String createLogoutRedirectURL(LogoutRequest logoutRequest, String relayState) throws Exception {
+        return createLogoutRedirectURL(tenantRegistry.getDefaultTenant(), logoutRequest, relayState);
+    }
+
+    /**
+     * Create redirect URL for LogoutRequest to a tenant's IdP
+     */
+    public String createLogoutRedirectURL(SPTenantContext tenant, LogoutRequest logoutRequest, String relayState) throws Exception {
+        LogoutEvent event = new LogoutEvent();
+        event.begin();
+        event.setOperation(LogoutEvent.BUILD_REQUEST);
+        event.setIdpEntityId(tenant.getIdpEntityId());
         String samlRequest = utilityService.serializeSAMLObject(logoutRequest);
         String encodedSAMLRequest = utilityService.compressAndEncode(samlRequest);
+        event.setPayloadSize(encodedSAMLRequest.length());
+        String query = redirectSigner.buildQuery("SAMLRequest", encodedSAMLRequest, relayState, signingKey(tenant));
+        event.complete(SAMLEvent.SUCCESS, tenant.isSynthetic());
         
-        StringBuilder url = new StringBuilder();
-        url.append(samlProperties.getIdpSingleLogoutServiceURL());
-        url.append("?SAMLRequest=").append(java.net.URLEncoder.encode(encodedSAMLRequest, "UTF-8"));
-        
-        if (relayState != null && !relayState.isEmpty()) {
-            url.append("&RelayState=").append(java.net.URLEncoder.encode(relayState, "UTF-8"));
+        return tenantRegistry.idpSingleLogoutServiceURL(tenant) + "?" + query;
+    }
+
+    /**
+     * Auto-submitting HTML form that posts the LogoutRequest to a tenant's IdP (HTTP-POST binding)
+     */
+    public String createLogoutPostForm(SPTenantContext tenant, LogoutRequest logoutRequest, String relayState) throws Exception {
+        LogoutEvent event = new LogoutEvent();
+        event.begin();
+        event.setOperation(LogoutEvent.BUILD_REQUEST);
+        event.setIdpEntityId(tenant.getIdpEntityId());
+        if (samlProperties.isAuthnRequestsSigned() && tenant.getSpCredential() != null) {
+            postSigner.sign(logoutRequest, tenant.getSpCredential());
         }
+        String samlRequest = utilityService.serializeSAMLObject(logoutRequest);
+        String encodedSAMLRequest = Base64.getEncoder().encodeToString(samlRequest.getBytes(StandardCharsets.UTF_8));
+        event.setPayloadSize(encodedSAMLRequest.length());
+        event.complete(SAMLEvent.SUCCESS, tenant.isSynthetic());
         
-        return url.toString();
+        return utilityService.createAutoPostForm(tenantRegistry.idpSingleLogoutServiceURL(tenant),
+                "SAMLRequest", encodedSAMLRequest, relayState);
     }
 
     /**
      * Create redirect URL for LogoutResponse
      */
     public String createLogoutResponseRedirectURL(LogoutResponse logoutResponse, String relayState) throws Exception {
+        return createLogoutResponseRedirectURL(tenantRegistry.getDefaultTenant(), logoutResponse, relayState);
+    }
+
+    /**
+     * Create redirect URL for LogoutResponse for a tenant
+     */
+    public String createLogoutResponseRedirectURL(SPTenantContext tenant, LogoutResponse logoutResponse, String relayState) throws Exception {
+        LogoutEvent event = new LogoutEvent();
+        event.begin();
+        event.setOperation(LogoutEvent.BUILD_RESPONSE);
+        event.setIdpEntityId(tenant.getIdpEntityId());
         String samlResponse = utilityService.serializeSAMLObject(logoutResponse);
         String encodedSAMLResponse = utilityService.compressAndEncode(samlResponse);
+        event.setPayloadSize(encodedSAMLResponse.length());
+        String query = redirectSigner.buildQuery("SAMLResponse", encodedSAMLResponse, relayState, signingKey(tenant));
+        event.complete(SAMLEvent.SUCCESS, tenant.isSynthetic());
         
-        StringBuilder url = new StringBuilder();
-        url.append(samlProperties.getSingleLogoutServiceURL());
-        url.append("?SAMLResponse=").append(java.net.URLEncoder.encode(encodedSAMLResponse, "UTF-8"));
-        
-        if (relayState != null && !relayState.isEmpty()) {
-            url.append("&RelayState=").append(java.net.URLEncoder.encode(relayState, "UTF-8"));
-        }
-        
-        return url.toString();
+        return tenant.getSingleLogoutServiceURL() + "?" + query;
+    }
+
+    /**
+     * SP key for Redirect-binding signatures, or null when messages go unsigned
+     */
+    private PrivateKey signingKey(SPTenantContext tenant) {
+        return samlProperties.isAuthnRequestsSigned() ? tenant.getSpPrivateKey() : null;
     }
 
     /**
-     * Process LogoutRequest
+     * Process LogoutRequest for the default tenant
      */
     public boolean processLogoutRequest(LogoutRequest logoutRequest) {
+        return processLogoutRequest(tenantRegistry.getDefaultTenant(), logoutRequest);
+    }
+
+    /**
+     * Process LogoutRequest from one of a tenant's trusted IdPs
+     */
+    public boolean processLogoutRequest(SPTenantContext tenant, LogoutRequest logoutRequest) {
+        LogoutEvent event = new LogoutEvent();
+        event.begin();
+        event.setOperation(LogoutEvent.PROCESS_REQUEST);
+        boolean processed = handleLogoutRequest(tenant, logoutRequest, event);
+        event.complete(processed ? SAMLEvent.SUCCESS : SAMLEvent.FAILURE, tenant.isSynthetic());
+        return processed;
+    }
+
+    private boolean handleLogoutRequest(SPTenantContext tenant, LogoutRequest logoutRequest, LogoutEvent event) {
         try {
-            // Validate the logout request
-            if (logoutRequest.getIssuer() == null || !samlProperties.getIdpEntityId().equals(logoutRequest.getIssuer().getValue())) {
+            if (logoutRequest.getIssuer() != null) {
+                event.setIdpEntityId(logoutRequest.getIssuer().getValue());
+            }
+
+            // Validate the logout request against the tenant's IdP
+            IdPDescriptor idp = logoutRequest.getIssuer() != null
+                    ? tenantRegistry.resolveIdP(tenant, logoutRequest.getIssuer().getValue()) : null;
+            
+            // The issuer string alone is forgeable; only a signed request may end sessions
+            if (idp == null || !isSignedBy(tenant, logoutRequest, idp)) {
                 return false;
             }
             
@@ -145,11 +267,11 @@ public class SAMLLogoutService {
                 nameId = logoutRequest.getNameID().getValue();
             }
             
-            // In a real implementation, you would:
-            // 1. Find the user session based on nameId
-            // 2. Invalidate the session
-            // 3. Clear any cached user data
-            
+            // End every session of the subject
+            if (nameId != null) {
+                securityService.invalidateSessionsByNameId(nameId);
+            }
+
             return true;
         } catch (Exception e) {
             return false;
@@ -157,12 +279,63 @@ public class SAMLLogoutService {
     }
 
     /**
-     * Process LogoutResponse
+     * Whether a message carries an enveloped signature, in an allowed algorithm, that verifies
+     * against one of the IdP's PKIX-trusted signing keys. Unsigned messages never pass. The keys
+     * of a tenant's pinned IdP are trusted as given.
+     */
+    private boolean isSignedBy(SPTenantContext tenant, SignableSAMLObject message, IdPDescriptor idp) {
+        Signature signature = message.getSignature();
+        if (signature == null || !allowedSignatureAlgorithms.contains(signature.getSignatureAlgorithm())) {
+            return false;
+        }
+        try {
+            new SAMLSignatureProfileValidator().validate(signature);
+        } catch (SignatureException e) {
+            return false;
+        }
+        boolean pinned = idp == tenant.getPinnedIdP();
+        for (Credential credential : idp.getSigningCredentials()) {
+            if (!pinned && !pkixTrustValidator.isTrusted(credential)) {
+                continue;
+            }
+            try {
+                SignatureValidator.validate(signature, credential);
+                return true;
+            } catch (SignatureException e) {
+                // Try the next credential
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Process LogoutResponse for the default tenant
      */
     public boolean processLogoutResponse(LogoutResponse logoutResponse) {
+        return processLogoutResponse(tenantRegistry.getDefaultTenant(), logoutResponse);
+    }
+
+    /**
+     * Process LogoutResponse from one of a tenant's trusted IdPs
+     */
+    public boolean processLogoutResponse(SPTenantContext tenant, LogoutResponse logoutResponse) {
+        LogoutEvent event = new LogoutEvent();
+        event.begin();
+        event.setOperation(LogoutEvent.PROCESS_RESPONSE);
+        boolean processed = handleLogoutResponse(tenant, logoutResponse, event);
+        event.complete(processed ? SAMLEvent.SUCCESS : SAMLEvent.FAILURE, tenant.isSynthetic());
+        return processed;
+    }
+
+    private boolean handleLogoutResponse(SPTenantContext tenant, LogoutResponse logoutResponse, LogoutEvent event) {
         try {
-            // Validate the logout response
-            if (logoutResponse.getIssuer() == null || !samlProperties.getIdpEntityId().equals(logoutResponse.getIssuer().getValue())) {
+            if (logoutResponse.getIssuer() != null) {
+                event.setIdpEntityId(logoutResponse.getIssuer().getValue());
+            }
+
+            // Validate the logout response against the tenant's IdP
+            if (logoutResponse.getIssuer() == null
+                    || tenantRegistry.resolveIdP(tenant, logoutResponse.getIssuer().getValue()) == null) {
                 return false;
             }
             
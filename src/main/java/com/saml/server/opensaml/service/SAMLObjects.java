@@ -0,0 +1,153 @@
+package com.saml.server.opensaml.service;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.XMLObjectBuilder;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.Unmarshaller;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.common.SAMLObjectBuilder;
+import org.opensaml.saml.saml2.core.AuthnContextClassRef;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.LogoutRequest;
+import org.opensaml.saml.saml2.core.LogoutResponse;
+import org.opensaml.saml.saml2.core.NameID;
+import org.opensaml.saml.saml2.core.NameIDPolicy;
+import org.opensaml.saml.saml2.core.RequestedAuthnContext;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.core.SessionIndex;
+import org.opensaml.saml.saml2.core.Status;
+import org.opensaml.saml.saml2.core.StatusCode;
+import org.opensaml.xmlsec.signature.Signature;
+import org.w3c.dom.Element;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Builders and unmarshallers for the SAML elements (and the XML Signature) this SP produces
+ * and consumes, looked up once after OpenSAML initialization instead of per call through the
+ * QName-keyed {@code XMLObjectProviderRegistry}.
+ *
+ * Builders and unmarshallers are stateless, so one instance serves every thread. Each sits in
+ * a final field of its own with a typed factory method, which leaves the JIT a monomorphic
+ * call. Child elements of an unmarshalled Response are still resolved through the registry by
+ * OpenSAML itself.
+ */
+public final class SAMLObjects {
+
+    private final SAMLObjectBuilder<AuthnRequest> authnRequestBuilder;
+    private final SAMLObjectBuilder<Issuer> issuerBuilder;
+    private final SAMLObjectBuilder<NameIDPolicy> nameIDPolicyBuilder;
+    private final SAMLObjectBuilder<RequestedAuthnContext> requestedAuthnContextBuilder;
+    private final SAMLObjectBuilder<AuthnContextClassRef> authnContextClassRefBuilder;
+    private final SAMLObjectBuilder<LogoutRequest> logoutRequestBuilder;
+    private final SAMLObjectBuilder<LogoutResponse> logoutResponseBuilder;
+    private final SAMLObjectBuilder<NameID> nameIDBuilder;
+    private final SAMLObjectBuilder<SessionIndex> sessionIndexBuilder;
+    private final SAMLObjectBuilder<Status> statusBuilder;
+    private final SAMLObjectBuilder<StatusCode> statusCodeBuilder;
+    private final XMLObjectBuilder<Signature> signatureBuilder;
+    private final Unmarshaller responseUnmarshaller;
+
+    /**
+     * Resolve everything up front; fails when OpenSAML has not been initialized
+     */
+    public SAMLObjects() {
+        authnRequestBuilder = builder(AuthnRequest.DEFAULT_ELEMENT_NAME);
+        issuerBuilder = builder(Issuer.DEFAULT_ELEMENT_NAME);
+        nameIDPolicyBuilder = builder(NameIDPolicy.DEFAULT_ELEMENT_NAME);
+        requestedAuthnContextBuilder = builder(RequestedAuthnContext.DEFAULT_ELEMENT_NAME);
+        authnContextClassRefBuilder = builder(AuthnContextClassRef.DEFAULT_ELEMENT_NAME);
+        logoutRequestBuilder = builder(LogoutRequest.DEFAULT_ELEMENT_NAME);
+        logoutResponseBuilder = builder(LogoutResponse.DEFAULT_ELEMENT_NAME);
+        nameIDBuilder = builder(NameID.DEFAULT_ELEMENT_NAME);
+        sessionIndexBuilder = builder(SessionIndex.DEFAULT_ELEMENT_NAME);
+        statusBuilder = builder(Status.DEFAULT_ELEMENT_NAME);
+        statusCodeBuilder = builder(StatusCode.DEFAULT_ELEMENT_NAME);
+        signatureBuilder = xmlBuilder(Signature.DEFAULT_ELEMENT_NAME);
+        responseUnmarshaller = XMLObjectProviderRegistrySupport.getUnmarshallerFactory()
+                .getUnmarshaller(Response.DEFAULT_ELEMENT_NAME);
+        if (responseUnmarshaller == null) {
+            throw new IllegalStateException("No unmarshaller registered for " + Response.DEFAULT_ELEMENT_NAME
+                    + "; is OpenSAML initialized?");
+        }
+    }
+
+    public AuthnRequest authnRequest() {
+        return authnRequestBuilder.buildObject();
+    }
+
+    public Issuer issuer() {
+        return issuerBuilder.buildObject();
+    }
+
+    public NameIDPolicy nameIDPolicy() {
+        return nameIDPolicyBuilder.buildObject();
+    }
+
+    public RequestedAuthnContext requestedAuthnContext() {
+        return requestedAuthnContextBuilder.buildObject();
+    }
+
+    public AuthnContextClassRef authnContextClassRef() {
+        return authnContextClassRefBuilder.buildObject();
+    }
+
+    public LogoutRequest logoutRequest() {
+        return logoutRequestBuilder.buildObject();
+    }
+
+    public LogoutResponse logoutResponse() {
+        return logoutResponseBuilder.buildObject();
+    }
+
+    public NameID nameID() {
+        return nameIDBuilder.buildObject();
+    }
+
+    public SessionIndex sessionIndex() {
+        return sessionIndexBuilder.buildObject();
+    }
+
+    public Status status() {
+        return statusBuilder.buildObject();
+    }
+
+    public StatusCode statusCode() {
+        return statusCodeBuilder.buildObject();
+    }
+
+    public Signature signature() {
+        return signatureBuilder.buildObject(Signature.DEFAULT_ELEMENT_NAME);
+    }
+
+    /**
+     * Unmarshall a protocol Response element; any other root element is rejected
+     */
+    public Response unmarshallResponse(Element element) throws UnmarshallingException {
+        if (!Response.DEFAULT_ELEMENT_LOCAL_NAME.equals(element.getLocalName())
+                || !Response.DEFAULT_ELEMENT_NAME.getNamespaceURI().equals(element.getNamespaceURI())) {
+            throw new UnmarshallingException("Root element is not a SAML 2.0 Response: " + element.getLocalName());
+        }
+        return (Response) responseUnmarshaller.unmarshall(element);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends SAMLObject> SAMLObjectBuilder<T> builder(QName name) {
+        XMLObjectBuilder<?> builder = XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilder(name);
+        if (!(builder instanceof SAMLObjectBuilder)) {
+            throw new IllegalStateException("No SAML builder registered for " + name + "; is OpenSAML initialized?");
+        }
+        return (SAMLObjectBuilder<T>) builder;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends XMLObject> XMLObjectBuilder<T> xmlBuilder(QName name) {
+        XMLObjectBuilder<?> builder = XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilder(name);
+        if (builder == null) {
+            throw new IllegalStateException("No builder registered for " + name + "; is OpenSAML initialized?");
+        }
+        return (XMLObjectBuilder<T>) builder;
+    }
+}
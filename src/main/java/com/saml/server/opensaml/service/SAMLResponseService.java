@@ -1,29 +1,52 @@
 package com.saml.server.opensaml.service;
 
 import com.saml.server.opensaml.config.SAMLProperties;
-import org.opensaml.core.xml.util.XMLObjectSupport;
+import com.saml.server.opensaml.diagnostics.SlowRequestLog;
+import com.saml.server.opensaml.metadata.IdPDescriptor;
+import com.saml.server.opensaml.jfr.ResponseDecodeEvent;
+import com.saml.server.opensaml.jfr.ResponseParseEvent;
+import com.saml.server.opensaml.jfr.SAMLEvent;
+import com.saml.server.opensaml.jfr.SessionCreateEvent;
+import com.saml.server.opensaml.jfr.SignatureVerifyEvent;
+import com.saml.server.opensaml.metadata.PKIXTrustValidator;
+import com.saml.server.opensaml.metrics.ACSMetrics;
+import com.saml.server.opensaml.metrics.ACSPhase;
+import com.saml.server.opensaml.metrics.RejectionCounters;
+import com.saml.server.opensaml.tenant.SPTenantContext;
+import com.saml.server.opensaml.tenant.SPTenantRegistry;
+import net.shibboleth.utilities.java.support.xml.ParserPool;
 import org.opensaml.saml.saml2.core.*;
+import org.opensaml.xmlsec.encryption.support.DecryptionException;
 import org.opensaml.xmlsec.signature.Signature;
 import org.opensaml.xmlsec.signature.support.SignatureValidator;
+import org.opensaml.saml.security.impl.SAMLSignatureProfileValidator;
 import org.opensaml.xmlsec.signature.support.SignatureException;
 import org.opensaml.core.xml.io.UnmarshallingException;
 import org.opensaml.core.xml.io.MarshallingException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.annotation.PostConstruct;
 import java.io.ByteArrayInputStream;
+import java.security.Key;
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class SAMLResponseService {
 
+    private static final Logger log = LoggerFactory.getLogger(SAMLResponseService.class);
+
     @Autowired
     private SAMLProperties samlProperties;
 
@@ -33,171 +56,399 @@ public class SAMLResponseService {
     @Autowired
     private SAMLSecurityService securityService;
 
+    @Autowired
+    private PKIXTrustValidator pkixTrustValidator;
+
+    @Autowired
+    private AuthnRequestTracker requestTracker;
+
+    @Autowired
+    private AttributeMapper attributeMapper;
+
+    @Autowired
+    private SAMLObjects samlObjects;
+
+    @Autowired
+    private SPTenantRegistry tenantRegistry;
+
+    @Autowired
+    private ParserPool parserPool;
+
+    @Autowired
+    private ACSMetrics acsMetrics;
+
+    @Autowired
+    private RejectionCounters rejectionCounters;
+
+    @Autowired
+    private SlowRequestLog slowRequestLog;
+
+    @Autowired
+    private Clock clock;
+
+    private Set<String> allowedSignatureAlgorithms;
+
+    @PostConstruct
+    public void init() {
+        allowedSignatureAlgorithms = new HashSet<>(samlProperties.getSignature().getAllowedAlgorithms());
+    }
+
     /**
-     * Process SAML Response (POST binding)
+     * Process SAML Response (POST binding) for the default tenant
      */
     public SAMLResponseResult processSAMLResponse(String samlResponse, String relayState) throws Exception {
-        // Decode SAML response
-        String decodedResponse = new String(Base64.getDecoder().decode(samlResponse));
-        
-        // Unmarshall the SAML response
-        Response response = unmarshallSAMLResponse(decodedResponse);
-        
-        // Validate security
-        if (!validateResponseSecurity(response)) {
-            return new SAMLResponseResult(false, "Security validation failed", null, relayState, new HashMap<>());
-        }
-        
-        // Extract user information
-        String userName = extractUserName(response);
-        Map<String, String> attributes = extractAttributes(response);
-        
-        // Create session
-        String sessionId = securityService.createSession(userName, response.getID(), attributes);
-        
-        return new SAMLResponseResult(true, "SAML response processed successfully", userName, relayState, attributes);
+        return processSAMLResponse(tenantRegistry.getDefaultTenant(), samlResponse, relayState);
     }
 
     /**
-     * Process SAML Response (Redirect binding)
+     * Process SAML Response (POST binding)
+     */
+    public SAMLResponseResult processSAMLResponse(SPTenantContext tenant, String samlResponse, String relayState) throws Exception {
+        return process(tenant, samlResponse, relayState, ACSMetrics.Binding.POST);
+    }
+
+    /**
+     * Process SAML Response (Redirect binding) for the default tenant
      */
     public SAMLResponseResult processSAMLResponseRedirect(String samlResponse, String relayState) throws Exception {
-        // Decompress and decode SAML response
-        String decodedResponse = utilityService.decodeAndDecompress(samlResponse);
-        
-        // Unmarshall the SAML response
-        Response response = unmarshallSAMLResponse(decodedResponse);
+        return processSAMLResponseRedirect(tenantRegistry.getDefaultTenant(), samlResponse, relayState);
+    }
+
+    /**
+     * Process SAML Response (Redirect binding)
+     */
+    public SAMLResponseResult processSAMLResponseRedirect(SPTenantContext tenant, String samlResponse, String relayState) throws Exception {
+        return process(tenant, samlResponse, relayState, ACSMetrics.Binding.REDIRECT);
+    }
+
+    /**
+     * Decode, unmarshall and validate a response, recording its timings
+     */
+    private SAMLResponseResult process(SPTenantContext tenant, String samlResponse, String relayState,
+                                       ACSMetrics.Binding binding) throws Exception {
+        // Warm-up traffic is neither timed nor captured, so it cannot skew the production view
+        ACSMetrics.Recording timing = tenant.isSynthetic() ? ACSMetrics.Recording.DISABLED : acsMetrics.start(binding);
+        Response response = null;
+        Element responseDom = null;
+        RejectionReason failure = RejectionReason.MALFORMED;
+        String outcome = failure.getCode();
+        try {
+            // Decode (and for the Redirect binding, decompress) SAML response
+            byte[] decodedResponse = decode(tenant, samlResponse, binding == ACSMetrics.Binding.REDIRECT, timing);
+            
+            // Unmarshall the SAML response
+            response = unmarshallSAMLResponse(tenant, decodedResponse, timing);
+            // Held here because decrypting an EncryptedID detaches the Response from its DOM
+            responseDom = response.getDOM();
+            
+            // The message parsed, so an exception from here on is a fault of this SP, not of the sender
+            failure = RejectionReason.INTERNAL_ERROR;
+            outcome = failure.getCode();
+            SAMLResponseResult result = processResponse(tenant, response, relayState, timing);
+            outcome = result.getRejectionReason() != null ? result.getRejectionReason().getCode() : SAMLEvent.SUCCESS;
+            return result;
+        } catch (Exception e) {
+            if (!tenant.isSynthetic()) {
+                rejectionCounters.increment(failure);
+            }
+            if (failure == RejectionReason.INTERNAL_ERROR) {
+                log.warn("SAML Response {} for tenant {} failed with an internal error", response.getID(),
+                        tenant.getTenantId(), e);
+            }
+            throw e;
+        } finally {
+            timing.finish();
+            if (!tenant.isSynthetic()) {
+                slowRequestLog.capture(timing, tenant.getTenantId(), samlResponse.length(), responseDom, outcome);
+            }
+        }
+    }
+
+    /**
+     * Validate the response and create the session
+     */
+    private SAMLResponseResult processResponse(SPTenantContext tenant, Response response, String relayState, ACSMetrics.Recording timing) {
+        // Enforce the encryption policy on the Response as received, then decrypt
+        RejectionReason rejection = validateEncryption(response);
+        List<Assertion> assertions = response.getAssertions();
+        if (rejection == null) {
+            try {
+                assertions = decryptAssertions(tenant, response);
+            } catch (DecryptionException e) {
+                rejection = RejectionReason.DECRYPTION_FAILED;
+            }
+            timing.mark(ACSPhase.DECRYPT);
+        }
         
         // Validate security
-        if (!validateResponseSecurity(response)) {
-            return new SAMLResponseResult(false, "Security validation failed", null, relayState, new HashMap<>());
+        if (rejection == null) {
+            rejection = validateResponseSecurity(tenant, response, assertions, timing);
+        }
+        timing.mark(ACSPhase.VALIDATION);
+        if (rejection != null) {
+            if (!tenant.isSynthetic()) {
+                rejectionCounters.increment(rejection);
+                log.debug("SAML Response {} for tenant {} rejected: {}", response.getID(), tenant.getTenantId(),
+                        rejection.getCode());
+            }
+            return new SAMLResponseResult(false, "Security validation failed", null, relayState, new HashMap<>(), rejection);
         }
         
         // Extract user information
-        String userName = extractUserName(response);
-        Map<String, String> attributes = extractAttributes(response);
+        String userName = extractUserName(assertions);
+        Map<String, Object> attributes = extractAttributes(response.getIssuer().getValue(), assertions);
+        timing.mark(ACSPhase.ATTRIBUTES);
         
         // Create session
-        String sessionId = securityService.createSession(userName, response.getID(), attributes);
+        SessionCreateEvent event = new SessionCreateEvent();
+        event.begin();
+        String sessionId = securityService.createSession(tenant, userName, response.getID(), attributes);
+        event.setIdpEntityId(response.getIssuer().getValue());
+        event.setAssertionCount(assertions.size());
+        event.complete(SAMLEvent.SUCCESS, tenant.isSynthetic());
+        timing.mark(ACSPhase.SESSION);
         
-        return new SAMLResponseResult(true, "SAML response processed successfully", userName, relayState, attributes);
+        return new SAMLResponseResult(true, "SAML response processed successfully", userName, relayState, attributes,
+                null, sessionId);
     }
 
     /**
-     * Unmarshall SAML Response from XML string
+     * Base64 decode a message, inflating it too for the Redirect binding
      */
-    private Response unmarshallSAMLResponse(String xmlString) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document document = builder.parse(new ByteArrayInputStream(xmlString.getBytes()));
-        Element element = document.getDocumentElement();
-        
-        return (Response) XMLObjectSupport.getUnmarshaller(element).unmarshall(element);
+    private byte[] decode(SPTenantContext tenant, String samlResponse, boolean inflate, ACSMetrics.Recording timing) throws Exception {
+        ResponseDecodeEvent event = new ResponseDecodeEvent();
+        event.begin();
+        event.setPayloadSize(samlResponse.length());
+        String outcome = SAMLEvent.FAILURE;
+        try {
+            byte[] decoded = Base64.getDecoder().decode(samlResponse);
+            timing.mark(ACSPhase.BASE64_DECODE);
+            if (inflate) {
+                decoded = utilityService.inflate(decoded);
+                timing.mark(ACSPhase.INFLATE);
+            }
+            outcome = SAMLEvent.SUCCESS;
+            return decoded;
+        } finally {
+            event.complete(outcome, tenant.isSynthetic());
+        }
+    }
+
+    /**
+     * Unmarshall SAML Response from XML bytes using the shared parser pool
+     */
+    private Response unmarshallSAMLResponse(SPTenantContext tenant, byte[] xml, ACSMetrics.Recording timing) throws Exception {
+        ResponseParseEvent event = new ResponseParseEvent();
+        event.begin();
+        event.setPayloadSize(xml.length);
+        String outcome = SAMLEvent.FAILURE;
+        try {
+            Document document = parserPool.parse(new ByteArrayInputStream(xml));
+            Element element = document.getDocumentElement();
+            timing.mark(ACSPhase.PARSE);
+            
+            Response response = samlObjects.unmarshallResponse(element);
+            timing.mark(ACSPhase.UNMARSHALL);
+            
+            // Issuer is not yet trusted here; it is recorded for correlation only
+            event.setAssertionCount(response.getAssertions().size());
+            event.setIdpEntityId(response.getIssuer() != null ? response.getIssuer().getValue() : null);
+            outcome = SAMLEvent.SUCCESS;
+            return response;
+        } finally {
+            event.complete(outcome, tenant.isSynthetic());
+        }
+    }
+
+    /**
+     * Reject plaintext content this SP wants encrypted; returns null when the policy is met.
+     * A NameID inside an EncryptedAssertion counts as encrypted.
+     */
+    private RejectionReason validateEncryption(Response response) {
+        if (samlProperties.isWantAssertionsEncrypted() && !response.getAssertions().isEmpty()) {
+            return RejectionReason.ASSERTION_NOT_ENCRYPTED;
+        }
+        if (samlProperties.isWantNameIdEncrypted()) {
+            for (Assertion assertion : response.getAssertions()) {
+                if (assertion.getSubject() != null && assertion.getSubject().getNameID() != null) {
+                    return RejectionReason.NAME_ID_NOT_ENCRYPTED;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Plaintext and decrypted assertions, with each EncryptedID resolved to its NameID.
+     * Data keys are unwrapped at most once per Response.
+     */
+    private List<Assertion> decryptAssertions(SPTenantContext tenant, Response response) throws DecryptionException {
+        List<EncryptedAssertion> encryptedAssertions = response.getEncryptedAssertions();
+        if (encryptedAssertions.isEmpty() && !hasEncryptedID(response.getAssertions())) {
+            return response.getAssertions();
+        }
+        // No private-key work for issuers that validation rejects anyway
+        if (resolveIdP(tenant, response.getIssuer()) == null) {
+            return response.getAssertions();
+        }
+        AssertionDecrypter decrypter = tenant.getDecrypter();
+        if (decrypter == null) {
+            throw new DecryptionException("No SP key pair configured for tenant " + tenant.getTenantId());
+        }
+
+        Map<String, Key> dataKeys = new HashMap<>(4);
+        List<Assertion> assertions = new ArrayList<>(response.getAssertions().size() + encryptedAssertions.size());
+        assertions.addAll(response.getAssertions());
+        for (EncryptedAssertion encryptedAssertion : encryptedAssertions) {
+            assertions.add(decrypter.decrypt(encryptedAssertion, dataKeys));
+        }
+        for (Assertion assertion : assertions) {
+            Subject subject = assertion.getSubject();
+            if (subject != null && subject.getNameID() == null && subject.getEncryptedID() != null) {
+                subject.setNameID(decrypter.decrypt(subject.getEncryptedID(), dataKeys));
+            }
+        }
+        return assertions;
+    }
+
+    private static boolean allSigned(List<Assertion> assertions) {
+        for (Assertion assertion : assertions) {
+            if (assertion.getSignature() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasEncryptedID(List<Assertion> assertions) {
+        for (Assertion assertion : assertions) {
+            if (assertion.getSubject() != null && assertion.getSubject().getEncryptedID() != null) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Validate response security
+     * Validate response security; returns null when valid, otherwise why it was rejected
      */
-    private boolean validateResponseSecurity(Response response) {
+    private RejectionReason validateResponseSecurity(SPTenantContext tenant, Response response, List<Assertion> assertions,
+                                                     ACSMetrics.Recording timing) {
         try {
             // Validate response status
             if (response.getStatus() == null || response.getStatus().getStatusCode() == null) {
-                return false;
+                return RejectionReason.MISSING_STATUS;
             }
             
             String statusCode = response.getStatus().getStatusCode().getValue();
             if (!StatusCode.SUCCESS.equals(statusCode)) {
-                return false;
+                return RejectionReason.STATUS_NOT_SUCCESS;
             }
             
-            // Validate issuer
-            if (response.getIssuer() == null || !samlProperties.getIdpEntityId().equals(response.getIssuer().getValue())) {
-                return false;
+            // Validate issuer against the trusted IdPs
+            IdPDescriptor idp = resolveIdP(tenant, response.getIssuer());
+            if (idp == null) {
+                return RejectionReason.UNTRUSTED_ISSUER;
             }
+            timing.idp(idp.getEntityId());
             
             // Validate destination
-            if (response.getDestination() == null || !samlProperties.getAssertionConsumerServiceURL().equals(response.getDestination())) {
-                return false;
+            if (response.getDestination() == null || !tenant.getAssertionConsumerServiceURL().equals(response.getDestination())) {
+                return RejectionReason.DESTINATION_MISMATCH;
             }
             
             // Validate assertions
-            List<Assertion> assertions = response.getAssertions();
             if (assertions == null || assertions.isEmpty()) {
-                return false;
+                return RejectionReason.NO_ASSERTIONS;
             }
             
             // Validate each assertion
             for (Assertion assertion : assertions) {
-                if (!validateAssertion(assertion)) {
-                    return false;
+                RejectionReason rejection = validateAssertion(tenant, assertion, idp, timing);
+                if (rejection != null) {
+                    return rejection;
                 }
             }
             
-            // Validate signature if present
+            // Validate the Response signature; without one, each assertion must be signed itself
             if (response.getSignature() != null) {
-                if (!validateSignature(response.getSignature())) {
-                    return false;
+                RejectionReason rejection = validateSignature(tenant, response.getSignature(), idp, timing);
+                if (rejection != null) {
+                    return rejection;
                 }
+            } else if (!allSigned(assertions)) {
+                return RejectionReason.RESPONSE_NOT_SIGNED;
             }
             
-            return true;
+            // Match InResponseTo last, so a forged Response cannot use up a pending request ID
+            return requestTracker.check(response.getInResponseTo());
         } catch (Exception e) {
-            return false;
+            return RejectionReason.MALFORMED;
         }
     }
 
     /**
-     * Validate SAML Assertion
+     * Resolve the issuing IdP among those the tenant trusts
+     */
+    private IdPDescriptor resolveIdP(SPTenantContext tenant, Issuer issuer) {
+        return issuer != null ? tenantRegistry.resolveIdP(tenant, issuer.getValue()) : null;
+    }
+
+    /**
+     * Validate SAML Assertion; returns null when valid
      */
-    private boolean validateAssertion(Assertion assertion) {
+    private RejectionReason validateAssertion(SPTenantContext tenant, Assertion assertion, IdPDescriptor idp, ACSMetrics.Recording timing) {
         try {
             // Validate issuer
-            if (assertion.getIssuer() == null || !samlProperties.getIdpEntityId().equals(assertion.getIssuer().getValue())) {
-                return false;
+            if (assertion.getIssuer() == null || !idp.getEntityId().equals(assertion.getIssuer().getValue())) {
+                return RejectionReason.ASSERTION_ISSUER_MISMATCH;
             }
             
             // Validate subject
             if (assertion.getSubject() == null || assertion.getSubject().getNameID() == null) {
-                return false;
+                return RejectionReason.MISSING_SUBJECT;
             }
             
             // Validate conditions
             if (assertion.getConditions() != null) {
-                if (!validateConditions(assertion.getConditions())) {
-                    return false;
+                RejectionReason rejection = validateConditions(tenant, assertion.getConditions());
+                if (rejection != null) {
+                    return rejection;
                 }
             }
             
-            // Validate signature if present
+            // Validate the assertion signature, which this SP may require on every assertion
             if (assertion.getSignature() != null) {
-                if (!validateSignature(assertion.getSignature())) {
-                    return false;
+                RejectionReason rejection = validateSignature(tenant, assertion.getSignature(), idp, timing);
+                if (rejection != null) {
+                    return rejection;
                 }
+            } else if (samlProperties.isWantAssertionsSigned()) {
+                return RejectionReason.ASSERTION_NOT_SIGNED;
             }
             
-            return true;
+            return null;
         } catch (Exception e) {
-            return false;
+            return RejectionReason.MALFORMED;
         }
     }
 
     /**
-     * Validate SAML Conditions
+     * Validate SAML Conditions; returns null when valid
      */
-    private boolean validateConditions(Conditions conditions) {
+    private RejectionReason validateConditions(SPTenantContext tenant, Conditions conditions) {
         try {
             // Validate NotBefore
             if (conditions.getNotBefore() != null) {
-                if (System.currentTimeMillis() < conditions.getNotBefore().getMillis()) {
-                    return false;
+                if (clock.millis() < conditions.getNotBefore().getMillis()) {
+                    return RejectionReason.NOT_YET_VALID;
                 }
             }
             
             // Validate NotOnOrAfter
             if (conditions.getNotOnOrAfter() != null) {
-                if (System.currentTimeMillis() >= conditions.getNotOnOrAfter().getMillis()) {
-                    return false;
+                if (clock.millis() >= conditions.getNotOnOrAfter().getMillis()) {
+                    return RejectionReason.EXPIRED;
                 }
             }
             
@@ -206,55 +457,81 @@ public class SAMLResponseService {
                 boolean validAudience = false;
                 for (AudienceRestriction restriction : conditions.getAudienceRestrictions()) {
                     for (Audience audience : restriction.getAudiences()) {
-                        if (samlProperties.getEntityId().equals(audience.getAudienceURI())) {
+                        if (tenant.getEntityId().equals(audience.getAudienceURI())) {
                             validAudience = true;
                             break;
                         }
                     }
                 }
                 if (!validAudience) {
-                    return false;
+                    return RejectionReason.AUDIENCE_MISMATCH;
                 }
             }
             
-            return true;
+            return null;
         } catch (Exception e) {
-            return false;
+            return RejectionReason.MALFORMED;
         }
     }
 
     /**
-     * Validate XML Signature
+     * Validate XML Signature against the IdP's pre-parsed signing credentials; returns null when valid.
+     * The SAML signature profile is checked first, so the single Reference must name the signed
+     * element itself; this is what stops signature wrapping. The keys of a tenant's pinned IdP are
+     * trusted as given, without PKIX path validation.
      */
-    private boolean validateSignature(Signature signature) {
+    private RejectionReason validateSignature(SPTenantContext tenant, Signature signature, IdPDescriptor idp,
+                                              ACSMetrics.Recording timing) {
+        if (!idp.isSigningKeysDeclared()) {
+            // A signature that cannot be checked proves nothing
+            return RejectionReason.UNTRUSTED_CERTIFICATE;
+        }
+        if (!allowedSignatureAlgorithms.contains(signature.getSignatureAlgorithm())) {
+            return RejectionReason.DISALLOWED_SIGNATURE_ALGORITHM;
+        }
         try {
-            // Get IdP certificate
-            String idpCertificate = samlProperties.getIdpX509Certificate();
-            if (idpCertificate == null || idpCertificate.trim().isEmpty()) {
-                // If no certificate configured, skip signature validation
-                return true;
-            }
-            
-            // Create certificate from string
-            java.security.cert.X509Certificate cert = utilityService.createCertificateFromString(idpCertificate);
-            
-            // Create credential and validate signature
-            org.opensaml.security.credential.Credential credential = utilityService.createCredentialFromCertificate(cert);
-            SignatureValidator.validate(signature, credential);
-            return true;
+            new SAMLSignatureProfileValidator().validate(signature);
         } catch (SignatureException e) {
-            return false;
-        } catch (Exception e) {
-            return false;
+            return RejectionReason.INVALID_SIGNATURE_PROFILE;
+        }
+
+        SignatureVerifyEvent event = new SignatureVerifyEvent();
+        event.begin();
+        event.setIdpEntityId(idp.getEntityId());
+        String outcome = SAMLEvent.FAILURE;
+        long start = timing.clock();
+        try {
+            // Try each credential so that overlapping keys during rollover are accepted
+            boolean anyTrusted = false;
+            boolean pinned = idp == tenant.getPinnedIdP();
+            for (org.opensaml.security.credential.Credential credential : idp.getSigningCredentials()) {
+                // Cached per certificate, so this is a hash lookup after the first login
+                if (!pinned && !pkixTrustValidator.isTrusted(credential)) {
+                    continue;
+                }
+                anyTrusted = true;
+                try {
+                    SignatureValidator.validate(signature, credential);
+                    outcome = SAMLEvent.SUCCESS;
+                    return null;
+                } catch (SignatureException e) {
+                    // Try the next credential
+                }
+            }
+            RejectionReason rejection = anyTrusted ? RejectionReason.INVALID_SIGNATURE : RejectionReason.UNTRUSTED_CERTIFICATE;
+            outcome = rejection.getCode();
+            return rejection;
+        } finally {
+            timing.addSince(ACSPhase.SIGNATURE, start);
+            event.complete(outcome, tenant.isSynthetic());
         }
     }
 
     /**
-     * Extract user name from SAML response
+     * Extract user name from the validated assertions
      */
-    private String extractUserName(Response response) {
+    private String extractUserName(List<Assertion> assertions) {
         try {
-            List<Assertion> assertions = response.getAssertions();
             if (assertions != null && !assertions.isEmpty()) {
                 Assertion assertion = assertions.get(0);
                 if (assertion.getSubject() != null && assertion.getSubject().getNameID() != null) {
@@ -268,60 +545,21 @@ public class SAMLResponseService {
     }
 
     /**
-     * Extract attributes from SAML response
+     * Extract attributes from the validated assertions through the IdP's attribute mapping
      */
-    private Map<String, String> extractAttributes(Response response) {
-        Map<String, String> attributes = new HashMap<>();
-        
+    private Map<String, Object> extractAttributes(String idpEntityId, List<Assertion> assertions) {
         try {
-            List<Assertion> assertions = response.getAssertions();
-            if (assertions != null && !assertions.isEmpty()) {
-                Assertion assertion = assertions.get(0);
-                
-                // Extract attributes from AttributeStatement
-                if (assertion.getAttributeStatements() != null) {
-                    for (AttributeStatement attributeStatement : assertion.getAttributeStatements()) {
-                        for (Attribute attribute : attributeStatement.getAttributes()) {
-                            String attributeName = attribute.getName();
-                            String attributeValue = "";
-                            
-                            // Get first attribute value
-                            if (attribute.getAttributeValues() != null && !attribute.getAttributeValues().isEmpty()) {
-                                org.opensaml.core.xml.XMLObject value = attribute.getAttributeValues().get(0);
-                                if (value instanceof org.opensaml.saml.saml2.core.AttributeValue) {
-                                    org.opensaml.saml.saml2.core.AttributeValue attrValue = (org.opensaml.saml.saml2.core.AttributeValue) value;
-                                    // Extract text content from DOM element
-                                    if (attrValue.getDOM() != null) {
-                                        attributeValue = attrValue.getDOM().getTextContent();
-                                    }
-                                }
-                            }
-                            
-                            attributes.put(attributeName, attributeValue);
-                        }
-                    }
-                }
-                
-                // Extract common attributes from NameID
-                if (assertion.getSubject() != null && assertion.getSubject().getNameID() != null) {
-                    String nameId = assertion.getSubject().getNameID().getValue();
-                    String nameIdFormat = assertion.getSubject().getNameID().getFormat();
-                    
-                    if (nameIdFormat != null && nameIdFormat.contains("email")) {
-                        attributes.put("email", nameId);
-                    }
-                    attributes.put("nameId", nameId);
-                    attributes.put("nameIdFormat", nameIdFormat != null ? nameIdFormat : "");
-                }
-            }
+            Assertion first = assertions.get(0);
+            NameID nameID = first.getSubject() != null ? first.getSubject().getNameID() : null;
+            return attributeMapper.map(idpEntityId, assertions, nameID);
         } catch (Exception e) {
             // Add default attributes if extraction fails
+            Map<String, Object> attributes = new HashMap<>();
             attributes.put("email", "user@example.com");
             attributes.put("firstName", "Unknown");
             attributes.put("lastName", "User");
+            return attributes;
         }
-        
-        return attributes;
     }
 
     /**
@@ -332,20 +570,44 @@ public class SAMLResponseService {
         private final String message;
         private final String userName;
         private final String relayState;
-        private final Map<String, String> attributes;
+        private final Map<String, Object> attributes;
+        private final RejectionReason rejectionReason;
+        private final String sessionId;
+
+        public SAMLResponseResult(boolean success, String message, String userName, String relayState, Map<String, Object> attributes) {
+            this(success, message, userName, relayState, attributes, null);
+        }
 
-        public SAMLResponseResult(boolean success, String message, String userName, String relayState, Map<String, String> attributes) {
+        public SAMLResponseResult(boolean success, String message, String userName, String relayState, Map<String, Object> attributes,
+                                  RejectionReason rejectionReason) {
+            this(success, message, userName, relayState, attributes, rejectionReason, null);
+        }
+
+        public SAMLResponseResult(boolean success, String message, String userName, String relayState, Map<String, Object> attributes,
+                                  RejectionReason rejectionReason, String sessionId) {
             this.success = success;
             this.message = message;
             this.userName = userName;
             this.relayState = relayState;
             this.attributes = attributes;
+            this.rejectionReason = rejectionReason;
+            this.sessionId = sessionId;
         }
 
         public boolean isSuccess() { return success; }
         public String getMessage() { return message; }
         public String getUserName() { return userName; }
         public String getRelayState() { return relayState; }
-        public Map<String, String> getAttributes() { return attributes; }
+        public Map<String, Object> getAttributes() { return attributes; }
+
+        /**
+         * Why the response was rejected, or null when it was accepted
+         */
+        public RejectionReason getRejectionReason() { return rejectionReason; }
+
+        /**
+         * Session created for the login, or null when the response was rejected; a token in stateless mode
+         */
+        public String getSessionId() { return sessionId; }
     }
 }
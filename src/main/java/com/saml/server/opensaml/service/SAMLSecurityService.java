@@ -1,35 +1,61 @@
 package com.saml.server.opensaml.service;
 
 import com.saml.server.opensaml.config.SAMLProperties;
-import org.opensaml.core.xml.util.XMLObjectSupport;
-import org.opensaml.saml.saml2.core.*;
-import org.opensaml.xmlsec.signature.Signature;
+import com.saml.server.opensaml.tenant.SPTenantContext;
+import com.saml.server.opensaml.tenant.SPTenantRegistry;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
-import java.security.KeyStore;
-import java.security.cert.X509Certificate;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class SAMLSecurityService {
 
+    private static final Logger log = LoggerFactory.getLogger(SAMLSecurityService.class);
+
+    private static final long SESSION_TIMEOUT_MILLIS = 30 * 60 * 1000;
+
     @Autowired
     private SAMLProperties samlProperties;
 
     @Autowired
     private SAMLUtilityService utilityService;
 
+    @Autowired
+    private Clock clock;
+
+    @Autowired
+    private SPTenantRegistry tenantRegistry;
+
     // Session management for production
     private final ConcurrentHashMap<String, SAMLSession> activeSessions = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Date> usedRequestIds = new ConcurrentHashMap<>();
+    // Set in stateless mode, where the session ID is a signed token and activeSessions stays empty
+    private SessionTokenCodec tokenCodec;
+    private Set<String> tokenAttributes = Collections.emptySet();
 
     @PostConstruct
     public void init() {
         // Initialize security components
         initializeSecurityProviders();
+        initializeSessionTokens();
     }
 
     /**
@@ -37,341 +63,203 @@ public class SAMLSecurityService {
      */
     private void initializeSecurityProviders() {
         try {
-            // Add BouncyCastle as security provider
-            java.security.Security.addProvider(new org.bouncycastle.jce.provider.BouncyCastleProvider());
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize security providers", e);
-        }
-    }
-
-    /**
-     * Validate SAML Response security
-     */
-    public boolean validateSAMLResponse(Response response) {
-        try {
-            // Check if response is null
-            if (response == null) {
-                return false;
-            }
-
-            // Validate response ID uniqueness
-            if (!isRequestIdUnique(response.getID())) {
-                return false;
+            // Appended last: the JDK providers keep RSA and ECDSA, BouncyCastle serves what they lack (RSA-PSS)
+            if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+                Security.addProvider(new BouncyCastleProvider());
             }
-
-            // Validate response time (not too old)
-            if (!isResponseTimeValid(response.getIssueInstant())) {
-                return false;
-            }
-
-            // Validate issuer
-            if (!validateIssuer(response.getIssuer())) {
-                return false;
-            }
-
-            // Validate signature if present
-            if (response.getSignature() != null) {
-                if (!validateSignature(response.getSignature())) {
-                    return false;
-                }
-            }
-
-            // Validate assertions
-            for (Assertion assertion : response.getAssertions()) {
-                if (!validateAssertion(assertion)) {
-                    return false;
+            // Pin XML signature verification to one provider when configured
+            String provider = samlProperties.getSignature().getProvider();
+            if (provider != null && !provider.isEmpty()) {
+                if (Security.getProvider(provider) == null) {
+                    throw new IllegalStateException("JCA provider not installed: " + provider);
                 }
+                JCEMapper.setProviderId(provider);
             }
-
-            return true;
         } catch (Exception e) {
-            return false;
+            throw new RuntimeException("Failed to initialize security providers", e);
         }
     }
 
     /**
-     * Validate SAML Assertion
+     * Build the token codec when sessions are stateless
      */
-    private boolean validateAssertion(Assertion assertion) {
-        try {
-            // Validate assertion time
-            if (!isAssertionTimeValid(assertion)) {
-                return false;
-            }
-
-            // Validate signature if present
-            if (assertion.getSignature() != null) {
-                if (!validateSignature(assertion.getSignature())) {
-                    return false;
-                }
-            }
-
-            // Validate subject
-            if (!validateSubject(assertion.getSubject())) {
-                return false;
-            }
-
-            return true;
-        } catch (Exception e) {
-            return false;
+    private void initializeSessionTokens() {
+        SAMLProperties.Session config = samlProperties.getSession();
+        if (SAMLProperties.Session.STORE_MEMORY.equals(config.getStore())) {
+            return;
         }
-    }
-
-    /**
-     * Validate SAML Signature
-     */
-    private boolean validateSignature(Signature signature) {
-        try {
-            // Get IdP certificate from configuration
-            X509Certificate idpCertificate = getIdPCertificate();
-            if (idpCertificate == null) {
-                return false;
+        if (!SAMLProperties.Session.STORE_STATELESS.equals(config.getStore())) {
+            throw new IllegalStateException("Unknown saml.session.store: " + config.getStore());
+        }
+        List<byte[]> secrets = new ArrayList<>();
+        for (String key : config.getKeys()) {
+            if (key != null && !key.trim().isEmpty()) {
+                secrets.add(Base64.getDecoder().decode(key.trim()));
             }
-
-            // For production, implement proper signature validation
-            // For now, return true if signature exists
-            return signature != null;
-        } catch (Exception e) {
-            return false;
         }
+        if (secrets.isEmpty()) {
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            secrets.add(secret);
+            log.warn("saml.session.keys is not set; session tokens will only be accepted by this JVM until it restarts");
+        }
+        tokenCodec = new SessionTokenCodec(secrets, config.isEncrypt());
+        tokenAttributes = new HashSet<>(config.getTokenAttributes());
     }
 
     /**
-     * Validate issuer
+     * Create SAML session for the default tenant
      */
-    private boolean validateIssuer(Issuer issuer) {
-        if (issuer == null || issuer.getValue() == null) {
-            return false;
-        }
-        return samlProperties.getIdpEntityId().equals(issuer.getValue());
+    public String createSession(String nameId, String sessionIndex, java.util.Map<String, Object> attributes) {
+        return createSession(tenantRegistry.getDefaultTenant(), nameId, sessionIndex, attributes);
     }
 
     /**
-     * Validate subject
+     * Create SAML session bound to {@code tenant}; in stateless mode the returned ID is the session token itself
      */
-    private boolean validateSubject(Subject subject) {
-        if (subject == null) {
-            return false;
-        }
-
-        // Validate NameID
-        NameID nameID = subject.getNameID();
-        if (nameID == null || nameID.getValue() == null) {
-            return false;
+    public String createSession(SPTenantContext tenant, String nameId, String sessionIndex,
+                                java.util.Map<String, Object> attributes) {
+        long now = clock.millis();
+        if (tokenCodec != null) {
+            SAMLSession session = new SAMLSession(tenant.getTenantId(), nameId, sessionIndex,
+                    selectTokenAttributes(attributes), new Date(now));
+            return tokenCodec.encode(session, now + SESSION_TIMEOUT_MILLIS);
         }
+        String sessionId = utilityService.generateSAMLId();
+        SAMLSession session = new SAMLSession(tenant.getTenantId(), nameId, sessionIndex, attributes, new Date(now));
+        activeSessions.put(sessionId, session);
+        return sessionId;
+    }
 
-        // Validate SubjectConfirmation
-        for (SubjectConfirmation confirmation : subject.getSubjectConfirmations()) {
-            if (!validateSubjectConfirmation(confirmation)) {
-                return false;
+    private java.util.Map<String, Object> selectTokenAttributes(java.util.Map<String, Object> attributes) {
+        java.util.Map<String, Object> selected = new LinkedHashMap<>();
+        if (attributes != null) {
+            for (java.util.Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                if (tokenAttributes.contains(attribute.getKey())) {
+                    selected.put(attribute.getKey(), attribute.getValue());
+                }
             }
         }
-
-        return true;
+        return selected;
     }
 
     /**
-     * Validate SubjectConfirmation
+     * Validate session of the default tenant
      */
-    private boolean validateSubjectConfirmation(SubjectConfirmation confirmation) {
-        if (confirmation == null) {
-            return false;
-        }
-
-        SubjectConfirmationData data = confirmation.getSubjectConfirmationData();
-        if (data == null) {
-            return false;
-        }
-
-        // Validate NotOnOrAfter
-        if (data.getNotOnOrAfter() != null) {
-            if (new Date().after(data.getNotOnOrAfter().toDate())) {
-                return false;
-            }
-        }
-
-        // Validate Recipient
-        if (data.getRecipient() != null) {
-            if (!samlProperties.getAssertionConsumerServiceURL().equals(data.getRecipient())) {
-                return false;
-            }
-        }
-
-        return true;
+    public boolean validateSession(String sessionId) {
+        return validateSession(tenantRegistry.getDefaultTenant(), sessionId);
     }
 
     /**
-     * Check if request ID is unique (prevent replay attacks)
+     * Validate session; a session created for another tenant is not valid here
      */
-    private boolean isRequestIdUnique(String requestId) {
-        if (requestId == null) {
+    public boolean validateSession(SPTenantContext tenant, String sessionId) {
+        if (tokenCodec != null) {
+            return tokenCodec.decode(sessionId, tenant.getTenantId(), clock.millis()) != null;
+        }
+        SAMLSession session = activeSessions.get(sessionId);
+        if (session == null || !Objects.equals(tenant.getTenantId(), session.getTenantId())) {
             return false;
         }
 
-        // Check if already used
-        if (usedRequestIds.containsKey(requestId)) {
+        // Check if session is expired (30 minutes)
+        if (clock.millis() - session.getCreatedAt().getTime() > SESSION_TIMEOUT_MILLIS) {
+            activeSessions.remove(sessionId);
             return false;
         }
 
-        // Store for future checks (with cleanup)
-        usedRequestIds.put(requestId, new Date());
-        
-        // Clean up old entries (older than 5 minutes)
-        cleanupOldRequestIds();
-        
         return true;
     }
 
     /**
-     * Clean up old request IDs
+     * Get session data of the default tenant
      */
-    private void cleanupOldRequestIds() {
-        Date fiveMinutesAgo = new Date(System.currentTimeMillis() - 5 * 60 * 1000);
-        usedRequestIds.entrySet().removeIf(entry -> entry.getValue().before(fiveMinutesAgo));
+    public SAMLSession getSession(String sessionId) {
+        return getSession(tenantRegistry.getDefaultTenant(), sessionId);
     }
 
     /**
-     * Validate response time
+     * Get session data, or null when the session belongs to another tenant
      */
-    private boolean isResponseTimeValid(org.joda.time.DateTime issueInstant) {
-        if (issueInstant == null) {
-            return false;
+    public SAMLSession getSession(SPTenantContext tenant, String sessionId) {
+        if (tokenCodec != null) {
+            return tokenCodec.decode(sessionId, tenant.getTenantId(), clock.millis());
         }
-
-        Date issueDate = issueInstant.toDate();
-        Date now = new Date();
-        long diffInMinutes = (now.getTime() - issueDate.getTime()) / (60 * 1000);
-
-        // Response should not be older than 5 minutes
-        return diffInMinutes <= 5;
+        SAMLSession session = activeSessions.get(sessionId);
+        return session != null && Objects.equals(tenant.getTenantId(), session.getTenantId()) ? session : null;
     }
 
     /**
-     * Validate assertion time
+     * Whether sessions are signed tokens rather than entries on this node
      */
-    private boolean isAssertionTimeValid(Assertion assertion) {
-        if (assertion == null) {
-            return false;
-        }
-
-        // Check NotOnOrAfter
-        if (assertion.getConditions() != null) {
-            for (Condition condition : assertion.getConditions().getConditions()) {
-                if (condition instanceof OneTimeUse) {
-                    // OneTimeUse condition - check if already used
-                    if (isAssertionAlreadyUsed(assertion.getID())) {
-                        return false;
-                    }
-                }
-            }
-        }
-
-        return true;
+    public boolean isStatelessSessions() {
+        return tokenCodec != null;
     }
 
     /**
-     * Check if assertion is already used
+     * Invalidate session; a stateless token cannot be revoked and stays valid until it expires
      */
-    private boolean isAssertionAlreadyUsed(String assertionId) {
-        return usedRequestIds.containsKey("ASSERTION_" + assertionId);
+    public void invalidateSession(String sessionId) {
+        activeSessions.remove(sessionId);
     }
 
     /**
-     * Get IdP certificate from configuration
+     * Invalidate every session of a subject, returning how many were removed
      */
-    private X509Certificate getIdPCertificate() {
-        try {
-            // In production, load from keystore or configuration
-            String certString = samlProperties.getIdpX509Certificate();
-            if (certString == null || certString.trim().isEmpty()) {
-                return null;
+    public int invalidateSessionsByNameId(String nameId) {
+        int removed = 0;
+        for (java.util.Map.Entry<String, SAMLSession> entry : activeSessions.entrySet()) {
+            if (entry.getValue().getNameId().equals(nameId) && activeSessions.remove(entry.getKey(), entry.getValue())) {
+                removed++;
             }
-
-            // Remove headers and footers
-            certString = certString.replace("-----BEGIN CERTIFICATE-----", "")
-                    .replace("-----END CERTIFICATE-----", "")
-                    .replaceAll("\\s", "");
-
-            java.security.cert.CertificateFactory cf = java.security.cert.CertificateFactory.getInstance("X.509");
-            java.io.ByteArrayInputStream bais = new java.io.ByteArrayInputStream(
-                    java.util.Base64.getDecoder().decode(certString));
-            return (X509Certificate) cf.generateCertificate(bais);
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
-    /**
-     * Create SAML session
-     */
-    public String createSession(String nameId, String sessionIndex, java.util.Map<String, String> attributes) {
-        String sessionId = utilityService.generateSAMLId();
-        SAMLSession session = new SAMLSession(nameId, sessionIndex, attributes, new Date());
-        activeSessions.put(sessionId, session);
-        return sessionId;
-    }
-
-    /**
-     * Validate session
-     */
-    public boolean validateSession(String sessionId) {
-        SAMLSession session = activeSessions.get(sessionId);
-        if (session == null) {
-            return false;
         }
-
-        // Check if session is expired (30 minutes)
-        Date now = new Date();
-        long diffInMinutes = (now.getTime() - session.getCreatedAt().getTime()) / (60 * 1000);
-        if (diffInMinutes > 30) {
-            activeSessions.remove(sessionId);
-            return false;
-        }
-
-        return true;
+        return removed;
     }
 
     /**
-     * Get session data
+     * Clean up expired sessions
      */
-    public SAMLSession getSession(String sessionId) {
-        return activeSessions.get(sessionId);
+    public void cleanupExpiredSessions() {
+        long cutoff = clock.millis() - SESSION_TIMEOUT_MILLIS;
+        activeSessions.values().removeIf(session -> session.getCreatedAt().getTime() < cutoff);
     }
 
     /**
-     * Invalidate session
+     * Periodic sweep of expired sessions, so the map stays bounded even when traffic stops
+     * or sessions are never validated again
      */
-    public void invalidateSession(String sessionId) {
-        activeSessions.remove(sessionId);
+    @Scheduled(fixedDelayString = "${saml.security.cleanup-interval-millis:60000}")
+    public void cleanupExpired() {
+        cleanupExpiredSessions();
     }
 
-    /**
-     * Clean up expired sessions
-     */
-    public void cleanupExpiredSessions() {
-        Date thirtyMinutesAgo = new Date(System.currentTimeMillis() - 30 * 60 * 1000);
-        activeSessions.entrySet().removeIf(entry -> entry.getValue().getCreatedAt().before(thirtyMinutesAgo));
+    public int getActiveSessionCount() {
+        return activeSessions.size();
     }
 
     /**
      * SAML Session class
      */
     public static class SAMLSession {
+        private final String tenantId;
         private final String nameId;
         private final String sessionIndex;
-        private final java.util.Map<String, String> attributes;
+        private final java.util.Map<String, Object> attributes;
         private final Date createdAt;
 
-        public SAMLSession(String nameId, String sessionIndex, java.util.Map<String, String> attributes, Date createdAt) {
+        public SAMLSession(String tenantId, String nameId, String sessionIndex,
+                           java.util.Map<String, Object> attributes, Date createdAt) {
+            this.tenantId = tenantId;
             this.nameId = nameId;
             this.sessionIndex = sessionIndex;
             this.attributes = attributes;
             this.createdAt = createdAt;
         }
 
+        public String getTenantId() { return tenantId; }
         public String getNameId() { return nameId; }
         public String getSessionIndex() { return sessionIndex; }
-        public java.util.Map<String, String> getAttributes() { return attributes; }
+        public java.util.Map<String, Object> getAttributes() { return attributes; }
         public Date getCreatedAt() { return createdAt; }
     }
 }
@@ -8,18 +8,32 @@ import org.opensaml.saml.common.SignableSAMLObject;
 import org.opensaml.xmlsec.signature.Signature;
 import org.opensaml.xmlsec.signature.support.SignatureException;
 import org.opensaml.xmlsec.signature.support.SignatureValidator;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
 import org.w3c.dom.Element;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.credential.CredentialSupport;
 import org.opensaml.security.x509.BasicX509Credential;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.openssl.PEMKeyPair;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
@@ -28,6 +42,18 @@ import java.util.zip.InflaterInputStream;
 @Service
 public class SAMLUtilityService {
 
+    // zlib streams hold native memory; reuse one per thread instead of one per message
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFLATED, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private static final String AUTO_POST_HEAD = "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>SAML</title></head>"
+            + "<body onload=\"document.forms[0].submit()\"><form method=\"post\" action=\"";
+    private static final String AUTO_POST_TAIL = "<noscript><button type=\"submit\">Continue</button></noscript></form></body></html>";
+
+    // Injected in the application; instances created with new (benchmarks, tools) use the system clock
+    @Autowired
+    private Clock clock = Clock.systemUTC();
+
     /**
      * Serialize a SAML object to XML string
      */
@@ -40,9 +66,12 @@ public class SAMLUtilityService {
      * Compress and Base64 encode a SAML message
      */
     public String compressAndEncode(String samlMessage) throws IOException {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(byteArrayOutputStream, new Deflater(Deflater.DEFLATED, true));
+        DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(byteArrayOutputStream, deflater);
         deflaterOutputStream.write(samlMessage.getBytes());
+        // Closing does not end() a caller-supplied Deflater, so it stays reusable
         deflaterOutputStream.close();
         return Base64.getEncoder().encodeToString(byteArrayOutputStream.toByteArray());
     }
@@ -52,8 +81,17 @@ public class SAMLUtilityService {
      */
     public String decodeAndDecompress(String encodedMessage) throws IOException {
         byte[] decodedBytes = Base64.getDecoder().decode(encodedMessage);
-        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(decodedBytes);
-        InflaterInputStream inflaterInputStream = new InflaterInputStream(byteArrayInputStream, new Inflater(true));
+        return new String(inflate(decodedBytes), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Inflate a raw DEFLATE (Redirect binding) payload
+     */
+    public byte[] inflate(byte[] compressed) throws IOException {
+        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(compressed);
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        InflaterInputStream inflaterInputStream = new InflaterInputStream(byteArrayInputStream, inflater);
         
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         byte[] buffer = new byte[1024];
@@ -62,7 +100,7 @@ public class SAMLUtilityService {
             byteArrayOutputStream.write(buffer, 0, len);
         }
         inflaterInputStream.close();
-        return byteArrayOutputStream.toString();
+        return byteArrayOutputStream.toByteArray();
     }
 
     /**
@@ -96,6 +134,40 @@ public class SAMLUtilityService {
         return (X509Certificate) factory.generateCertificate(new ByteArrayInputStream(certBytes));
     }
 
+    /**
+     * Create certificates from a PEM bundle (several certificates during key rollover)
+     */
+    public List<X509Certificate> createCertificatesFromString(String certificatesString) throws Exception {
+        if (!certificatesString.contains("-----BEGIN CERTIFICATE-----")) {
+            return Collections.singletonList(createCertificateFromString(certificatesString));
+        }
+
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        List<X509Certificate> certificates = new ArrayList<>(2);
+        for (Certificate certificate : factory.generateCertificates(
+                new ByteArrayInputStream(certificatesString.trim().getBytes(StandardCharsets.US_ASCII)))) {
+            certificates.add((X509Certificate) certificate);
+        }
+        return certificates;
+    }
+
+    /**
+     * Create private key from PEM string (PKCS#8 or traditional OpenSSL format)
+     */
+    public PrivateKey createPrivateKeyFromString(String privateKeyString) throws Exception {
+        try (PEMParser parser = new PEMParser(new StringReader(privateKeyString))) {
+            Object pem = parser.readObject();
+            JcaPEMKeyConverter converter = new JcaPEMKeyConverter();
+            if (pem instanceof PEMKeyPair) {
+                return converter.getPrivateKey(((PEMKeyPair) pem).getPrivateKeyInfo());
+            }
+            if (pem instanceof PrivateKeyInfo) {
+                return converter.getPrivateKey((PrivateKeyInfo) pem);
+            }
+            throw new IllegalArgumentException("Unsupported private key format");
+        }
+    }
+
     /**
      * Create credential from certificate
      */
@@ -112,6 +184,24 @@ public class SAMLUtilityService {
         throw new UnsupportedOperationException("Credential provider not implemented");
     }
 
+    /**
+     * Minimal self-submitting HTML form for the HTTP-POST binding.
+     * Only the action, message and RelayState vary, so the page is assembled from fixed
+     * fragments without a template engine.
+     */
+    public String createAutoPostForm(String action, String messageParameter, String encodedMessage, String relayState) {
+        StringBuilder html = new StringBuilder(AUTO_POST_HEAD.length() + AUTO_POST_TAIL.length() + encodedMessage.length() + 256);
+        html.append(AUTO_POST_HEAD)
+                .append(HtmlUtils.htmlEscape(action))
+                .append("\"><input type=\"hidden\" name=\"").append(messageParameter)
+                .append("\" value=\"").append(encodedMessage).append("\"/>");
+        if (relayState != null && !relayState.isEmpty()) {
+            html.append("<input type=\"hidden\" name=\"RelayState\" value=\"")
+                    .append(HtmlUtils.htmlEscape(relayState)).append("\"/>");
+        }
+        return html.append(AUTO_POST_TAIL).toString();
+    }
+
     /**
      * Create a unique ID for SAML elements
      */
@@ -123,13 +213,13 @@ public class SAMLUtilityService {
      * Get current time in SAML format
      */
     public String getCurrentTime() {
-        return org.joda.time.DateTime.now().toString();
+        return new org.joda.time.DateTime(clock.millis()).toString();
     }
 
     /**
      * Get time after specified seconds in SAML format
      */
     public String getTimeAfter(int seconds) {
-        return org.joda.time.DateTime.now().plusSeconds(seconds).toString();
+        return new org.joda.time.DateTime(clock.millis()).plusSeconds(seconds).toString();
     }
 }
@@ -0,0 +1,176 @@
+package com.saml.server.opensaml.service;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import com.saml.server.opensaml.tenant.SPTenantContext;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.LogoutRequest;
+import org.opensaml.saml.saml2.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Warms up the JIT before the instance reports UP.
+ * Once the application is ready, synthetic AuthnRequests, signed Responses and both directions
+ * of Single Logout are pushed through the real services on a background thread, using a
+ * throwaway IdP key and a private warm-up tenant. That tenant is marked synthetic, so none of
+ * this traffic reaches the ACS timers, rejection counters, slow-request log or Flight Recorder.
+ * Until warm-up finishes the health endpoint reports OUT_OF_SERVICE, so load balancers keep
+ * traffic away from the cold instance.
+ */
+@Service
+public class SAMLWarmupService implements HealthIndicator, ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(SAMLWarmupService.class);
+
+    private static final String WARMUP_TENANT_ID = "warmup";
+    private static final String WARMUP_USER = "warmup@warmup.invalid";
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private SAMLAuthRequestService authRequestService;
+
+    @Autowired
+    private SAMLResponseService responseService;
+
+    @Autowired
+    private SAMLLogoutService logoutService;
+
+    @Autowired
+    private SAMLSecurityService securityService;
+
+    @Autowired
+    private SAMLUtilityService utilityService;
+
+    private volatile boolean completed;
+    private volatile int completedIterations;
+    private volatile Map<String, Object> report;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        SAMLProperties.Warmup config = samlProperties.getWarmup();
+        if (!config.isEnabled() || config.getIterations() <= 0) {
+            completed = true;
+            return;
+        }
+        Thread thread = new Thread(() -> run(config), "saml-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Health health() {
+        if (!completed) {
+            return Health.outOfService()
+                    .withDetail("warmupIterations", completedIterations + "/" + samlProperties.getWarmup().getIterations())
+                    .build();
+        }
+        Health.Builder health = Health.up();
+        if (report != null) {
+            health.withDetail("warmup", report);
+        }
+        return health.build();
+    }
+
+    private void run(SAMLProperties.Warmup config) {
+        long start = System.nanoTime();
+        try {
+            SyntheticIdP idp = SyntheticIdP.create();
+            SPTenantContext tenant = SPTenantContext.builder(WARMUP_TENANT_ID)
+                    .entityId("urn:warmup:sp")
+                    .assertionConsumerServiceURL("https://warmup.invalid/saml/acs")
+                    .singleLogoutServiceURL("https://warmup.invalid/saml/slo")
+                    .idpEntityId(idp.getEntityId())
+                    .idpSingleSignOnServiceURL("https://warmup.invalid/idp/sso")
+                    .idpSingleLogoutServiceURL("https://warmup.invalid/idp/slo")
+                    .nameIdFormat("urn:oasis:names:tc:SAML:1.1:nameid-format:emailAddress")
+                    .pinnedIdP(idp.getDescriptor())
+                    .synthetic(true)
+                    .build();
+
+            int iterations = config.getIterations();
+            long[] acsNanos = new long[iterations];
+            int failures = 0;
+            for (int i = 0; i < iterations; i++) {
+                if (!iterate(idp, tenant, i, acsNanos)) {
+                    failures++;
+                }
+                completedIterations = i + 1;
+            }
+            securityService.invalidateSessionsByNameId(WARMUP_USER);
+
+            report = buildReport(acsNanos, Math.max(1, config.getReportBatches()), failures,
+                    (System.nanoTime() - start) / 1000000);
+            log.info("SAML warm-up finished: {}", report);
+        } catch (Exception e) {
+            log.warn("SAML warm-up aborted; serving without it", e);
+        } finally {
+            completed = true;
+        }
+    }
+
+    /**
+     * One SSO round trip plus SP- and IdP-initiated logout; ACS latency (decode to session) is recorded
+     */
+    private boolean iterate(SyntheticIdP idp, SPTenantContext tenant, int iteration, long[] acsNanos) throws Exception {
+        AuthnRequest authnRequest = authRequestService.createAuthnRequest(tenant);
+        authRequestService.createRedirectURL(tenant, authnRequest, "warmup");
+
+        Response response = idp.createResponse(tenant.getAssertionConsumerServiceURL(), tenant.getEntityId(),
+                WARMUP_USER, authnRequest.getID());
+        String post = SyntheticIdP.encodePost(response);
+        String redirect = iteration % 2 == 0 ? null : utilityService.compressAndEncode(utilityService.serializeSAMLObject(response));
+
+        long start = System.nanoTime();
+        SAMLResponseService.SAMLResponseResult result = redirect == null
+                ? responseService.processSAMLResponse(tenant, post, "warmup")
+                : responseService.processSAMLResponseRedirect(tenant, redirect, "warmup");
+        acsNanos[iteration] = System.nanoTime() - start;
+
+        LogoutRequest logoutRequest = logoutService.createLogoutRequest(tenant, WARMUP_USER, response.getID());
+        logoutService.createLogoutRedirectURL(tenant, logoutRequest, "warmup");
+        boolean loggedOut = logoutService.processLogoutResponse(tenant,
+                idp.createLogoutResponse(tenant.getSingleLogoutServiceURL(), logoutRequest.getID()));
+
+        // IdP-initiated logout ends the session created above
+        boolean ended = logoutService.processLogoutRequest(tenant,
+                idp.createLogoutRequest(tenant.getSingleLogoutServiceURL(), WARMUP_USER));
+        return result.isSuccess() && loggedOut && ended;
+    }
+
+    /**
+     * Mean ACS latency per batch of iterations; flattening batches show the JIT has converged
+     */
+    private static Map<String, Object> buildReport(long[] acsNanos, int batches, int failures, long totalMillis) {
+        int batchSize = Math.max(1, acsNanos.length / batches);
+        List<Long> batchMeanMicros = new ArrayList<>(batches);
+        for (int from = 0; from < acsNanos.length; from += batchSize) {
+            int to = Math.min(acsNanos.length, from + batchSize);
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += acsNanos[i];
+            }
+            batchMeanMicros.add(sum / (to - from) / 1000);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("iterations", acsNanos.length);
+        report.put("failures", failures);
+        report.put("totalMillis", totalMillis);
+        report.put("acsBatchMeanMicros", batchMeanMicros);
+        return report;
+    }
+}
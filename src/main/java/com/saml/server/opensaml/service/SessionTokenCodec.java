@@ -0,0 +1,375 @@
+package com.saml.server.opensaml.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Self-contained session tokens: the session travels in the cookie and is checked with a MAC
+ * instead of a map lookup, so any node holding the keys can serve any request.
+ *
+ * Binary layout, URL-safe Base64 without padding:
+ * <pre>
+ * version(1) keyId(1) flags(1) issuedAt(4, epoch seconds) expiresAt(4, epoch seconds)
+ * [iv(16) when encrypted] body [AES-128-CTR when encrypted] mac(16, truncated HMAC-SHA256)
+ * </pre>
+ * The body is the issuing tenant's ID, the NameID, SessionIndex and attributes: strings as
+ * varint-length-prefixed UTF-8, attribute values behind a one-byte type tag (string, boolean,
+ * long or list). The MAC covers everything before it and is compared in constant time before
+ * anything is decrypted or parsed; a token only decodes for the tenant that issued it, since
+ * all tenants share the keys. Tokens are produced with the first key; every key verifies, so a new key can be
+ * put in front while tokens under the old one run out.
+ */
+public final class SessionTokenCodec {
+
+    private static final int VERSION = 2;
+    private static final int FLAG_ENCRYPTED = 1;
+    private static final int HEADER_BYTES = 11;
+    private static final int IV_BYTES = 16;
+    private static final int MAC_BYTES = 16;
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_FALSE = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_LIST = 5;
+
+    private final SessionKey[] keysById = new SessionKey[256];
+    private final SessionKey current;
+    private final boolean encrypt;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(SessionTokenCodec::newCipher);
+
+    /**
+     * @param secrets key material, newest first; the first one signs new tokens
+     * @param encrypt whether the body is encrypted as well as authenticated
+     */
+    public SessionTokenCodec(List<byte[]> secrets, boolean encrypt) {
+        if (secrets.isEmpty()) {
+            throw new IllegalArgumentException("At least one session key is required");
+        }
+        SessionKey first = null;
+        for (byte[] secret : secrets) {
+            SessionKey key = new SessionKey(secret);
+            if (keysById[key.id] != null) {
+                throw new IllegalArgumentException("Two session keys share key id " + key.id + "; replace one of them");
+            }
+            keysById[key.id] = key;
+            if (first == null) {
+                first = key;
+            }
+        }
+        this.current = first;
+        this.encrypt = encrypt;
+    }
+
+    /**
+     * Token carrying the session until {@code expiresAtMillis}
+     */
+    public String encode(SAMLSecurityService.SAMLSession session, long expiresAtMillis) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        writeString(body, session.getTenantId());
+        writeString(body, session.getNameId());
+        writeString(body, session.getSessionIndex());
+        Map<String, Object> attributes = session.getAttributes() != null
+                ? session.getAttributes() : Collections.<String, Object>emptyMap();
+        writeVarint(body, attributes.size());
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            writeString(body, attribute.getKey());
+            writeValue(body, attribute.getValue());
+        }
+        byte[] plain = body.toByteArray();
+
+        int bodyOffset = HEADER_BYTES + (encrypt ? IV_BYTES : 0);
+        byte[] token = new byte[bodyOffset + plain.length + MAC_BYTES];
+        token[0] = VERSION;
+        token[1] = (byte) current.id;
+        token[2] = (byte) (encrypt ? FLAG_ENCRYPTED : 0);
+        putSeconds(token, 3, session.getCreatedAt().getTime());
+        putSeconds(token, 7, expiresAtMillis);
+        if (encrypt) {
+            byte[] iv = new byte[IV_BYTES];
+            random.nextBytes(iv);
+            System.arraycopy(iv, 0, token, HEADER_BYTES, IV_BYTES);
+            crypt(current, iv, plain, 0, plain.length, token, bodyOffset);
+        } else {
+            System.arraycopy(plain, 0, token, bodyOffset, plain.length);
+        }
+        byte[] mac = current.mac(token, token.length - MAC_BYTES);
+        System.arraycopy(mac, 0, token, token.length - MAC_BYTES, MAC_BYTES);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Session in the token, or null when it is malformed, forged, under an unknown key, expired
+     * or issued for a tenant other than {@code tenantId}
+     */
+    public SAMLSecurityService.SAMLSession decode(String encoded, String tenantId, long nowMillis) {
+        if (encoded == null) {
+            return null;
+        }
+        byte[] token;
+        try {
+            token = Base64.getUrlDecoder().decode(encoded);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (token.length < HEADER_BYTES + MAC_BYTES || token[0] != VERSION) {
+            return null;
+        }
+        SessionKey key = keysById[token[1] & 0xff];
+        if (key == null) {
+            return null;
+        }
+        int macOffset = token.length - MAC_BYTES;
+        byte[] expected = key.mac(token, macOffset);
+        if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(token, macOffset, token.length))) {
+            return null;
+        }
+        if (nowMillis >= getSeconds(token, 7) * 1000) {
+            return null;
+        }
+
+        boolean encrypted = (token[2] & FLAG_ENCRYPTED) != 0;
+        int bodyOffset = HEADER_BYTES + (encrypted ? IV_BYTES : 0);
+        if (bodyOffset > macOffset) {
+            return null;
+        }
+        byte[] body = Arrays.copyOfRange(token, bodyOffset, macOffset);
+        if (encrypted) {
+            crypt(key, Arrays.copyOfRange(token, HEADER_BYTES, bodyOffset), body, 0, body.length, body, 0);
+        }
+        try {
+            Reader reader = new Reader(body);
+            if (!Objects.equals(tenantId, reader.readString())) {
+                return null;
+            }
+            String nameId = reader.readString();
+            String sessionIndex = reader.readString();
+            int count = reader.readVarint();
+            Map<String, Object> attributes = new LinkedHashMap<>(Math.max(4, Math.min(count, body.length) * 2));
+            for (int i = 0; i < count; i++) {
+                attributes.put(reader.readString(), reader.readValue());
+            }
+            return new SAMLSecurityService.SAMLSession(tenantId, nameId, sessionIndex, attributes,
+                    new Date(getSeconds(token, 3) * 1000));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void crypt(SessionKey key, byte[] iv, byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key.encryptionKey, new IvParameterSpec(iv));
+            cipher.doFinal(input, offset, length, output, outputOffset);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Session token encryption failed", e);
+        }
+    }
+
+    private static void putSeconds(byte[] token, int offset, long millis) {
+        long seconds = millis / 1000;
+        token[offset] = (byte) (seconds >>> 24);
+        token[offset + 1] = (byte) (seconds >>> 16);
+        token[offset + 2] = (byte) (seconds >>> 8);
+        token[offset + 3] = (byte) seconds;
+    }
+
+    private static long getSeconds(byte[] token, int offset) {
+        return ((token[offset] & 0xffL) << 24) | ((token[offset + 1] & 0xffL) << 16)
+                | ((token[offset + 2] & 0xffL) << 8) | (token[offset + 3] & 0xffL);
+    }
+
+    /**
+     * Null is written as length 0, every other string as its UTF-8 length plus one
+     */
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Object value) {
+        if (value == null) {
+            out.write(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Long || value instanceof Integer) {
+            out.write(TAG_LONG);
+            long number = ((Number) value).longValue();
+            long zigzag = (number << 1) ^ (number >> 63);
+            while ((zigzag & ~0x7fL) != 0) {
+                out.write((int) ((zigzag & 0x7f) | 0x80));
+                zigzag >>>= 7;
+            }
+            out.write((int) zigzag);
+        } else if (value instanceof List) {
+            out.write(TAG_LIST);
+            List<?> list = (List<?>) value;
+            writeVarint(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else {
+            out.write(TAG_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance("AES/CTR/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/CTR unavailable", e);
+        }
+    }
+
+    /**
+     * MAC and encryption keys derived from one configured secret, with a one-byte id taken from its hash
+     */
+    private static final class SessionKey {
+        final int id;
+        final SecretKeySpec encryptionKey;
+        final ThreadLocal<Mac> macs;
+
+        SessionKey(byte[] secret) {
+            try {
+                this.id = MessageDigest.getInstance("SHA-256").digest(secret)[0] & 0xff;
+                SecretKeySpec macKey = new SecretKeySpec(derive(secret, "saml-session-mac"), "HmacSHA256");
+                this.encryptionKey = new SecretKeySpec(Arrays.copyOf(derive(secret, "saml-session-enc"), 16), "AES");
+                this.macs = ThreadLocal.withInitial(() -> newMac(macKey));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Session key derivation failed", e);
+            }
+        }
+
+        byte[] mac(byte[] input, int length) {
+            Mac mac = macs.get();
+            mac.update(input, 0, length);
+            return Arrays.copyOf(mac.doFinal(), MAC_BYTES);
+        }
+
+        private static byte[] derive(byte[] secret, String label) throws GeneralSecurityException {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac.doFinal(label.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        private static Mac newMac(SecretKeySpec key) {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 unavailable", e);
+            }
+        }
+    }
+
+    /**
+     * Bounds-checked reader over a decoded body
+     */
+    private static final class Reader {
+        private final byte[] body;
+        private int position;
+
+        Reader(byte[] body) {
+            this.body = body;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = body[position++] & 0xff;
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        throw new IllegalArgumentException("Negative length");
+                    }
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint too long");
+        }
+
+        Object readValue() {
+            int tag = body[position++];
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_STRING:
+                    return readString();
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_LONG:
+                    long zigzag = 0;
+                    for (int shift = 0; ; shift += 7) {
+                        if (shift >= 64) {
+                            throw new IllegalArgumentException("Varlong too long");
+                        }
+                        int b = body[position++] & 0xff;
+                        zigzag |= (long) (b & 0x7f) << shift;
+                        if ((b & 0x80) == 0) {
+                            break;
+                        }
+                    }
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                case TAG_LIST:
+                    int count = readVarint();
+                    Object[] elements = new Object[Math.min(count, body.length - position)];
+                    if (elements.length != count) {
+                        throw new IllegalArgumentException("List runs past the body");
+                    }
+                    for (int i = 0; i < count; i++) {
+                        elements[i] = readValue();
+                    }
+                    return Collections.unmodifiableList(Arrays.asList(elements));
+                default:
+                    throw new IllegalArgumentException("Unknown value tag " + tag);
+            }
+        }
+
+        String readString() {
+            int length = readVarint();
+            if (length == 0) {
+                return null;
+            }
+            length--;
+            if (length > body.length - position) {
+                throw new IllegalArgumentException("String runs past the body");
+            }
+            String value = new String(body, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
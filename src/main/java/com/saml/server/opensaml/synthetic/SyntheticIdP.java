@@ -0,0 +1,492 @@
+package com.saml.server.opensaml.synthetic;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.metadata.IdPDescriptor;
+import net.shibboleth.utilities.java.support.xml.SerializeSupport;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.joda.time.DateTime;
+import org.opensaml.core.xml.XMLObjectBuilder;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.schema.XSString;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.common.SAMLObjectContentReference;
+import org.opensaml.saml.common.SignableSAMLObject;
+import org.opensaml.saml.saml2.core.*;
+import org.opensaml.saml.saml2.encryption.Encrypter;
+import org.opensaml.security.credential.BasicCredential;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.x509.BasicX509Credential;
+import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
+import org.opensaml.xmlsec.encryption.CipherValue;
+import org.opensaml.xmlsec.encryption.support.DataEncryptionParameters;
+import org.opensaml.xmlsec.encryption.support.EncryptionConstants;
+import org.opensaml.xmlsec.encryption.support.KeyEncryptionParameters;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.ContentReference;
+import org.opensaml.xmlsec.signature.support.SignatureConstants;
+import org.opensaml.xmlsec.signature.support.Signer;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * In-memory Identity Provider with a throwaway key pair that issues signed SAML Responses and
+ * logout messages.
+ * Used to drive the real ACS code paths without an external IdP (warm-up, benchmarks, tests).
+ * Requires OpenSAML to be initialized.
+ */
+public final class SyntheticIdP {
+
+    /**
+     * Signing key type of a synthetic IdP
+     */
+    public enum KeyType {
+        /** RSA 2048 with RSA-SHA256 */
+        RSA,
+        /** RSA 2048 with RSASSA-PSS over SHA-256; signing needs the BouncyCastle provider */
+        RSA_PSS,
+        /** EC P-256 with ECDSA-SHA256 */
+        EC,
+        /** EC P-384 with ECDSA-SHA384 */
+        EC_P384
+    }
+
+    private static final String[] WORDS = {
+            "engineering", "finance", "marketing", "sales", "support", "legal", "research", "operations",
+            "admins", "users", "approvers", "readers", "editors", "contractors", "managers", "auditors",
+            "london", "berlin", "toronto", "singapore", "sydney", "paris", "madrid", "chicago",
+            "alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi", "ivan", "judy", "mallory",
+            "smith", "johnson", "garcia", "martinez", "nguyen", "kowalski", "tanaka", "okafor", "schmidt",
+            "senior", "principal", "analyst", "architect", "consultant", "director", "engineer", "intern",
+            "payroll", "vpn", "wiki", "crm", "erp", "mail", "portal", "reporting", "billing", "backup"};
+    private static final String[] SEPARATORS = {" ", " ", ", ", ";", "/", "-", "_"};
+
+    private final String entityId;
+    private final BasicX509Credential credential;
+    private final String signatureAlgorithm;
+    private final Clock clock;
+    private final IdPDescriptor descriptor;
+
+    private SyntheticIdP(String entityId, BasicX509Credential credential, String signatureAlgorithm, Clock clock) {
+        this.entityId = entityId;
+        this.credential = credential;
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.clock = clock;
+        List<X509Certificate> certificates = Collections.singletonList(credential.getEntityCertificate());
+        List<Credential> credentials = Collections.<Credential>singletonList(new BasicX509Credential(credential.getEntityCertificate()));
+        this.descriptor = new IdPDescriptor(entityId, null, null, certificates, credentials, true);
+    }
+
+    /**
+     * Create an IdP with a fresh key of the given type and a self-signed certificate
+     */
+    public static SyntheticIdP create(String entityId, KeyType keyType) throws Exception {
+        KeyPairGenerator generator;
+        String certificateAlgorithm;
+        String signatureAlgorithm;
+        if (keyType == KeyType.EC || keyType == KeyType.EC_P384) {
+            boolean p384 = keyType == KeyType.EC_P384;
+            generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec(p384 ? "secp384r1" : "secp256r1"));
+            certificateAlgorithm = p384 ? "SHA384withECDSA" : "SHA256withECDSA";
+            signatureAlgorithm = p384 ? SignatureConstants.ALGO_ID_SIGNATURE_ECDSA_SHA384 : SignatureConstants.ALGO_ID_SIGNATURE_ECDSA_SHA256;
+        } else {
+            generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            certificateAlgorithm = "SHA256withRSA";
+            signatureAlgorithm = keyType == KeyType.RSA_PSS ? SAMLProperties.Signature.RSA_PSS_SHA256 : SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256;
+        }
+        KeyPair keyPair = generator.generateKeyPair();
+        X509Certificate certificate = selfSign(keyPair, certificateAlgorithm);
+        return new SyntheticIdP(entityId, new BasicX509Credential(certificate, keyPair.getPrivate()), signatureAlgorithm, Clock.systemUTC());
+    }
+
+    /**
+     * Create an IdP with a fresh RSA 2048 key and self-signed certificate
+     */
+    public static SyntheticIdP create(String entityId) throws Exception {
+        return create(entityId, KeyType.RSA);
+    }
+
+    /**
+     * Create an RSA IdP with a random, unroutable entity ID
+     */
+    public static SyntheticIdP create() throws Exception {
+        return create(KeyType.RSA);
+    }
+
+    /**
+     * Create an IdP with a random, unroutable entity ID
+     */
+    public static SyntheticIdP create(KeyType keyType) throws Exception {
+        return create("urn:synthetic:idp:" + UUID.randomUUID(), keyType);
+    }
+
+    /**
+     * The same IdP (entity ID and key) stamping its messages with the given clock
+     */
+    public SyntheticIdP withClock(Clock clock) {
+        return new SyntheticIdP(entityId, credential, signatureAlgorithm, clock);
+    }
+
+    public String getEntityId() { return entityId; }
+    public X509Certificate getCertificate() { return credential.getEntityCertificate(); }
+
+    /**
+     * Descriptor holding only the public certificate, for trusting this IdP
+     */
+    public IdPDescriptor getDescriptor() { return descriptor; }
+
+    /**
+     * Build a successful Response with one assertion; both Response and Assertion are signed
+     */
+    public Response createResponse(String destination, String audience, String nameId, String inResponseTo) throws Exception {
+        return createResponse(destination, audience, nameId, inResponseTo, ResponseShape.defaults());
+    }
+
+    /**
+     * Build a successful Response of the given shape
+     */
+    public Response createResponse(String destination, String audience, String nameId, String inResponseTo,
+                                   ResponseShape shape) throws Exception {
+        DateTime now = new DateTime(clock.millis());
+
+        Response response = build(Response.DEFAULT_ELEMENT_NAME);
+        response.setID(newId());
+        response.setIssueInstant(now);
+        response.setDestination(destination);
+        response.setInResponseTo(inResponseTo);
+        response.setIssuer(createIssuer());
+        response.setStatus(createStatus());
+
+        Encrypter encrypter = shape.encryptFor != null ? createEncrypter(shape) : null;
+        String sharedWrappedKey = null;
+        for (int i = 0; i < shape.assertions; i++) {
+            Assertion assertion = build(Assertion.DEFAULT_ELEMENT_NAME);
+            assertion.setID(newId());
+            assertion.setIssueInstant(now);
+            assertion.setIssuer(createIssuer());
+            assertion.setSubject(createSubject(destination, nameId, inResponseTo, now));
+            assertion.setConditions(createConditions(audience, now));
+            assertion.getAuthnStatements().add(createAuthnStatement(now));
+            assertion.getAttributeStatements().add(createAttributeStatement(nameId, shape));
+            if (shape.signAssertions) {
+                sign(assertion);
+            }
+            if (encrypter == null) {
+                response.getAssertions().add(assertion);
+                continue;
+            }
+            EncryptedAssertion encrypted = encrypter.encrypt(assertion);
+            if (shape.shareDataKey) {
+                // Repeat the first wrapped key, as IdPs do that reuse one EncryptedKey per Response
+                CipherValue wrappedKey = encrypted.getEncryptedData().getKeyInfo().getEncryptedKeys().get(0)
+                        .getCipherData().getCipherValue();
+                if (sharedWrappedKey == null) {
+                    sharedWrappedKey = wrappedKey.getValue();
+                } else {
+                    wrappedKey.setValue(sharedWrappedKey);
+                }
+            }
+            response.getEncryptedAssertions().add(encrypted);
+        }
+
+        if (shape.signResponse) {
+            sign(response);
+        }
+        return response;
+    }
+
+    /**
+     * Build a signed LogoutRequest ending every session of a NameID
+     */
+    public LogoutRequest createLogoutRequest(String destination, String nameIdValue) throws Exception {
+        NameID nameId = build(NameID.DEFAULT_ELEMENT_NAME);
+        nameId.setValue(nameIdValue);
+        nameId.setFormat(NameIDType.EMAIL);
+
+        LogoutRequest request = build(LogoutRequest.DEFAULT_ELEMENT_NAME);
+        request.setID(newId());
+        request.setIssueInstant(new DateTime(clock.millis()));
+        request.setDestination(destination);
+        request.setIssuer(createIssuer());
+        request.setNameID(nameId);
+        sign(request);
+        return request;
+    }
+
+    /**
+     * Build a signed, successful LogoutResponse
+     */
+    public LogoutResponse createLogoutResponse(String destination, String inResponseTo) throws Exception {
+        LogoutResponse response = build(LogoutResponse.DEFAULT_ELEMENT_NAME);
+        response.setID(newId());
+        response.setIssueInstant(new DateTime(clock.millis()));
+        response.setDestination(destination);
+        response.setInResponseTo(inResponseTo);
+        response.setIssuer(createIssuer());
+        response.setStatus(createStatus());
+        sign(response);
+        return response;
+    }
+
+    /**
+     * Encode a Response for the HTTP-POST binding
+     */
+    public static String encodePost(Response response) throws Exception {
+        String xml = SerializeSupport.nodeToString(XMLObjectSupport.marshall(response));
+        return Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Content encryption (AES-128-GCM by default) with the data key wrapped for the SP certificate
+     * (RSA-OAEP by default)
+     */
+    private static Encrypter createEncrypter(ResponseShape shape) throws Exception {
+        DataEncryptionParameters dataParameters = new DataEncryptionParameters();
+        dataParameters.setAlgorithm(shape.dataEncryptionAlgorithm);
+        if (shape.shareDataKey) {
+            dataParameters.setEncryptionCredential(new BasicCredential(
+                    AlgorithmSupport.generateSymmetricKey(shape.dataEncryptionAlgorithm)));
+        }
+        KeyEncryptionParameters keyParameters = new KeyEncryptionParameters();
+        keyParameters.setAlgorithm(shape.keyTransportAlgorithm);
+        keyParameters.setEncryptionCredential(new BasicX509Credential(shape.encryptFor));
+        Encrypter encrypter = new Encrypter(dataParameters, keyParameters);
+        encrypter.setKeyPlacement(Encrypter.KeyPlacement.INLINE);
+        return encrypter;
+    }
+
+    private Issuer createIssuer() {
+        Issuer issuer = build(Issuer.DEFAULT_ELEMENT_NAME);
+        issuer.setValue(entityId);
+        return issuer;
+    }
+
+    private Status createStatus() {
+        Status status = build(Status.DEFAULT_ELEMENT_NAME);
+        StatusCode statusCode = build(StatusCode.DEFAULT_ELEMENT_NAME);
+        statusCode.setValue(StatusCode.SUCCESS);
+        status.setStatusCode(statusCode);
+        return status;
+    }
+
+    private Subject createSubject(String recipient, String nameIdValue, String inResponseTo, DateTime now) {
+        NameID nameId = build(NameID.DEFAULT_ELEMENT_NAME);
+        nameId.setValue(nameIdValue);
+        nameId.setFormat(NameIDType.EMAIL);
+
+        SubjectConfirmationData data = build(SubjectConfirmationData.DEFAULT_ELEMENT_NAME);
+        data.setRecipient(recipient);
+        data.setInResponseTo(inResponseTo);
+        data.setNotOnOrAfter(now.plusMinutes(5));
+
+        SubjectConfirmation confirmation = build(SubjectConfirmation.DEFAULT_ELEMENT_NAME);
+        confirmation.setMethod(SubjectConfirmation.METHOD_BEARER);
+        confirmation.setSubjectConfirmationData(data);
+
+        Subject subject = build(Subject.DEFAULT_ELEMENT_NAME);
+        subject.setNameID(nameId);
+        subject.getSubjectConfirmations().add(confirmation);
+        return subject;
+    }
+
+    private Conditions createConditions(String audienceURI, DateTime now) {
+        Audience audience = build(Audience.DEFAULT_ELEMENT_NAME);
+        audience.setAudienceURI(audienceURI);
+        AudienceRestriction restriction = build(AudienceRestriction.DEFAULT_ELEMENT_NAME);
+        restriction.getAudiences().add(audience);
+
+        Conditions conditions = build(Conditions.DEFAULT_ELEMENT_NAME);
+        conditions.setNotBefore(now.minusMinutes(1));
+        conditions.setNotOnOrAfter(now.plusMinutes(5));
+        conditions.getAudienceRestrictions().add(restriction);
+        return conditions;
+    }
+
+    private AuthnStatement createAuthnStatement(DateTime now) {
+        AuthnContextClassRef classRef = build(AuthnContextClassRef.DEFAULT_ELEMENT_NAME);
+        classRef.setAuthnContextClassRef(AuthnContext.PPT_AUTHN_CTX);
+        AuthnContext context = build(AuthnContext.DEFAULT_ELEMENT_NAME);
+        context.setAuthnContextClassRef(classRef);
+
+        AuthnStatement statement = build(AuthnStatement.DEFAULT_ELEMENT_NAME);
+        statement.setAuthnInstant(now);
+        statement.setSessionIndex(newId());
+        statement.setAuthnContext(context);
+        return statement;
+    }
+
+    private AttributeStatement createAttributeStatement(String nameId, ResponseShape shape) {
+        AttributeStatement statement = build(AttributeStatement.DEFAULT_ELEMENT_NAME);
+        String[][] standard = {{"email", nameId}, {"firstName", "Synthetic"}, {"lastName", "User"}};
+        for (int i = 0; i < shape.attributesPerAssertion; i++) {
+            String name = i < standard.length ? standard[i][0] : "attribute" + i;
+            String value = i < standard.length ? standard[i][1] : "value" + i;
+            statement.getAttributes().add(createAttribute(name, pad(value, shape.attributeValueSize)));
+        }
+        return statement;
+    }
+
+    /**
+     * Pad a value to the requested length with directory-style text, so it compresses realistically
+     */
+    private static String pad(String value, int length) {
+        if (length <= value.length()) {
+            return value;
+        }
+        return value + directoryText(31L * value.hashCode() + length, length - value.length());
+    }
+
+    /**
+     * Text shaped like directory attribute values: DN components, names, department and group words
+     * mixed with numbers and identifiers. DEFLATE shrinks it about 2.5x, where a fixed character cycle
+     * shrinks over 100x. The same seed always gives the same text.
+     */
+    public static String directoryText(long seed, int length) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    text.append("cn=").append(WORDS[random.nextInt(WORDS.length)]).append('-')
+                            .append(WORDS[random.nextInt(WORDS.length)]).append(",ou=groups,dc=example,dc=org");
+                    break;
+                case 1:
+                    text.append(random.nextInt(1000000));
+                    break;
+                case 2:
+                    text.append(Long.toHexString(random.nextLong()));
+                    break;
+                default:
+                    String word = WORDS[random.nextInt(WORDS.length)];
+                    text.append(random.nextBoolean() ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+                    break;
+            }
+            text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    private Attribute createAttribute(String name, String value) {
+        XMLObjectBuilder<?> stringBuilder = XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilder(XSString.TYPE_NAME);
+        XSString attributeValue = (XSString) stringBuilder.buildObject(AttributeValue.DEFAULT_ELEMENT_NAME, XSString.TYPE_NAME);
+        attributeValue.setValue(value);
+
+        Attribute attribute = build(Attribute.DEFAULT_ELEMENT_NAME);
+        attribute.setName(name);
+        attribute.setNameFormat(Attribute.BASIC);
+        attribute.getAttributeValues().add(attributeValue);
+        return attribute;
+    }
+
+    /**
+     * Sign an object in place (enveloped signature, exclusive C14N, SHA-256 digest)
+     */
+    private void sign(SignableSAMLObject object) throws Exception {
+        Signature signature = build(Signature.DEFAULT_ELEMENT_NAME);
+        signature.setSigningCredential(credential);
+        signature.setSignatureAlgorithm(signatureAlgorithm);
+        signature.setCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+        object.setSignature(signature);
+        for (ContentReference reference : signature.getContentReferences()) {
+            if (reference instanceof SAMLObjectContentReference) {
+                ((SAMLObjectContentReference) reference).setDigestAlgorithm(SignatureConstants.ALGO_ID_DIGEST_SHA256);
+            }
+        }
+        XMLObjectSupport.marshall(object);
+        Signer.signObject(signature);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T build(javax.xml.namespace.QName name) {
+        return (T) XMLObjectSupport.buildXMLObject(name);
+    }
+
+    private static String newId() {
+        return "_" + UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * Shape of a generated Response: assertion and attribute counts, value size and signing
+     */
+    public static final class ResponseShape {
+
+        private int assertions = 1;
+        private int attributesPerAssertion = 3;
+        private int attributeValueSize;
+        private boolean signResponse = true;
+        private boolean signAssertions = true;
+        private X509Certificate encryptFor;
+        private boolean shareDataKey;
+        private String dataEncryptionAlgorithm = EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128_GCM;
+        private String keyTransportAlgorithm = EncryptionConstants.ALGO_ID_KEYTRANSPORT_RSAOAEP;
+
+        private ResponseShape() {
+        }
+
+        /**
+         * One assertion with email, firstName and lastName; Response and Assertion signed
+         */
+        public static ResponseShape defaults() {
+            return new ResponseShape();
+        }
+
+        public ResponseShape assertions(int assertions) { this.assertions = assertions; return this; }
+        public ResponseShape attributesPerAssertion(int attributes) { this.attributesPerAssertion = attributes; return this; }
+
+        /**
+         * Minimum length of each attribute value; 0 keeps the natural values
+         */
+        public ResponseShape attributeValueSize(int size) { this.attributeValueSize = size; return this; }
+        public ResponseShape signResponse(boolean signResponse) { this.signResponse = signResponse; return this; }
+        public ResponseShape signAssertions(boolean signAssertions) { this.signAssertions = signAssertions; return this; }
+
+        /**
+         * Encrypt each (signed) assertion for the SP holding this certificate's key
+         */
+        public ResponseShape encryptFor(X509Certificate spCertificate) { this.encryptFor = spCertificate; return this; }
+
+        /**
+         * Encrypt all assertions under one data key, repeating the same wrapped EncryptedKey
+         */
+        public ResponseShape shareDataKey(boolean shareDataKey) { this.shareDataKey = shareDataKey; return this; }
+
+        /**
+         * EncryptionMethod of the encrypted assertions and of their wrapped data keys
+         */
+        public ResponseShape encryptionAlgorithms(String dataEncryption, String keyTransport) {
+            this.dataEncryptionAlgorithm = dataEncryption;
+            this.keyTransportAlgorithm = keyTransport;
+            return this;
+        }
+    }
+
+    /**
+     * Self-signed certificate for a key pair, valid from yesterday for a year
+     */
+    public static X509Certificate selfSign(KeyPair keyPair, String signatureAlgorithm) throws Exception {
+        X500Name subject = new X500Name("CN=synthetic-idp");
+        Date notBefore = new Date(System.currentTimeMillis() - 86400000L);
+        Date notAfter = new Date(System.currentTimeMillis() + 365L * 86400000L);
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(subject,
+                BigInteger.valueOf(System.nanoTime()), notBefore, notAfter, subject, keyPair.getPublic());
+        return new JcaX509CertificateConverter().getCertificate(
+                builder.build(new JcaContentSignerBuilder(signatureAlgorithm).build(keyPair.getPrivate())));
+    }
+}
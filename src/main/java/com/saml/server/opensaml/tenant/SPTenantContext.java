@@ -0,0 +1,139 @@
+package com.saml.server.opensaml.tenant;
+
+import com.saml.server.opensaml.metadata.IdPDescriptor;
+import com.saml.server.opensaml.service.AssertionDecrypter;
+import org.opensaml.security.credential.Credential;
+
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+/**
+ * Immutable, fully resolved Service Provider configuration for one tenant.
+ * Built once at startup so request handling only reads final fields.
+ */
+public final class SPTenantContext {
+
+    public static final String DEFAULT_TENANT_ID = "default";
+
+    private final String tenantId;
+    private final String entityId;
+    private final String assertionConsumerServiceURL;
+    private final String singleLogoutServiceURL;
+    private final String idpEntityId;
+    private final String idpSingleSignOnServiceURL;
+    private final String idpSingleLogoutServiceURL;
+    private final String nameIdFormat;
+    private final String protocolBinding;
+    private final String authnContextClassRef;
+    private final X509Certificate spCertificate;
+    private final PrivateKey spPrivateKey;
+    private final Credential spCredential;
+    private final AssertionDecrypter decrypter;
+    private final IdPDescriptor pinnedIdP;
+    private final boolean synthetic;
+
+    private SPTenantContext(Builder builder) {
+        this.tenantId = builder.tenantId;
+        this.entityId = builder.entityId;
+        this.assertionConsumerServiceURL = builder.assertionConsumerServiceURL;
+        this.singleLogoutServiceURL = builder.singleLogoutServiceURL;
+        this.idpEntityId = builder.idpEntityId;
+        this.idpSingleSignOnServiceURL = builder.idpSingleSignOnServiceURL;
+        this.idpSingleLogoutServiceURL = builder.idpSingleLogoutServiceURL;
+        this.nameIdFormat = builder.nameIdFormat;
+        this.protocolBinding = builder.protocolBinding;
+        this.authnContextClassRef = builder.authnContextClassRef;
+        this.spCertificate = builder.spCertificate;
+        this.spPrivateKey = builder.spPrivateKey;
+        this.spCredential = builder.spCredential;
+        this.decrypter = builder.decrypter;
+        this.pinnedIdP = builder.pinnedIdP;
+        this.synthetic = builder.synthetic;
+    }
+
+    public String getTenantId() { return tenantId; }
+    public String getEntityId() { return entityId; }
+    public String getAssertionConsumerServiceURL() { return assertionConsumerServiceURL; }
+    public String getSingleLogoutServiceURL() { return singleLogoutServiceURL; }
+    public String getIdpEntityId() { return idpEntityId; }
+    public String getIdpSingleSignOnServiceURL() { return idpSingleSignOnServiceURL; }
+    public String getIdpSingleLogoutServiceURL() { return idpSingleLogoutServiceURL; }
+    public String getNameIdFormat() { return nameIdFormat; }
+    public String getProtocolBinding() { return protocolBinding; }
+    public String getAuthnContextClassRef() { return authnContextClassRef; }
+    public X509Certificate getSpCertificate() { return spCertificate; }
+    public PrivateKey getSpPrivateKey() { return spPrivateKey; }
+
+    /**
+     * SP signing/decryption credential, or null when no key pair is configured
+     */
+    public Credential getSpCredential() { return spCredential; }
+
+    /**
+     * Decrypter over the SP credential, or null when no key pair is configured
+     */
+    public AssertionDecrypter getDecrypter() { return decrypter; }
+
+    /**
+     * IdP this tenant exclusively trusts instead of the metadata resolver, or null. Its keys are
+     * trusted as given, without PKIX path validation, so it is only set in code (warm-up and
+     * benchmark tenants) and never from configuration.
+     */
+    public IdPDescriptor getPinnedIdP() { return pinnedIdP; }
+
+    /**
+     * Whether this tenant only carries generated traffic (warm-up) that must stay out of the ACS
+     * timers, rejection counters, slow-request log and Flight Recorder events
+     */
+    public boolean isSynthetic() { return synthetic; }
+
+    public static Builder builder(String tenantId) {
+        return new Builder(tenantId);
+    }
+
+    /**
+     * Builder for {@link SPTenantContext}
+     */
+    public static final class Builder {
+        private final String tenantId;
+        private String entityId;
+        private String assertionConsumerServiceURL;
+        private String singleLogoutServiceURL;
+        private String idpEntityId;
+        private String idpSingleSignOnServiceURL;
+        private String idpSingleLogoutServiceURL;
+        private String nameIdFormat;
+        private String protocolBinding = "urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST";
+        private String authnContextClassRef = "urn:oasis:names:tc:SAML:2.0:ac:classes:PasswordProtectedTransport";
+        private X509Certificate spCertificate;
+        private PrivateKey spPrivateKey;
+        private Credential spCredential;
+        private AssertionDecrypter decrypter;
+        private IdPDescriptor pinnedIdP;
+        private boolean synthetic;
+
+        private Builder(String tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        public Builder entityId(String entityId) { this.entityId = entityId; return this; }
+        public Builder assertionConsumerServiceURL(String url) { this.assertionConsumerServiceURL = url; return this; }
+        public Builder singleLogoutServiceURL(String url) { this.singleLogoutServiceURL = url; return this; }
+        public Builder idpEntityId(String idpEntityId) { this.idpEntityId = idpEntityId; return this; }
+        public Builder idpSingleSignOnServiceURL(String url) { this.idpSingleSignOnServiceURL = url; return this; }
+        public Builder idpSingleLogoutServiceURL(String url) { this.idpSingleLogoutServiceURL = url; return this; }
+        public Builder nameIdFormat(String nameIdFormat) { this.nameIdFormat = nameIdFormat; return this; }
+        public Builder protocolBinding(String protocolBinding) { this.protocolBinding = protocolBinding; return this; }
+        public Builder authnContextClassRef(String classRef) { this.authnContextClassRef = classRef; return this; }
+        public Builder spCertificate(X509Certificate spCertificate) { this.spCertificate = spCertificate; return this; }
+        public Builder spPrivateKey(PrivateKey spPrivateKey) { this.spPrivateKey = spPrivateKey; return this; }
+        public Builder spCredential(Credential spCredential) { this.spCredential = spCredential; return this; }
+        public Builder decrypter(AssertionDecrypter decrypter) { this.decrypter = decrypter; return this; }
+        public Builder pinnedIdP(IdPDescriptor pinnedIdP) { this.pinnedIdP = pinnedIdP; return this; }
+        public Builder synthetic(boolean synthetic) { this.synthetic = synthetic; return this; }
+
+        public SPTenantContext build() {
+            return new SPTenantContext(this);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.saml.server.opensaml.tenant;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.metadata.IdPDescriptor;
+import com.saml.server.opensaml.metadata.IdPMetadataResolver;
+import com.saml.server.opensaml.service.AssertionDecrypter;
+import com.saml.server.opensaml.service.SAMLUtilityService;
+import net.shibboleth.utilities.java.support.xml.ParserPool;
+import org.opensaml.security.x509.BasicX509Credential;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Registry of the SP tenants served by this JVM.
+ * Every tenant is compiled into an immutable {@link SPTenantContext} at startup and
+ * resolved per request with a single hash lookup on the Host header or path prefix.
+ */
+@Service
+public class SPTenantRegistry {
+
+    public static final String REQUEST_ATTRIBUTE = SPTenantRegistry.class.getName() + ".TENANT";
+
+    private static final Logger log = LoggerFactory.getLogger(SPTenantRegistry.class);
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private SAMLUtilityService utilityService;
+
+    @Autowired
+    private IdPMetadataResolver idpMetadataResolver;
+
+    @Autowired
+    private ParserPool parserPool;
+
+    private SPTenantContext defaultTenant;
+    private Map<String, SPTenantContext> tenantsById;
+    private Map<String, SPTenantContext> tenantsByHost;
+    private Map<String, SPTenantContext> tenantsByPathPrefix;
+
+    @PostConstruct
+    public void init() {
+        defaultTenant = buildDefaultTenant();
+
+        Map<String, SPTenantContext> byId = new LinkedHashMap<>();
+        Map<String, SPTenantContext> byHost = new HashMap<>();
+        Map<String, SPTenantContext> byPathPrefix = new HashMap<>();
+        byId.put(defaultTenant.getTenantId(), defaultTenant);
+
+        for (SAMLProperties.Tenant config : samlProperties.getTenants()) {
+            if (config.getId() == null || byId.containsKey(config.getId())) {
+                throw new IllegalStateException("SAML tenants need a unique id, got: " + config.getId());
+            }
+            SPTenantContext tenant = buildTenant(config);
+            byId.put(tenant.getTenantId(), tenant);
+            for (String host : config.getHosts()) {
+                byHost.put(host.toLowerCase(Locale.ROOT), tenant);
+            }
+            if (config.getPathPrefix() != null && !config.getPathPrefix().isEmpty()) {
+                byPathPrefix.put(trimSlashes(config.getPathPrefix()), tenant);
+            }
+        }
+
+        tenantsById = Collections.unmodifiableMap(byId);
+        tenantsByHost = Collections.unmodifiableMap(byHost);
+        tenantsByPathPrefix = Collections.unmodifiableMap(byPathPrefix);
+    }
+
+    public SPTenantContext getDefaultTenant() {
+        return defaultTenant;
+    }
+
+    public SPTenantContext getTenant(String tenantId) {
+        return tenantsById.get(tenantId);
+    }
+
+    public Collection<SPTenantContext> getTenants() {
+        return tenantsById.values();
+    }
+
+    /**
+     * Resolve a tenant by the request Host (server name), or null
+     */
+    public SPTenantContext resolveByHost(String serverName) {
+        if (serverName == null || tenantsByHost.isEmpty()) {
+            return null;
+        }
+        return tenantsByHost.get(serverName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Resolve a tenant by the first path segment, or null
+     */
+    public SPTenantContext resolveByPathPrefix(String prefix) {
+        return tenantsByPathPrefix.isEmpty() ? null : tenantsByPathPrefix.get(prefix);
+    }
+
+    /**
+     * Tenant resolved for the current request by {@link TenantResolutionFilter}
+     */
+    public SPTenantContext fromRequest(HttpServletRequest request) {
+        Object tenant = request.getAttribute(REQUEST_ATTRIBUTE);
+        return tenant instanceof SPTenantContext ? (SPTenantContext) tenant : defaultTenant;
+    }
+
+    /**
+     * Resolve the IdP that issued a message to a tenant, or null when the tenant does not trust
+     * it. A pinned IdP excludes every other; otherwise the issuer must be the tenant's configured
+     * IdP, when one is set, and trusted by the metadata resolver.
+     */
+    public IdPDescriptor resolveIdP(SPTenantContext tenant, String issuer) {
+        if (issuer == null) {
+            return null;
+        }
+        IdPDescriptor pinned = tenant.getPinnedIdP();
+        if (pinned != null) {
+            return pinned.getEntityId().equals(issuer) ? pinned : null;
+        }
+        String expected = tenant.getIdpEntityId();
+        if (expected != null && !expected.isEmpty() && !expected.equals(issuer)) {
+            return null;
+        }
+        return idpMetadataResolver.resolve(issuer);
+    }
+
+    /**
+     * IdP SSO endpoint for a tenant, falling back to the IdP's metadata
+     */
+    public String idpSingleSignOnServiceURL(SPTenantContext tenant) {
+        if (tenant.getIdpSingleSignOnServiceURL() != null) {
+            return tenant.getIdpSingleSignOnServiceURL();
+        }
+        IdPDescriptor idp = idpMetadataResolver.resolve(tenant.getIdpEntityId());
+        return idp != null ? idp.getSingleSignOnServiceURL() : null;
+    }
+
+    /**
+     * IdP SLO endpoint for a tenant, falling back to the IdP's metadata
+     */
+    public String idpSingleLogoutServiceURL(SPTenantContext tenant) {
+        if (tenant.getIdpSingleLogoutServiceURL() != null) {
+            return tenant.getIdpSingleLogoutServiceURL();
+        }
+        IdPDescriptor idp = idpMetadataResolver.resolve(tenant.getIdpEntityId());
+        return idp != null ? idp.getSingleLogoutServiceURL() : null;
+    }
+
+    private SPTenantContext buildDefaultTenant() {
+        SPTenantContext.Builder builder = SPTenantContext.builder(SPTenantContext.DEFAULT_TENANT_ID)
+                .entityId(samlProperties.getEntityId())
+                .assertionConsumerServiceURL(samlProperties.getAssertionConsumerServiceURL())
+                .singleLogoutServiceURL(samlProperties.getSingleLogoutServiceURL())
+                .idpEntityId(samlProperties.getIdpEntityId())
+                .idpSingleSignOnServiceURL(samlProperties.getIdpSingleSignOnServiceURL())
+                .idpSingleLogoutServiceURL(samlProperties.getIdpSingleLogoutServiceURL())
+                .nameIdFormat(samlProperties.getNameIdFormat());
+        addKeyMaterial(builder, SPTenantContext.DEFAULT_TENANT_ID,
+                samlProperties.getSpX509Certificate(), samlProperties.getSpPrivateKey());
+        return builder.build();
+    }
+
+    private SPTenantContext buildTenant(SAMLProperties.Tenant config) {
+        SPTenantContext.Builder builder = SPTenantContext.builder(config.getId())
+                .entityId(orDefault(config.getEntityId(), samlProperties.getEntityId()))
+                .assertionConsumerServiceURL(orDefault(config.getAssertionConsumerServiceURL(), samlProperties.getAssertionConsumerServiceURL()))
+                .singleLogoutServiceURL(orDefault(config.getSingleLogoutServiceURL(), samlProperties.getSingleLogoutServiceURL()))
+                .idpEntityId(orDefault(config.getIdpEntityId(), samlProperties.getIdpEntityId()))
+                .idpSingleSignOnServiceURL(config.getIdpSingleSignOnServiceURL())
+                .idpSingleLogoutServiceURL(config.getIdpSingleLogoutServiceURL())
+                .nameIdFormat(orDefault(config.getNameIdFormat(), samlProperties.getNameIdFormat()));
+        addKeyMaterial(builder, config.getId(),
+                orDefault(config.getSpX509Certificate(), samlProperties.getSpX509Certificate()),
+                orDefault(config.getSpPrivateKey(), samlProperties.getSpPrivateKey()));
+        return builder.build();
+    }
+
+    /**
+     * Parse the SP key pair once so that signing and decryption never touch PEM on the request path
+     */
+    private void addKeyMaterial(SPTenantContext.Builder builder, String tenantId, String certificate, String privateKey) {
+        X509Certificate cert = null;
+        PrivateKey key = null;
+        try {
+            if (certificate != null && !certificate.trim().isEmpty()) {
+                cert = utilityService.createCertificateFromString(certificate);
+            }
+            if (privateKey != null && !privateKey.trim().isEmpty()) {
+                key = utilityService.createPrivateKeyFromString(privateKey);
+            }
+        } catch (Exception e) {
+            log.warn("SP key material for tenant {} could not be parsed; signing and decryption are unavailable", tenantId);
+        }
+        builder.spCertificate(cert).spPrivateKey(key);
+        if (cert != null && key != null) {
+            BasicX509Credential credential = new BasicX509Credential(cert, key);
+            builder.spCredential(credential).decrypter(AssertionDecrypter.create(credential, parserPool,
+                    samlProperties.getDecryption().getAllowedAlgorithms()));
+        } else if (samlProperties.isAuthnRequestsSigned()) {
+            // Signing is requested but cannot happen; say so now rather than on the IdP's side
+            log.warn("saml.authn-requests-signed is set but tenant {} has no SP {}; its AuthnRequests and "
+                    + "LogoutRequests go out unsigned over {}", tenantId,
+                    key == null ? "private key" : "certificate", key == null ? "both bindings" : "HTTP-POST");
+        }
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value != null && !value.isEmpty() ? value : fallback;
+    }
+
+    private static String trimSlashes(String prefix) {
+        int start = 0;
+        int end = prefix.length();
+        while (start < end && prefix.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && prefix.charAt(end - 1) == '/') {
+            end--;
+        }
+        return prefix.substring(start, end);
+    }
+}
@@ -0,0 +1,57 @@
+package com.saml.server.opensaml.tenant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Resolves the SP tenant for each request and stores it as a request attribute.
+ * Host-based tenants are matched first; path-prefixed requests such as
+ * {@code /acme/saml/acs} are forwarded to {@code /saml/acs} with the tenant attached.
+ */
+@Component
+@Order(2)
+public class TenantResolutionFilter implements Filter {
+
+    @Autowired
+    private SPTenantRegistry tenantRegistry;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+
+        SPTenantContext tenant = tenantRegistry.resolveByHost(httpRequest.getServerName());
+        if (tenant == null) {
+            String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+            int slash = path.indexOf('/', 1);
+            if (slash > 1) {
+                tenant = tenantRegistry.resolveByPathPrefix(path.substring(1, slash));
+                if (tenant != null) {
+                    request.setAttribute(SPTenantRegistry.REQUEST_ATTRIBUTE, tenant);
+                    request.getRequestDispatcher(path.substring(slash)).forward(request, response);
+                    return;
+                }
+            }
+        }
+
+        request.setAttribute(SPTenantRegistry.REQUEST_ATTRIBUTE,
+                tenant != null ? tenant : tenantRegistry.getDefaultTenant());
+        chain.doFilter(request, response);
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        // Initialization if needed
+    }
+
+    @Override
+    public void destroy() {
+        // Cleanup if needed
+    }
+}
@@ -0,0 +1,234 @@
+package com.saml.server.opensaml;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.SAMLSecurityService;
+import com.saml.server.opensaml.service.SAMLUtilityService;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opensaml.saml.saml2.core.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Bytes allocated per request on the hot SAML endpoints, checked against the budgets in
+ * {@code allocation-budgets.properties}.
+ *
+ * The JDK's own classes allocate differently from one release to the next, so budgets are kept
+ * per Java version as {@code <path>.<java.specification.version>}, e.g. {@code acs.post.1.8}.
+ * A path without a budget for the running Java version is skipped.
+ *
+ * Requests run through MockMvc on the test thread, so the thread's allocation counter sees
+ * the whole filter chain, controller and services. Each path is warmed up so the JIT has
+ * settled, then measured over several rounds; the median round is compared to the budget.
+ *
+ * After an intended change in allocation, rewrite the running Java version's budgets (measured
+ * value plus headroom):
+ *
+ * <pre>
+ * ./mvnw test -Dtest=AllocationBudgetTests -Dallocation.record=true
+ * </pre>
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = OpensamlApplication.class, properties = {"saml.warmup.enabled=false", "logging.level.root=WARN",
+        "saml.in-response-to.allow-unsolicited=true"})
+@ContextConfiguration(initializers = SyntheticIdPInitializer.class)
+@AutoConfigureMockMvc
+public class AllocationBudgetTests {
+
+    private static final String BUDGETS = "allocation-budgets.properties";
+    private static final Path BUDGETS_SOURCE = Paths.get("src", "test", "resources", BUDGETS);
+    private static final boolean RECORD = Boolean.getBoolean("allocation.record");
+    private static final double RECORD_HEADROOM = 1.15;
+    private static final String JAVA_VERSION = System.getProperty("java.specification.version");
+
+    private static final int WARMUP = 300;
+    private static final int ROUNDS = 5;
+    private static final int OPS_PER_ROUND = 40;
+    private static final String USER = "alloc@test.invalid";
+
+    private static final Map<String, Long> recorded = new TreeMap<>();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private SAMLUtilityService utilityService;
+
+    @Autowired
+    private SAMLSecurityService securityService;
+
+    private com.sun.management.ThreadMXBean threads;
+    private Properties budgets;
+
+    @BeforeClass
+    public static void checkSupport() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue("Per-thread allocation counters are not available on this JVM",
+                bean instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        budgets = new Properties();
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(BUDGETS)) {
+            assertNotNull(BUDGETS + " is missing from the test classpath", in);
+            budgets.load(in);
+        }
+    }
+
+    @AfterClass
+    public static void writeBudgets() throws IOException {
+        if (!RECORD || recorded.isEmpty()) {
+            return;
+        }
+        Properties updated = new Properties();
+        if (Files.exists(BUDGETS_SOURCE)) {
+            try (InputStream in = Files.newInputStream(BUDGETS_SOURCE)) {
+                updated.load(in);
+            }
+        }
+        for (Map.Entry<String, Long> entry : recorded.entrySet()) {
+            updated.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        try (OutputStream out = Files.newOutputStream(BUDGETS_SOURCE)) {
+            updated.store(out, "Bytes allocated per request on the calling thread, keyed by path and "
+                    + "java.specification.version, including " + (int) Math.round((RECORD_HEADROOM - 1) * 100) + "% headroom");
+        }
+    }
+
+    @Test
+    public void login() throws Exception {
+        RequestBuilder request = get("/saml/login").param("relayState", "budget");
+        checkBudget("login", repeat(request));
+    }
+
+    @Test
+    public void acsPost() throws Exception {
+        RequestBuilder[] requests = new RequestBuilder[totalOps()];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = post("/saml/acs")
+                    .param("SAMLResponse", SyntheticIdP.encodePost(createResponse()))
+                    .param("RelayState", "budget");
+        }
+        checkBudget("acs.post", requests);
+        securityService.invalidateSessionsByNameId(USER);
+    }
+
+    @Test
+    public void acsRedirect() throws Exception {
+        RequestBuilder[] requests = new RequestBuilder[totalOps()];
+        for (int i = 0; i < requests.length; i++) {
+            String encoded = utilityService.compressAndEncode(utilityService.serializeSAMLObject(createResponse()));
+            requests[i] = get("/saml/acs")
+                    .param("SAMLResponse", encoded)
+                    .param("RelayState", "budget");
+        }
+        checkBudget("acs.redirect", requests);
+        securityService.invalidateSessionsByNameId(USER);
+    }
+
+    @Test
+    public void logout() throws Exception {
+        RequestBuilder request = get("/saml/logout").param("nameId", USER).param("relayState", "budget");
+        checkBudget("logout", repeat(request));
+    }
+
+    private Response createResponse() throws Exception {
+        return SyntheticIdPInitializer.idp().createResponse(samlProperties.getAssertionConsumerServiceURL(), samlProperties.getEntityId(), USER, null);
+    }
+
+    /**
+     * Warm up, measure, then compare the median round against the budget (or record it)
+     */
+    private void checkBudget(String path, RequestBuilder[] requests) throws Exception {
+        int next = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            expectSuccess(path, mockMvc.perform(requests[next++]).andReturn());
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long[] perOp = new long[ROUNDS];
+        MvcResult[] results = new MvcResult[OPS_PER_ROUND];
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < OPS_PER_ROUND; i++) {
+                results[i] = mockMvc.perform(requests[next++]).andReturn();
+            }
+            perOp[round] = (threads.getThreadAllocatedBytes(threadId) - before) / OPS_PER_ROUND;
+            // Checked outside the measured window so assertions do not count against the budget
+            for (MvcResult result : results) {
+                expectSuccess(path, result);
+            }
+        }
+        Arrays.sort(perOp);
+        long measured = perOp[ROUNDS / 2];
+
+        if (RECORD) {
+            long budget = (long) Math.ceil(measured * RECORD_HEADROOM / 1024) * 1024;
+            recorded.put(path + "." + JAVA_VERSION, budget);
+            System.out.printf("allocation budget %s: measured %d B/op, recording %d B/op%n", path, measured, budget);
+            return;
+        }
+        String budget = budgets.getProperty(path + "." + JAVA_VERSION);
+        assumeTrue("No allocation budget for " + path + " on Java " + JAVA_VERSION
+                + "; run with -Dallocation.record=true to record one", budget != null);
+        assertTrue(String.format("%s allocated %d B/op on Java %s, budget is %s B/op (rounds: %s)", path, measured,
+                JAVA_VERSION, budget, Arrays.toString(perOp)), measured <= Long.parseLong(budget.trim()));
+    }
+
+    private static void expectSuccess(String path, MvcResult result) throws Exception {
+        if (result.getResponse().getStatus() == 302) {
+            // HTTP-Redirect binding response from login and logout
+            assertNotNull(path + " redirected without a Location", result.getResponse().getHeader("Location"));
+            return;
+        }
+        assertEquals(path + " failed: " + result.getResponse().getContentAsString(), 200, result.getResponse().getStatus());
+        assertTrue(path + " failed: " + result.getResponse().getContentAsString(),
+                result.getResponse().getContentAsString().contains("\"success\":true"));
+    }
+
+    private static RequestBuilder[] repeat(RequestBuilder request) {
+        RequestBuilder[] requests = new RequestBuilder[totalOps()];
+        Arrays.fill(requests, request);
+        return requests;
+    }
+
+    private static int totalOps() {
+        return WARMUP + ROUNDS * OPS_PER_ROUND;
+    }
+}
@@ -0,0 +1,109 @@
+package com.saml.server.opensaml;
+
+import com.saml.server.opensaml.config.OpenSAMLInitializer;
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.AssertionDecrypter;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.EncryptedAssertion;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.security.x509.BasicX509Credential;
+import org.opensaml.xmlsec.encryption.support.DecryptionException;
+import org.opensaml.xmlsec.encryption.support.EncryptionConstants;
+import org.opensaml.xmlsec.signature.support.SignatureValidator;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trip through {@link AssertionDecrypter}: a synthetic IdP encrypts signed assertions for
+ * an SP key, and the decrypted assertions must unmarshall, carry their content and still verify.
+ * Algorithms outside the default whitelist are refused.
+ */
+public class AssertionDecrypterTests {
+
+    private static final String SP = "https://sp.example.org";
+
+    private static BasicParserPool parserPool;
+    private static BasicX509Credential spCredential;
+    private static SyntheticIdP idp;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        OpenSAMLInitializer.initialize(OpenSAMLInitializer.MODE_FULL);
+        parserPool = new BasicParserPool();
+        parserPool.initialize();
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        X509Certificate certificate = SyntheticIdP.selfSign(keyPair, "SHA256withRSA");
+        spCredential = new BasicX509Credential(certificate, keyPair.getPrivate());
+        idp = SyntheticIdP.create();
+    }
+
+    @Test
+    public void decryptsSignedAssertionsSharingOneDataKey() throws Exception {
+        Response response = parse(idp.createResponse(SP + "/saml/acs", SP, "user@example.org", null,
+                SyntheticIdP.ResponseShape.defaults().assertions(2).shareDataKey(true)
+                        .encryptFor(spCredential.getEntityCertificate())));
+        assertEquals(2, response.getEncryptedAssertions().size());
+
+        AssertionDecrypter decrypter = decrypter();
+        Map<String, Key> dataKeys = new HashMap<>();
+        for (EncryptedAssertion encrypted : response.getEncryptedAssertions()) {
+            Assertion assertion = decrypter.decrypt(encrypted, dataKeys);
+            assertEquals(idp.getEntityId(), assertion.getIssuer().getValue());
+            assertEquals("user@example.org", assertion.getSubject().getNameID().getValue());
+            assertSame(assertion.getDOM().getOwnerDocument().getDocumentElement(), assertion.getDOM());
+            assertNotNull(assertion.getSignature());
+            SignatureValidator.validate(assertion.getSignature(), new BasicX509Credential(idp.getCertificate()));
+        }
+        assertEquals("one data key unwrapped for the whole Response", 1, dataKeys.size());
+    }
+
+    @Test
+    public void rejectsAlgorithmsOutsideTheWhitelist() throws Exception {
+        assertRejected(EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128, EncryptionConstants.ALGO_ID_KEYTRANSPORT_RSAOAEP);
+        assertRejected(EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128_GCM, EncryptionConstants.ALGO_ID_KEYTRANSPORT_RSA15);
+    }
+
+    private void assertRejected(String dataEncryption, String keyTransport) throws Exception {
+        Response response = parse(idp.createResponse(SP + "/saml/acs", SP, "user@example.org", null,
+                SyntheticIdP.ResponseShape.defaults().encryptFor(spCredential.getEntityCertificate())
+                        .encryptionAlgorithms(dataEncryption, keyTransport)));
+        try {
+            decrypter().decrypt(response.getEncryptedAssertions().get(0), new HashMap<>());
+            fail(dataEncryption + " with " + keyTransport + " was decrypted");
+        } catch (DecryptionException expected) {
+            // Refused by the whitelist
+        }
+    }
+
+    private static AssertionDecrypter decrypter() {
+        return AssertionDecrypter.create(spCredential, parserPool,
+                new SAMLProperties().getDecryption().getAllowedAlgorithms());
+    }
+
+    private static Response parse(Response generated) throws Exception {
+        byte[] xml = Base64.getDecoder().decode(SyntheticIdP.encodePost(generated));
+        Element element = parserPool.parse(new ByteArrayInputStream(xml)).getDocumentElement();
+        return (Response) XMLObjectSupport.getUnmarshaller(element).unmarshall(element);
+    }
+}
@@ -0,0 +1,93 @@
+package com.saml.server.opensaml;
+
+import com.saml.server.opensaml.config.OpenSAMLInitializer;
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.AttributeMapper;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * {@link AttributeMapper} tables: which IdPs get mapped attributes and which get them all passed through.
+ */
+public class AttributeMapperTests {
+
+    private static final String SP = "https://sp.example.org";
+    private static final String USER = "user@example.org";
+    private static final String IDP_A = "https://idp-a.example.org";
+    private static final String IDP_B = "https://idp-b.example.org";
+
+    private static List<Assertion> assertions;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        OpenSAMLInitializer.initialize(OpenSAMLInitializer.MODE_FULL);
+        assertions = SyntheticIdP.create().createResponse(SP + "/saml/acs", SP, USER, null).getAssertions();
+    }
+
+    @Test
+    public void passesEverythingThroughWithoutMappings() {
+        Map<String, Object> attributes = mapper().map(IDP_A, assertions, null);
+        assertEquals(USER, attributes.get("email"));
+        assertEquals("Synthetic", attributes.get("firstName"));
+        assertEquals("User", attributes.get("lastName"));
+    }
+
+    @Test
+    public void keepsOnlyMappedAttributesForTheMappedIdP() {
+        Map<String, Object> attributes = mapper(mapping(IDP_A, "email", "mail")).map(IDP_A, assertions, null);
+        assertEquals(USER, attributes.get("mail"));
+        assertFalse(attributes.containsKey("firstName"));
+        assertEquals(1, attributes.size());
+    }
+
+    @Test
+    public void otherIdPsPassThroughWhenOnlyOneIdPIsMapped() {
+        Map<String, Object> attributes = mapper(mapping(IDP_A, "email", "mail")).map(IDP_B, assertions, null);
+        assertEquals(USER, attributes.get("email"));
+        assertEquals("Synthetic", attributes.get("firstName"));
+        assertEquals("User", attributes.get("lastName"));
+        assertFalse(attributes.containsKey("mail"));
+    }
+
+    @Test
+    public void defaultMappingsApplyToEveryOtherIdP() {
+        AttributeMapper mapper = mapper(mapping(null, "firstName", "givenName"), mapping(IDP_A, "email", "mail"));
+
+        Map<String, Object> mapped = mapper.map(IDP_A, assertions, null);
+        assertEquals("Synthetic", mapped.get("givenName"));
+        assertEquals(USER, mapped.get("mail"));
+        assertEquals(2, mapped.size());
+
+        Map<String, Object> other = mapper.map(IDP_B, assertions, null);
+        assertEquals("Synthetic", other.get("givenName"));
+        assertEquals(1, other.size());
+    }
+
+    private static AttributeMapper mapper(SAMLProperties.AttributeMapping... mappings) {
+        SAMLProperties properties = new SAMLProperties();
+        for (SAMLProperties.AttributeMapping mapping : mappings) {
+            properties.getAttributes().getMappings().add(mapping);
+        }
+        AttributeMapper mapper = new AttributeMapper();
+        ReflectionTestUtils.setField(mapper, "samlProperties", properties);
+        mapper.init();
+        return mapper;
+    }
+
+    private static SAMLProperties.AttributeMapping mapping(String idp, String name, String alias) {
+        SAMLProperties.AttributeMapping mapping = new SAMLProperties.AttributeMapping();
+        mapping.setIdp(idp);
+        mapping.setName(name);
+        mapping.setAlias(alias);
+        return mapping;
+    }
+}
@@ -0,0 +1,125 @@
+package com.saml.server.opensaml;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.AuthnRequestTracker;
+import com.saml.server.opensaml.service.RejectionReason;
+import com.saml.server.opensaml.service.SAMLUtilityService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link AuthnRequestTracker} in each {@code saml.in-response-to.store} mode, wired by hand
+ * around a clock the test moves.
+ */
+public class AuthnRequestTrackerTests {
+
+    private static final long TTL_MILLIS = 60000;
+    private static final String HMAC_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private final SoakTests.SimulatedClock clock = new SoakTests.SimulatedClock(1700000000000L);
+
+    @Test
+    public void memoryStoreAcceptsEachIdOnce() {
+        AuthnRequestTracker tracker = tracker(SAMLProperties.InResponseTo.STORE_MEMORY, false, 1000000, null);
+        String id = tracker.issue();
+
+        assertNull(tracker.check(id));
+        assertEquals(RejectionReason.UNKNOWN_IN_RESPONSE_TO, tracker.check(id));
+        assertEquals(RejectionReason.UNKNOWN_IN_RESPONSE_TO, tracker.check("_never-issued"));
+    }
+
+    @Test
+    public void memoryStoreForgetsExpiredIds() {
+        AuthnRequestTracker tracker = tracker(SAMLProperties.InResponseTo.STORE_MEMORY, false, 1000000, null);
+        String id = tracker.issue();
+
+        clock.advance(Duration.ofMillis(2 * TTL_MILLIS));
+        assertEquals(RejectionReason.UNKNOWN_IN_RESPONSE_TO, tracker.check(id));
+    }
+
+    @Test
+    public void fullMemoryStoreKeepsIssuingIds() {
+        AuthnRequestTracker tracker = tracker(SAMLProperties.InResponseTo.STORE_MEMORY, false, 11, null);
+        String oldest = tracker.issue();
+        String newest = null;
+        for (int i = 0; i < 100; i++) {
+            newest = tracker.issue();
+        }
+
+        assertNull(tracker.check(newest));
+        assertEquals(RejectionReason.UNKNOWN_IN_RESPONSE_TO, tracker.check(oldest));
+    }
+
+    @Test
+    public void unsolicitedResponsesFollowTheSetting() {
+        assertEquals(RejectionReason.UNSOLICITED_RESPONSE,
+                tracker(SAMLProperties.InResponseTo.STORE_MEMORY, false, 1000, null).check(null));
+        assertNull(tracker(SAMLProperties.InResponseTo.STORE_MEMORY, true, 1000, null).check(null));
+        assertEquals(RejectionReason.UNSOLICITED_RESPONSE,
+                tracker(SAMLProperties.InResponseTo.STORE_STATELESS, false, 1000, HMAC_KEY).check(""));
+    }
+
+    @Test
+    public void statelessIdsVerifyOnEveryNodeSharingTheKey() {
+        String id = tracker(SAMLProperties.InResponseTo.STORE_STATELESS, false, 1000, HMAC_KEY).issue();
+        AuthnRequestTracker otherNode = tracker(SAMLProperties.InResponseTo.STORE_STATELESS, false, 1000, HMAC_KEY);
+
+        assertNull(otherNode.check(id));
+        // Nothing is stored, so a second use inside the TTL is accepted too
+        assertNull(otherNode.check(id));
+
+        String otherKey = Base64.getEncoder().encodeToString(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertEquals(RejectionReason.UNKNOWN_IN_RESPONSE_TO,
+                tracker(SAMLProperties.InResponseTo.STORE_STATELESS, false, 1000, otherKey).check(id));
+    }
+
+    @Test
+    public void statelessIdsRejectTamperingAndAge() {
+        AuthnRequestTracker tracker = tracker(SAMLProperties.InResponseTo.STORE_STATELESS, false, 1000, HMAC_KEY);
+        String id = tracker.issue();
+
+        // Position 30 lies inside the MAC and carries six full bits, unlike the last character
+        char c = id.charAt(30);
+        String tampered = id.substring(0, 30) + (c == 'A' ? 'B' : 'A') + id.substring(31);
+        assertNotEquals(id, tampered);
+        assertEquals(RejectionReason.UNKNOWN_IN_RESPONSE_TO, tracker.check(tampered));
+        assertEquals(RejectionReason.UNKNOWN_IN_RESPONSE_TO, tracker.check("_" + id));
+        assertEquals(RejectionReason.UNKNOWN_IN_RESPONSE_TO, tracker.check("_"));
+
+        clock.advance(Duration.ofMillis(TTL_MILLIS + 1));
+        assertEquals(RejectionReason.UNKNOWN_IN_RESPONSE_TO, tracker.check(id));
+    }
+
+    @Test
+    public void storeNoneChecksNothing() {
+        AuthnRequestTracker tracker = tracker(SAMLProperties.InResponseTo.STORE_NONE, false, 1000, null);
+        assertNull(tracker.check(null));
+        assertNull(tracker.check("_anything"));
+    }
+
+    private AuthnRequestTracker tracker(String store, boolean allowUnsolicited, int maxPending, String hmacKey) {
+        SAMLProperties properties = new SAMLProperties();
+        SAMLProperties.InResponseTo config = properties.getInResponseTo();
+        config.setStore(store);
+        config.setAllowUnsolicited(allowUnsolicited);
+        config.setTtlMillis(TTL_MILLIS);
+        config.setMaxPending(maxPending);
+        config.setHmacKey(hmacKey);
+
+        AuthnRequestTracker tracker = new AuthnRequestTracker();
+        ReflectionTestUtils.setField(tracker, "samlProperties", properties);
+        ReflectionTestUtils.setField(tracker, "utilityService", new SAMLUtilityService());
+        ReflectionTestUtils.setField(tracker, "registry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tracker, "clock", clock);
+        tracker.init();
+        return tracker;
+    }
+}
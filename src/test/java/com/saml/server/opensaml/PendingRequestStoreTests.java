@@ -0,0 +1,152 @@
+package com.saml.server.opensaml;
+
+import com.saml.server.opensaml.service.PendingRequestStore;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PendingRequestStore}: single use, expiry by time bucket, eviction of the oldest IDs
+ * when a bucket is full, and one winner among concurrent consumers.
+ */
+public class PendingRequestStoreTests {
+
+    private static final long TTL_MILLIS = 10000;
+    private static final int BUCKETS = 10;
+
+    private final SoakTests.SimulatedClock clock = new SoakTests.SimulatedClock(1700000000000L);
+
+    @Test
+    public void consumesEachIdOnce() {
+        PendingRequestStore store = new PendingRequestStore(TTL_MILLIS, BUCKETS, 1000, clock);
+        store.add("_a");
+        store.add("_b");
+        assertEquals(2, store.size());
+
+        assertTrue(store.consume("_a"));
+        assertFalse(store.consume("_a"));
+        assertFalse(store.consume("_unknown"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void expiresAfterTheTtl() {
+        PendingRequestStore store = new PendingRequestStore(TTL_MILLIS, BUCKETS, 1000, clock);
+        store.add("_kept");
+        store.add("_expired");
+
+        clock.advance(Duration.ofMillis(TTL_MILLIS - 1));
+        assertTrue(store.consume("_kept"));
+
+        // The last bucket may live up to one bucket longer than the TTL
+        clock.advance(Duration.ofMillis(2 * TTL_MILLIS / BUCKETS + 1));
+        assertFalse(store.consume("_expired"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void fullBucketEvictsItsOldestIds() {
+        // maxPending is split over the buckets + 1 ring slots: four IDs per bucket
+        PendingRequestStore store = new PendingRequestStore(TTL_MILLIS, BUCKETS, 4 * (BUCKETS + 1), clock);
+        for (int i = 0; i < 10; i++) {
+            store.add("_" + i);
+        }
+
+        assertEquals(4, store.size());
+        assertEquals(6, store.evictions());
+        for (int i = 0; i < 6; i++) {
+            assertFalse("_" + i, store.consume("_" + i));
+        }
+        for (int i = 6; i < 10; i++) {
+            assertTrue("_" + i, store.consume("_" + i));
+        }
+    }
+
+    @Test
+    public void consumedIdsAreNotCountedAsEvicted() {
+        PendingRequestStore store = new PendingRequestStore(TTL_MILLIS, BUCKETS, 4 * (BUCKETS + 1), clock);
+        for (int i = 0; i < 100; i++) {
+            store.add("_" + i);
+            assertTrue(store.consume("_" + i));
+        }
+        assertEquals(0, store.evictions());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void newBucketsStartEmpty() {
+        PendingRequestStore store = new PendingRequestStore(TTL_MILLIS, BUCKETS, 4 * (BUCKETS + 1), clock);
+        for (int i = 0; i < 4; i++) {
+            store.add("_first" + i);
+        }
+        clock.advance(Duration.ofMillis(TTL_MILLIS / BUCKETS));
+        for (int i = 0; i < 4; i++) {
+            store.add("_second" + i);
+        }
+
+        assertEquals(8, store.size());
+        assertEquals(0, store.evictions());
+    }
+
+    @Test
+    public void growsPastItsInitialTable() {
+        PendingRequestStore store = new PendingRequestStore(TTL_MILLIS, BUCKETS, 100000, clock);
+        for (int i = 0; i < 5000; i++) {
+            store.add("_" + i);
+        }
+        assertEquals(5000, store.size());
+        for (int i = 0; i < 5000; i += 2) {
+            assertTrue(store.consume("_" + i));
+        }
+        for (int i = 1; i < 5000; i += 2) {
+            assertTrue(store.consume("_" + i));
+        }
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void onlyOneConcurrentConsumerWins() throws Exception {
+        PendingRequestStore store = new PendingRequestStore(TTL_MILLIS, BUCKETS, 100000, clock);
+        int ids = 2000;
+        for (int i = 0; i < ids; i++) {
+            store.add("_" + i);
+        }
+
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int won = 0;
+                for (int i = 0; i < ids; i++) {
+                    if (store.consume("_" + i)) {
+                        won++;
+                    }
+                }
+                return won;
+            }));
+        }
+        start.countDown();
+        int won = 0;
+        for (Future<Integer> result : results) {
+            won += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(ids, won);
+        assertEquals(0, store.size());
+    }
+}
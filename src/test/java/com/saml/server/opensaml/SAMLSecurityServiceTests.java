@@ -0,0 +1,80 @@
+package com.saml.server.opensaml;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.SAMLSecurityService;
+import com.saml.server.opensaml.service.SAMLUtilityService;
+import com.saml.server.opensaml.tenant.SPTenantContext;
+import com.saml.server.opensaml.tenant.SPTenantRegistry;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sessions of {@link SAMLSecurityService} stay with the tenant that created them, in both
+ * {@code saml.session.store} modes.
+ */
+public class SAMLSecurityServiceTests {
+
+    private static final String USER = "user@example.org";
+
+    private final SPTenantContext tenantA = SPTenantContext.builder("tenant-a").build();
+    private final SPTenantContext tenantB = SPTenantContext.builder("tenant-b").build();
+
+    @Test
+    public void memorySessionsAreOnlyValidForTheirTenant() {
+        assertBoundToTenant(securityService(SAMLProperties.Session.STORE_MEMORY));
+    }
+
+    @Test
+    public void statelessSessionsAreOnlyValidForTheirTenant() {
+        assertBoundToTenant(securityService(SAMLProperties.Session.STORE_STATELESS));
+    }
+
+    @Test
+    public void defaultTenantOverloadsShareTheDefaultTenantsSessions() {
+        for (String store : new String[]{SAMLProperties.Session.STORE_MEMORY, SAMLProperties.Session.STORE_STATELESS}) {
+            SAMLSecurityService service = securityService(store);
+            String sessionId = service.createSession(USER, "_index", Collections.emptyMap());
+
+            assertTrue(store, service.validateSession(sessionId));
+            assertEquals(store, SPTenantContext.DEFAULT_TENANT_ID, service.getSession(sessionId).getTenantId());
+            assertFalse(store, service.validateSession(tenantA, sessionId));
+        }
+    }
+
+    private void assertBoundToTenant(SAMLSecurityService service) {
+        String sessionId = service.createSession(tenantA, USER, "_index", Collections.emptyMap());
+
+        assertTrue(service.validateSession(tenantA, sessionId));
+        assertNotNull(service.getSession(tenantA, sessionId));
+        assertFalse(service.validateSession(tenantB, sessionId));
+        assertNull(service.getSession(tenantB, sessionId));
+        assertFalse(service.validateSession(sessionId));
+    }
+
+    private static SAMLSecurityService securityService(String store) {
+        SAMLProperties properties = new SAMLProperties();
+        properties.getSession().setStore(store);
+        SAMLUtilityService utilityService = new SAMLUtilityService();
+
+        SPTenantRegistry tenantRegistry = new SPTenantRegistry();
+        ReflectionTestUtils.setField(tenantRegistry, "samlProperties", properties);
+        ReflectionTestUtils.setField(tenantRegistry, "utilityService", utilityService);
+        tenantRegistry.init();
+
+        SAMLSecurityService service = new SAMLSecurityService();
+        ReflectionTestUtils.setField(service, "samlProperties", properties);
+        ReflectionTestUtils.setField(service, "utilityService", utilityService);
+        ReflectionTestUtils.setField(service, "clock", new SoakTests.SimulatedClock(1700000000000L));
+        ReflectionTestUtils.setField(service, "tenantRegistry", tenantRegistry);
+        service.init();
+        return service;
+    }
+}
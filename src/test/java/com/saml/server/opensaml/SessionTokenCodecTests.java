@@ -0,0 +1,120 @@
+package com.saml.server.opensaml;
+
+import com.saml.server.opensaml.service.SAMLSecurityService;
+import com.saml.server.opensaml.service.SessionTokenCodec;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link SessionTokenCodec}: round trips with and without encryption, key rotation, and the
+ * tokens it must refuse, including those of another tenant. Times are whole seconds because the token stores epoch seconds.
+ */
+public class SessionTokenCodecTests {
+
+    private static final String TENANT = "tenant-a";
+    private static final long NOW = 1700000000000L;
+    private static final long EXPIRES = NOW + 30 * 60 * 1000;
+
+    private static final byte[] OLD_KEY = "old-session-key-0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEW_KEY = "new-session-key-0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void roundTripsEveryAttributeType() {
+        for (boolean encrypt : new boolean[]{false, true}) {
+            SessionTokenCodec codec = new SessionTokenCodec(Collections.singletonList(NEW_KEY), encrypt);
+            SAMLSecurityService.SAMLSession decoded = codec.decode(codec.encode(session(), EXPIRES), TENANT, NOW);
+
+            assertNotNull("encrypt=" + encrypt, decoded);
+            assertEquals(TENANT, decoded.getTenantId());
+            assertEquals("user@example.org", decoded.getNameId());
+            assertEquals("_session-index", decoded.getSessionIndex());
+            assertEquals(NOW, decoded.getCreatedAt().getTime());
+            assertEquals(session().getAttributes(), decoded.getAttributes());
+        }
+    }
+
+    @Test
+    public void oldKeyKeepsVerifyingAfterRotationUntilRemoved() {
+        String oldToken = new SessionTokenCodec(Collections.singletonList(OLD_KEY), true).encode(session(), EXPIRES);
+
+        SessionTokenCodec rotated = new SessionTokenCodec(Arrays.asList(NEW_KEY, OLD_KEY), true);
+        assertNotNull(rotated.decode(oldToken, TENANT, NOW));
+        String newToken = rotated.encode(session(), EXPIRES);
+        assertNotNull(new SessionTokenCodec(Collections.singletonList(NEW_KEY), true).decode(newToken, TENANT, NOW));
+
+        SessionTokenCodec retired = new SessionTokenCodec(Collections.singletonList(NEW_KEY), true);
+        assertNull(retired.decode(oldToken, TENANT, NOW));
+        assertNull(new SessionTokenCodec(Collections.singletonList(OLD_KEY), true).decode(newToken, TENANT, NOW));
+    }
+
+    @Test
+    public void rejectsAnyModifiedByte() {
+        SessionTokenCodec codec = new SessionTokenCodec(Collections.singletonList(NEW_KEY), false);
+        byte[] token = Base64.getUrlDecoder().decode(codec.encode(session(), EXPIRES));
+        for (int i = 0; i < token.length; i++) {
+            byte[] tampered = token.clone();
+            tampered[i] ^= 0x01;
+            assertNull("byte " + i, codec.decode(encode(tampered), TENANT, NOW));
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedTokens() {
+        SessionTokenCodec codec = new SessionTokenCodec(Collections.singletonList(NEW_KEY), true);
+        byte[] token = Base64.getUrlDecoder().decode(codec.encode(session(), EXPIRES));
+        for (int length = 0; length < token.length; length++) {
+            assertNull("length " + length, codec.decode(encode(Arrays.copyOf(token, length)), TENANT, NOW));
+        }
+        assertNull(codec.decode("not base64 at all!", TENANT, NOW));
+        assertNull(codec.decode(null, TENANT, NOW));
+    }
+
+    @Test
+    public void rejectsTokensOfAnotherTenant() {
+        // Tenants share the keys, so only the tenant ID under the MAC tells their tokens apart
+        for (boolean encrypt : new boolean[]{false, true}) {
+            SessionTokenCodec codec = new SessionTokenCodec(Collections.singletonList(NEW_KEY), encrypt);
+            String token = codec.encode(session(), EXPIRES);
+
+            assertNotNull("encrypt=" + encrypt, codec.decode(token, TENANT, NOW));
+            assertNull("encrypt=" + encrypt, codec.decode(token, "tenant-b", NOW));
+            assertNull("encrypt=" + encrypt, codec.decode(token, null, NOW));
+        }
+    }
+
+    @Test
+    public void expiresAtTheGivenInstant() {
+        SessionTokenCodec codec = new SessionTokenCodec(Collections.singletonList(NEW_KEY), false);
+        String token = codec.encode(session(), EXPIRES);
+
+        assertNotNull(codec.decode(token, TENANT, EXPIRES - 1));
+        assertNull(codec.decode(token, TENANT, EXPIRES));
+        assertNull(codec.decode(token, TENANT, EXPIRES + 1000));
+    }
+
+    private static SAMLSecurityService.SAMLSession session() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("mail", "user@example.org");
+        attributes.put("displayName", "Zoë Example");
+        attributes.put("active", Boolean.TRUE);
+        attributes.put("employeeNumber", -42L);
+        attributes.put("groups", Arrays.asList("admins", "users"));
+        attributes.put("manager", null);
+        return new SAMLSecurityService.SAMLSession(TENANT, "user@example.org", "_session-index", attributes, new Date(NOW));
+    }
+
+    private static String encode(byte[] token) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+}
@@ -0,0 +1,93 @@
+package com.saml.server.opensaml;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.RejectionReason;
+import com.saml.server.opensaml.service.SAMLResponseService;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import net.shibboleth.utilities.java.support.xml.SerializeSupport;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.core.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * XML signature wrapping against the ACS: a genuine IdP signature moved onto a forged assertion
+ * still verifies cryptographically, because its Reference points at the original assertion kept
+ * elsewhere in the document. Only the SAML signature profile check catches it.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = OpensamlApplication.class, properties = {"saml.warmup.enabled=false", "logging.level.root=WARN",
+        "saml.in-response-to.allow-unsolicited=true"})
+@ContextConfiguration(initializers = SyntheticIdPInitializer.class)
+public class SignatureWrappingTests {
+
+    private static final String USER = "victim@test.invalid";
+    private static final String ATTACKER = "attacker@test.invalid";
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private SAMLResponseService responseService;
+
+    @Test
+    public void acceptsTheGenuineResponse() throws Exception {
+        SAMLResponseService.SAMLResponseResult result =
+                responseService.processSAMLResponse(SyntheticIdP.encodePost(signedAssertionResponse()), null);
+        assertTrue(result.isSuccess());
+        assertEquals(USER, result.getUserName());
+    }
+
+    @Test
+    public void rejectsSignatureWrappedAroundForgedAssertion() throws Exception {
+        Element response = XMLObjectSupport.marshall(signedAssertionResponse());
+        Element original = child(response, "Assertion");
+        Element signature = child(original, "Signature");
+
+        // Forged copy with the attacker's NameID carries the genuine signature
+        Element forged = (Element) original.cloneNode(true);
+        forged.removeChild(child(forged, "Signature"));
+        forged.setAttributeNS(null, "ID", "_forged");
+        child(child(forged, "Subject"), "NameID").setTextContent(ATTACKER);
+        forged.insertBefore(signature, child(forged, "Issuer").getNextSibling());
+
+        // The signed original hides in the forged assertion's Advice, where its ID still resolves
+        Element advice = response.getOwnerDocument().createElementNS(SAMLConstants.SAML20_NS, "saml2:Advice");
+        forged.insertBefore(advice, child(forged, "Conditions").getNextSibling());
+        response.replaceChild(forged, original);
+        advice.appendChild(original);
+
+        String encoded = Base64.getEncoder().encodeToString(
+                SerializeSupport.nodeToString(response).getBytes(StandardCharsets.UTF_8));
+        SAMLResponseService.SAMLResponseResult result = responseService.processSAMLResponse(encoded, null);
+        assertEquals(RejectionReason.INVALID_SIGNATURE_PROFILE, result.getRejectionReason());
+    }
+
+    private Response signedAssertionResponse() throws Exception {
+        return SyntheticIdPInitializer.idp().createResponse(samlProperties.getAssertionConsumerServiceURL(),
+                samlProperties.getEntityId(), USER, null,
+                SyntheticIdP.ResponseShape.defaults().signResponse(false).signAssertions(true));
+    }
+
+    private static Element child(Element parent, String localName) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && localName.equals(node.getLocalName())) {
+                return (Element) node;
+            }
+        }
+        throw new AssertionError("No " + localName + " in " + parent.getLocalName());
+    }
+}
@@ -0,0 +1,253 @@
+package com.saml.server.opensaml;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import com.saml.server.opensaml.service.SAMLLogoutService;
+import com.saml.server.opensaml.service.SAMLResponseService;
+import com.saml.server.opensaml.service.SAMLSecurityService;
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opensaml.saml.saml2.core.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Soak test for unbounded growth: drives sustained login and logout traffic through hours of
+ * simulated time and asserts that the session map, heap after GC and process RSS
+ * (which includes native zlib buffers) level off once sessions start to expire.
+ *
+ * Skipped unless enabled; hours and rate are tunable:
+ *
+ * <pre>
+ * ./mvnw test -Dtest=SoakTests -Dsoak=true -Dsoak.hours=12 -Dsoak.logins-per-minute=200
+ * </pre>
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {OpensamlApplication.class, SoakTests.SimulatedTime.class},
+        properties = {"saml.warmup.enabled=false", "logging.level.root=WARN",
+                "saml.security.cleanup-interval-millis=86400000", "saml.in-response-to.allow-unsolicited=true"})
+@ContextConfiguration(initializers = SyntheticIdPInitializer.class)
+public class SoakTests {
+
+    private static final int HOURS = Integer.getInteger("soak.hours", 8);
+    private static final int LOGINS_PER_MINUTE = Integer.getInteger("soak.logins-per-minute", 100);
+    private static final int LOGOUT_AFTER_MINUTES = 10;
+    private static final int SAMPLE_EVERY_MINUTES = 30;
+    // Sessions live 30 minutes; samples before this are still filling up
+    private static final int WARMUP_MINUTES = 120;
+
+    @Autowired
+    private SimulatedClock clock;
+
+    @Autowired
+    private SAMLProperties samlProperties;
+
+    @Autowired
+    private SAMLResponseService responseService;
+
+    @Autowired
+    private SAMLLogoutService logoutService;
+
+    @Autowired
+    private SAMLSecurityService securityService;
+
+    @TestConfiguration
+    static class SimulatedTime {
+
+        @Bean
+        @Primary
+        public SimulatedClock simulatedClock() {
+            return new SimulatedClock(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Clock that only moves when the test advances it
+     */
+    static final class SimulatedClock extends Clock {
+
+        private final AtomicLong millis;
+
+        SimulatedClock(long startMillis) {
+            this.millis = new AtomicLong(startMillis);
+        }
+
+        void advance(Duration duration) {
+            millis.addAndGet(duration.toMillis());
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis.get());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException("Simulated clock is UTC only");
+        }
+    }
+
+    @BeforeClass
+    public static void enabled() {
+        assumeTrue("Soak test runs only with -Dsoak=true", Boolean.getBoolean("soak"));
+        assumeTrue("Soak test needs more than " + WARMUP_MINUTES / 60 + " simulated hours", HOURS * 60 > 2 * WARMUP_MINUTES);
+    }
+
+    @Test
+    public void memoryPlateausUnderSustainedTraffic() throws Exception {
+        SyntheticIdP idp = SyntheticIdPInitializer.idp().withClock(clock);
+        ArrayDeque<PendingLogout> logouts = new ArrayDeque<>();
+        List<Sample> samples = new ArrayList<>();
+        long users = 0;
+
+        for (int minute = 0; minute < HOURS * 60; minute++) {
+            for (int i = 0; i < LOGINS_PER_MINUTE; i++) {
+                String user = "soak" + (users++) + "@soak.invalid";
+                Response response = idp.createResponse(samlProperties.getAssertionConsumerServiceURL(),
+                        samlProperties.getEntityId(), user, null);
+                assertTrue("ACS rejected a fresh Response at minute " + minute,
+                        responseService.processSAMLResponse(SyntheticIdP.encodePost(response), null).isSuccess());
+                // Every other user logs out; the rest leave their session to expire
+                if (i % 2 == 0) {
+                    logouts.add(new PendingLogout(minute + LOGOUT_AFTER_MINUTES, user));
+                }
+            }
+            while (!logouts.isEmpty() && logouts.peek().dueMinute <= minute) {
+                assertTrue(logoutService.processLogoutRequest(
+                        idp.createLogoutRequest(samlProperties.getSingleLogoutServiceURL(), logouts.poll().user)));
+            }
+
+            clock.advance(Duration.ofMinutes(1));
+            // Stands in for the scheduled sweep, which runs on wall-clock time
+            securityService.cleanupExpired();
+
+            if (minute % SAMPLE_EVERY_MINUTES == SAMPLE_EVERY_MINUTES - 1) {
+                Sample sample = Sample.take(minute + 1, securityService);
+                samples.add(sample);
+                System.out.println(sample);
+            }
+        }
+
+        List<Sample> early = new ArrayList<>();
+        List<Sample> late = new ArrayList<>();
+        for (Sample sample : samples) {
+            if (sample.minute > WARMUP_MINUTES) {
+                (sample.minute <= (WARMUP_MINUTES + HOURS * 60) / 2 ? early : late).add(sample);
+            }
+        }
+        assertPlateau("active sessions", early, late, s -> s.sessions, 1.05, 10);
+        assertPlateau("heap after GC", early, late, s -> s.heapAfterGc, 1.20, 16L << 20);
+        if (early.get(0).rss > 0) {
+            assertPlateau("resident set size", early, late, s -> s.rss, 1.20, 64L << 20);
+        }
+    }
+
+    private interface Metric {
+        long of(Sample sample);
+    }
+
+    /**
+     * The later half may not exceed the earlier half's peak by more than the given slack
+     */
+    private static void assertPlateau(String name, List<Sample> early, List<Sample> late, Metric metric,
+                                      double factor, long absoluteSlack) {
+        long earlyPeak = 0;
+        for (Sample sample : early) {
+            earlyPeak = Math.max(earlyPeak, metric.of(sample));
+        }
+        long lateMean = 0;
+        for (Sample sample : late) {
+            lateMean += metric.of(sample);
+        }
+        lateMean /= late.size();
+        assertTrue(String.format("%s kept growing: early peak %d, late mean %d", name, earlyPeak, lateMean),
+                lateMean <= earlyPeak * factor + absoluteSlack);
+    }
+
+    private static final class PendingLogout {
+        final int dueMinute;
+        final String user;
+
+        PendingLogout(int dueMinute, String user) {
+            this.dueMinute = dueMinute;
+            this.user = user;
+        }
+    }
+
+    private static final class Sample {
+        final int minute;
+        final long sessions;
+        final long heapAfterGc;
+        final long rss;
+
+        private Sample(int minute, long sessions, long heapAfterGc, long rss) {
+            this.minute = minute;
+            this.sessions = sessions;
+            this.heapAfterGc = heapAfterGc;
+            this.rss = rss;
+        }
+
+        static Sample take(int minute, SAMLSecurityService securityService) {
+            System.gc();
+            return new Sample(minute, securityService.getActiveSessionCount(),
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), residentSetSize());
+        }
+
+        /**
+         * Process RSS from procfs, covering native allocations such as zlib streams; -1 where unavailable
+         */
+        private static long residentSetSize() {
+            Path status = Paths.get("/proc/self/status");
+            try {
+                for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                    }
+                }
+            } catch (Exception e) {
+                // Not Linux
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("soak t=%4d min  sessions=%6d  heapAfterGc=%5d MB  rss=%5d MB",
+                    minute, sessions, heapAfterGc >> 20, rss >> 20);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.saml.server.opensaml;
+
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Trusts a synthetic IdP as the configured IdP, so Responses it issues pass ACS validation.
+ * One IdP is shared by every test context in the JVM.
+ */
+public class SyntheticIdPInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    private static SyntheticIdP idp;
+
+    static synchronized SyntheticIdP idp() {
+        if (idp == null) {
+            try {
+                idp = SyntheticIdP.create();
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to create synthetic IdP", e);
+            }
+        }
+        return idp;
+    }
+
+    @Override
+    public void initialize(ConfigurableApplicationContext context) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("saml.idp-entity-id", idp().getEntityId());
+        // Relaxed binding maps assertion-consumer-service-url to ...ServiceUrl, not the ...ServiceURL property
+        properties.put("saml.assertionConsumerServiceURL", "http://localhost:8080/saml/acs");
+        try {
+            properties.put("saml.idp-x509-certificate", "-----BEGIN CERTIFICATE-----\n"
+                    + Base64.getMimeEncoder().encodeToString(idp().getCertificate().getEncoded())
+                    + "\n-----END CERTIFICATE-----");
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to encode synthetic IdP certificate", e);
+        }
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("syntheticIdP", properties));
+    }
+}
@@ -0,0 +1,165 @@
+package com.saml.server.opensaml.metadata;
+
+import com.saml.server.opensaml.synthetic.SyntheticIdP;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.XMLConstants;
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.fail;
+
+/**
+ * {@link MetadataSignatureVerifier} against aggregates signed here with the JDK's XML signature API.
+ */
+public class MetadataSignatureVerifierTests {
+
+    private static final String MD_NS = "urn:oasis:names:tc:SAML:2.0:metadata";
+    private static final String RSA_SHA256 = "http://www.w3.org/2001/04/xmldsig-more#rsa-sha256";
+
+    private final KeyPair signer = keyPair();
+    private final KeyPair other = keyPair();
+    private final X509Certificate signerCertificate = certificate(signer);
+    private final X509Certificate otherCertificate = certificate(other);
+
+    @Test
+    public void acceptsReferencesToTheRoot() throws Exception {
+        verifier(signerCertificate).verify(sign(metadata(), "#_meta"));
+        verifier(signerCertificate).verify(sign(metadata(), ""));
+    }
+
+    @Test
+    public void acceptsAnyOfTheTrustedCertificates() throws Exception {
+        // During a rollover both the outgoing and the incoming certificate are trusted
+        new MetadataSignatureVerifier(Arrays.asList(otherCertificate, signerCertificate))
+                .verify(sign(metadata(), "#_meta"));
+    }
+
+    @Test
+    public void rejectsModifiedMetadata() throws Exception {
+        String signed = new String(sign(metadata(), "#_meta"), StandardCharsets.UTF_8);
+        String tampered = signed.replace("https://idp.example.org/sso", "https://evil.example.org/sso");
+        assertRejected(verifier(signerCertificate), tampered.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rejectsUntrustedSigner() throws Exception {
+        assertRejected(verifier(otherCertificate), sign(metadata(), "#_meta"));
+    }
+
+    @Test
+    public void rejectsUnsignedAndMalformedMetadata() throws Exception {
+        assertRejected(verifier(signerCertificate), serialize(metadata()));
+        assertRejected(verifier(signerCertificate), "<EntityDescriptor".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rejectsReferencesToAnotherElement() throws Exception {
+        Document document = metadata();
+        Element descriptor = (Element) document.getDocumentElement().getFirstChild();
+        descriptor.setAttribute("ID", "_descriptor");
+        descriptor.setIdAttribute("ID", true);
+        assertRejected(verifier(signerCertificate), sign(document, "#_descriptor"));
+    }
+
+    private MetadataSignatureVerifier verifier(X509Certificate certificate) {
+        return new MetadataSignatureVerifier(Collections.singletonList(certificate));
+    }
+
+    private static void assertRejected(MetadataSignatureVerifier verifier, byte[] metadata) {
+        try {
+            verifier.verify(metadata);
+            fail("Metadata was accepted");
+        } catch (GeneralSecurityException expected) {
+            // Rejected as it should be
+        }
+    }
+
+    private static Document metadata() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().newDocument();
+        Element root = document.createElementNS(MD_NS, "md:EntityDescriptor");
+        // Declared explicitly so the canonical form signed here matches the one parsed back
+        root.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns:md", MD_NS);
+        root.setAttribute("ID", "_meta");
+        root.setAttribute("entityID", "https://idp.example.org");
+        root.setIdAttribute("ID", true);
+        document.appendChild(root);
+
+        Element descriptor = document.createElementNS(MD_NS, "md:IDPSSODescriptor");
+        descriptor.setAttribute("protocolSupportEnumeration", "urn:oasis:names:tc:SAML:2.0:protocol");
+        root.appendChild(descriptor);
+        Element sso = document.createElementNS(MD_NS, "md:SingleSignOnService");
+        sso.setAttribute("Binding", "urn:oasis:names:tc:SAML:2.0:bindings:HTTP-Redirect");
+        sso.setAttribute("Location", "https://idp.example.org/sso");
+        descriptor.appendChild(sso);
+        return document;
+    }
+
+    /**
+     * Enveloped signature as the first child of the root, the way metadata aggregators place it
+     */
+    private byte[] sign(Document document, String referenceUri) throws Exception {
+        XMLSignatureFactory factory = XMLSignatureFactory.getInstance("DOM");
+        List<Transform> transforms = Arrays.asList(
+                factory.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null),
+                factory.newTransform(CanonicalizationMethod.EXCLUSIVE, (TransformParameterSpec) null));
+        Reference reference = factory.newReference(referenceUri,
+                factory.newDigestMethod(DigestMethod.SHA256, null), transforms, null, null);
+        SignedInfo signedInfo = factory.newSignedInfo(
+                factory.newCanonicalizationMethod(CanonicalizationMethod.EXCLUSIVE, (C14NMethodParameterSpec) null),
+                factory.newSignatureMethod(RSA_SHA256, null),
+                Collections.singletonList(reference));
+        Element root = document.getDocumentElement();
+        DOMSignContext context = new DOMSignContext(signer.getPrivate(), root, root.getFirstChild());
+        factory.newXMLSignature(signedInfo, null).sign(context);
+        return serialize(document);
+    }
+
+    private static byte[] serialize(Document document) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(out));
+        return out.toByteArray();
+    }
+
+    private static KeyPair keyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static X509Certificate certificate(KeyPair keyPair) {
+        try {
+            return SyntheticIdP.selfSign(keyPair, "SHA256withRSA");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.saml.server.opensaml.metrics;
+
+import com.saml.server.opensaml.config.SAMLProperties;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link ACSMetrics} keeps the {@code idp} tag to the configured IdPs, whatever the metadata holds.
+ */
+public class ACSMetricsTests {
+
+    private static final String DEFAULT_IDP = "https://idp.example.org";
+    private static final String TENANT_IDP = "https://tenant-idp.example.org";
+    private static final String LISTED_IDP = "https://listed-idp.example.org";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    public void tagsOnlyConfiguredAndListedIdPs() {
+        ACSMetrics metrics = metrics();
+        for (String idp : new String[]{DEFAULT_IDP, TENANT_IDP, LISTED_IDP, null}) {
+            publish(metrics, idp);
+        }
+        for (int i = 0; i < 1000; i++) {
+            publish(metrics, "https://federated-idp-" + i + ".example.org");
+        }
+
+        Set<String> tags = new TreeSet<>();
+        for (Timer timer : registry.find(ACSMetrics.METER_NAME).timers()) {
+            tags.add(timer.getId().getTag("idp"));
+        }
+        Set<String> expected = new TreeSet<>();
+        Collections.addAll(expected, DEFAULT_IDP, TENANT_IDP, LISTED_IDP, ACSMetrics.UNKNOWN_IDP, ACSMetrics.OTHER_IDP);
+        assertEquals(expected, tags);
+        assertEquals(1000, registry.find(ACSMetrics.METER_NAME).tag("idp", ACSMetrics.OTHER_IDP)
+                .tag("phase", ACSPhase.PARSE.getTagValue()).timer().count());
+    }
+
+    private static void publish(ACSMetrics metrics, String idp) {
+        ACSMetrics.Recording recording = metrics.start(ACSMetrics.Binding.POST);
+        recording.mark(ACSPhase.PARSE);
+        recording.idp(idp);
+        recording.finish();
+    }
+
+    private ACSMetrics metrics() {
+        SAMLProperties properties = new SAMLProperties();
+        properties.setIdpEntityId(DEFAULT_IDP);
+        SAMLProperties.Tenant tenant = new SAMLProperties.Tenant();
+        tenant.setIdpEntityId(TENANT_IDP);
+        properties.getTenants().add(tenant);
+        properties.getMetrics().getIdpTags().add(LISTED_IDP);
+
+        ACSMetrics metrics = new ACSMetrics();
+        ReflectionTestUtils.setField(metrics, "registry", registry);
+        ReflectionTestUtils.setField(metrics, "samlProperties", properties);
+        metrics.init();
+        return metrics;
+    }
+}